@@ -0,0 +1,122 @@
+package com.goebl.david;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete requests against an in-process HTTP server on the loopback interface.
+ * <br>
+ * Run with <code>-t 8</code> to see the behavior with concurrent requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Webb webb;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws Exception {
+        JSONObject object = new JSONObject();
+        for (int i = 0; i < 20; i++) {
+            object.put("key" + i, "value " + i);
+        }
+        json = object.toString().getBytes("UTF-8");
+        binary = new byte[64 * 1024];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) i;
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        serverThreads = Executors.newFixedThreadPool(16);
+        server.setExecutor(serverThreads);
+        server.createContext("/json", new FixedResponse(json, Webb.APP_JSON));
+        server.createContext("/bytes", new FixedResponse(binary, "application/octet-stream"));
+        server.start();
+
+        webb = Webb.builder()
+                .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public Object getJsonObject() {
+        return webb.get("/json").ensureSuccess().asJsonObject().getBody();
+    }
+
+    @Benchmark
+    public Object getString() {
+        return webb.get("/json").param("q", "benchmark").ensureSuccess().asString().getBody();
+    }
+
+    @Benchmark
+    public Object getBytes() {
+        return webb.get("/bytes").ensureSuccess().asBytes().getBody();
+    }
+
+    @Benchmark
+    public Object postJson() throws Exception {
+        return webb.post("/json").body(new JSONObject().put("id", 4711)).ensureSuccess().asJsonObject().getBody();
+    }
+
+    /**
+     * Consumes the request body and answers with a fixed payload.
+     */
+    static class FixedResponse implements HttpHandler {
+        private final byte[] body;
+        private final String contentType;
+
+        FixedResponse(byte[] body, String contentType) {
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // drain
+            }
+            exchange.getResponseHeaders().add(Webb.HDR_CONTENT_TYPE, contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
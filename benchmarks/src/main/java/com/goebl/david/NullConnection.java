@@ -0,0 +1,47 @@
+package com.goebl.david;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A connection which doesn't send anything, for benchmarking code which needs a <code>Connection</code>.
+ */
+class NullConnection implements Connection {
+    private final Map<String, List<String>> requestProperties = new LinkedHashMap<String, List<String>>();
+
+    public void setRequestMethod(String method) {}
+    public void setInstanceFollowRedirects(boolean followRedirects) {}
+    public void setUseCaches(boolean useCaches) {}
+    public void setConnectTimeout(int timeout) {}
+    public void setReadTimeout(int timeout) {}
+    public void setIfModifiedSince(long ifModifiedSince) {}
+    public void addRequestProperty(String name, String value) { setRequestProperty(name, value); }
+    public void setRequestProperty(String name, String value) {
+        requestProperties.put(name, Collections.singletonList(value));
+    }
+    public Map<String, List<String>> getRequestProperties() { return requestProperties; }
+    public void setFixedLengthStreamingMode(int contentLength) {}
+    public void setChunkedStreamingMode(int chunkLength) {}
+    public void setDoOutput(boolean doOutput) {}
+    public OutputStream getOutputStream() { return new ByteArrayOutputStream(); }
+    public void connect() {}
+    public int getResponseCode() { return 200; }
+    public String getResponseMessage() { return "OK"; }
+    public InputStream getInputStream() { return null; }
+    public InputStream getErrorStream() { return null; }
+    public String getContentEncoding() { return null; }
+    public String getContentType() { return null; }
+    public long getDate() { return 0; }
+    public long getExpiration() { return 0; }
+    public long getLastModified() { return 0; }
+    public String getHeaderField(String name) { return null; }
+    public Map<String, List<String>> getHeaderFields() { return Collections.emptyMap(); }
+    public long getHeaderFieldDate(String name, long defaultValue) { return defaultValue; }
+    public int getHeaderFieldInt(String name, int defaultValue) { return defaultValue; }
+    public void disconnect() {}
+}
@@ -0,0 +1,94 @@
+package com.goebl.david;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting response bodies of different sizes to the target types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseResponseBodyBenchmark {
+
+    /** number of elements in the JSON array */
+    @Param({"10", "1000"})
+    public int elements;
+
+    private byte[] objectBytes;
+    private byte[] arrayBytes;
+    private NullConnection connection;
+
+    @Setup
+    public void setUp() throws Exception {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < elements; i++) {
+            JSONObject element = new JSONObject();
+            element.put("id", i);
+            element.put("name", "customer " + i);
+            element.put("active", i % 2 == 0);
+            array.put(element);
+        }
+        JSONObject object = new JSONObject();
+        object.put("items", array);
+        objectBytes = object.toString().getBytes("UTF-8");
+        arrayBytes = array.toString().getBytes("UTF-8");
+        connection = new NullConnection();
+    }
+
+    @Benchmark
+    public Object asString() throws Exception {
+        return parse(String.class, objectBytes);
+    }
+
+    @Benchmark
+    public Object asBytes() throws Exception {
+        return parse(Const.BYTE_ARRAY_CLASS, objectBytes);
+    }
+
+    @Benchmark
+    public Object asJsonObject() throws Exception {
+        return parse(JSONObject.class, objectBytes);
+    }
+
+    @Benchmark
+    public Object asJsonArray() throws Exception {
+        return parse(JSONArray.class, arrayBytes);
+    }
+
+    @Benchmark
+    public int asJsonArrayStream() throws Exception {
+        JsonArrayStream stream = (JsonArrayStream) parse(JsonArrayStream.class, arrayBytes);
+        int count = 0;
+        while (stream.hasNext()) {
+            stream.next();
+            ++count;
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object parse(Class clazz, byte[] bytes) throws Exception {
+        Response response = new Response(null);
+        response.connection = connection;
+        WebbUtils.parseResponseBody(clazz, response, new ByteArrayInputStream(bytes));
+        return response.getBody();
+    }
+}
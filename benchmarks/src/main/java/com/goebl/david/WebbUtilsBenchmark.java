@@ -0,0 +1,109 @@
+package com.goebl.david;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building requests: query strings, headers, payload serialization and compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebbUtilsBenchmark {
+
+    private Map<String, Object> params;
+    private Webb webb;
+    private Map<String, Object> requestHeaders;
+    private Request jsonRequest;
+    private Request stringRequest;
+    private Request formRequest;
+    private byte[] text;
+    private byte[] gzipped;
+
+    @Setup
+    public void setUp() throws Exception {
+        params = new LinkedHashMap<String, Object>();
+        params.put("q", "DavidWebb & friends");
+        params.put("page", 3);
+        params.put("size", 50);
+        params.put("sort", "name,asc");
+        params.put("umlauts", "äöüß");
+
+        webb = Webb.create();
+        webb.setDefaultHeader(Webb.HDR_USER_AGENT, "benchmark");
+        webb.setDefaultHeader(Webb.HDR_ACCEPT_ENCODING, "gzip");
+        requestHeaders = new LinkedHashMap<String, Object>();
+        requestHeaders.put("X-Request-Id", "4711");
+        requestHeaders.put(Webb.HDR_AUTHORIZATION, "Bearer abc");
+
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < 20; i++) {
+            json.put("key" + i, "value " + i);
+        }
+        jsonRequest = webb.post("/json").body(json);
+        stringRequest = webb.post("/text").body(json.toString());
+        formRequest = webb.post("/form").params(params);
+
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 16 * 1024) {
+            sb.append(json.toString());
+        }
+        text = sb.toString().getBytes("UTF-8");
+        gzipped = WebbUtils.gzip(text);
+    }
+
+    @Benchmark
+    public String queryString() {
+        return WebbUtils.queryString(params);
+    }
+
+    @Benchmark
+    public Map<String, Object> mergeHeaders() {
+        return webb.mergeHeaders(requestHeaders);
+    }
+
+    @Benchmark
+    public byte[] payloadJson() throws Exception {
+        return WebbUtils.getPayloadAsBytesAndSetContentType(new NullConnection(), jsonRequest, false, -1);
+    }
+
+    @Benchmark
+    public byte[] payloadString() throws Exception {
+        return WebbUtils.getPayloadAsBytesAndSetContentType(new NullConnection(), stringRequest, false, -1);
+    }
+
+    @Benchmark
+    public byte[] payloadForm() throws Exception {
+        return WebbUtils.getPayloadAsBytesAndSetContentType(new NullConnection(), formRequest, false, -1);
+    }
+
+    @Benchmark
+    public byte[] gzip() {
+        return WebbUtils.gzip(text);
+    }
+
+    @Benchmark
+    public void gunzip(Blackhole blackhole) throws Exception {
+        InputStream is = WebbUtils.wrapStream("gzip", new ByteArrayInputStream(gzipped));
+        blackhole.consume(WebbUtils.readBytes(is));
+    }
+}
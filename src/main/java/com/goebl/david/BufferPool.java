@@ -0,0 +1,59 @@
+package com.goebl.david;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A small, bounded pool of byte buffers for copying streams.
+ * <br>
+ * The pool is striped by thread to avoid contention. <code>ThreadLocal</code> buffers are not used on purpose:
+ * with virtual threads (or large thread pools) every thread would keep its own buffer forever.
+ * If the pool is empty, a new buffer is allocated; if it's full, released buffers are left to the GC.
+ *
+ * @since 1.3.1
+ */
+final class BufferPool {
+    /** size of the pooled buffers */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final int SLOTS = 32; // power of 2
+    private static final int PROBES = 4;
+
+    private static final AtomicReferenceArray<byte[]> slots = new AtomicReferenceArray<byte[]>(SLOTS);
+
+    private BufferPool() {}
+
+    /**
+     * @return a buffer with {@link #BUFFER_SIZE} bytes (content is undefined)
+     */
+    static byte[] acquire() {
+        int start = stripe();
+        for (int i = 0; i < PROBES; ++i) {
+            byte[] buffer = slots.getAndSet((start + i) & (SLOTS - 1), null);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Return a buffer to the pool. It must not be used by the caller afterwards.
+     * @param buffer a buffer from {@link #acquire()}
+     */
+    static void release(byte[] buffer) {
+        if (buffer == null || buffer.length != BUFFER_SIZE) {
+            return;
+        }
+        int start = stripe();
+        for (int i = 0; i < PROBES; ++i) {
+            if (slots.compareAndSet((start + i) & (SLOTS - 1), null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) * PROBES;
+    }
+}
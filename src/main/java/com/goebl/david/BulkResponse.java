@@ -0,0 +1,132 @@
+package com.goebl.david;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of {@link Webb#executeAll(java.util.Collection, Class, int)}.
+ * <br>
+ * For every request (in the order of the collection) either a <code>Response</code> or a
+ * <code>WebbException</code> is available. Besides the results it holds some timing information.
+ *
+ * @param <T> the type of the payload of the responses
+ * @since 1.3.1
+ */
+public class BulkResponse<T> {
+    final Response<T>[] responses;
+    final WebbException[] exceptions;
+    final long[] durationNanos;
+    long elapsedNanos;
+
+    @SuppressWarnings("unchecked")
+    BulkResponse(int size) {
+        responses = new Response[size];
+        exceptions = new WebbException[size];
+        durationNanos = new long[size];
+    }
+
+    /**
+     * @return the number of requests
+     */
+    public int size() {
+        return responses.length;
+    }
+
+    /**
+     * @param index the index of the request in the collection
+     * @return the response or <code>null</code> if the request failed with an exception
+     */
+    public Response<T> getResponse(int index) {
+        return responses[index];
+    }
+
+    /**
+     * @param index the index of the request in the collection
+     * @return the exception or <code>null</code> if a response has been received
+     */
+    public WebbException getException(int index) {
+        return exceptions[index];
+    }
+
+    /**
+     * @param index the index of the request in the collection
+     * @return <code>true</code> if a response with a 2xx status code has been received
+     */
+    public boolean isSuccess(int index) {
+        return responses[index] != null && responses[index].isSuccess();
+    }
+
+    /**
+     * @return all responses in the order of the requests (<code>null</code> elements for failed requests)
+     */
+    public List<Response<T>> getResponses() {
+        List<Response<T>> list = new ArrayList<Response<T>>(responses.length);
+        Collections.addAll(list, responses);
+        return list;
+    }
+
+    /**
+     * @return the number of requests with a 2xx status code
+     */
+    public int getSuccessCount() {
+        int count = 0;
+        for (int i = 0; i < responses.length; ++i) {
+            if (isSuccess(i)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of requests which failed with an exception or a non-2xx status code
+     */
+    public int getFailureCount() {
+        return responses.length - getSuccessCount();
+    }
+
+    /**
+     * @param index the index of the request in the collection
+     * @return the time in milliseconds it took to execute the request (including retries)
+     */
+    public long getDurationMillis(int index) {
+        return durationNanos[index] / 1000000L;
+    }
+
+    /**
+     * @return the wall-clock time in milliseconds for executing all requests
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000L;
+    }
+
+    /**
+     * @return the sum of the durations of all requests in milliseconds
+     */
+    public long getTotalMillis() {
+        long total = 0;
+        for (long nanos : durationNanos) {
+            total += nanos;
+        }
+        return total / 1000000L;
+    }
+
+    /**
+     * @return the duration of the slowest request in milliseconds
+     */
+    public long getMaxMillis() {
+        long max = 0;
+        for (long nanos : durationNanos) {
+            max = Math.max(max, nanos);
+        }
+        return max / 1000000L;
+    }
+
+    /**
+     * @return the number of requests per second
+     */
+    public double getThroughput() {
+        return elapsedNanos > 0 ? responses.length * 1e9 / elapsedNanos : 0.0;
+    }
+}
@@ -0,0 +1,282 @@
+package com.goebl.david;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A response stored in the {@link HttpCache} (immutable).
+ *
+ * @since 1.3.1
+ */
+final class CacheEntry {
+    private static final int FORMAT_VERSION = 1;
+
+    final String key;
+    final int statusCode;
+    final String responseMessage;
+    final Map<String, List<String>> headers;
+    /** values of the request headers named in <code>Vary</code> (lower case name -&gt; value) */
+    final Map<String, String> varyValues;
+    final byte[] body;
+    /** local time when the response was received (or revalidated) */
+    final long responseMillis;
+
+    CacheEntry(String key, int statusCode, String responseMessage, Map<String, List<String>> headers,
+               Map<String, String> varyValues, byte[] body, long responseMillis) {
+        this.key = key;
+        this.statusCode = statusCode;
+        this.responseMessage = responseMessage;
+        this.headers = headers;
+        this.varyValues = varyValues;
+        this.body = body;
+        this.responseMillis = responseMillis;
+    }
+
+    /**
+     * Creates an entry if the response may be stored and is worth storing (fresh for some time or revalidatable).
+     * @return the entry (without body) or <code>null</code> if the response is not cacheable
+     */
+    static CacheEntry create(String key, int statusCode, String responseMessage,
+                             Map<String, List<String>> responseHeaders,
+                             Map<String, List<String>> requestHeaders, long now) {
+        Map<String, List<String>> headers = Collections.unmodifiableMap(
+                new LinkedHashMap<String, List<String>>(responseHeaders));
+        CacheEntry entry = new CacheEntry(key, statusCode, responseMessage, headers, null, null, now);
+        if (cacheControl(entry.getHeader("Cache-Control")).containsKey("no-store")) {
+            return null;
+        }
+        Map<String, String> varyValues = new HashMap<String, String>();
+        String vary = entry.getHeader("Vary");
+        if (vary != null) {
+            for (String name : vary.split(",")) {
+                name = name.trim().toLowerCase(Locale.ENGLISH);
+                if (name.equals("*")) {
+                    return null;
+                }
+                if (name.length() > 0) {
+                    varyValues.put(name, getHeader(requestHeaders, name));
+                }
+            }
+        }
+        if (entry.getFreshnessLifetime() <= 0 && !entry.hasValidators()) {
+            return null;
+        }
+        return new CacheEntry(key, statusCode, responseMessage, headers, varyValues, null, now);
+    }
+
+    CacheEntry withBody(byte[] body) {
+        return new CacheEntry(key, statusCode, responseMessage, headers, varyValues, body, responseMillis);
+    }
+
+    /**
+     * Merges the headers of a <code>304 Not Modified</code> response (e.g. new expiration) into a copy.
+     */
+    CacheEntry revalidated(Map<String, List<String>> notModifiedHeaders, long now) {
+        Map<String, List<String>> merged = new LinkedHashMap<String, List<String>>(headers);
+        for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+            String name = header.getKey();
+            if (name == null || name.equalsIgnoreCase(Const.HDR_CONTENT_LENGTH)) {
+                continue;
+            }
+            for (String existing : new ArrayList<String>(merged.keySet())) {
+                if (existing.equalsIgnoreCase(name)) {
+                    merged.remove(existing);
+                }
+            }
+            merged.put(name, header.getValue());
+        }
+        return new CacheEntry(key, statusCode, responseMessage, Collections.unmodifiableMap(merged),
+                varyValues, body, now);
+    }
+
+    boolean matches(Map<String, List<String>> requestHeaders) {
+        for (Map.Entry<String, String> vary : varyValues.entrySet()) {
+            String value = getHeader(requestHeaders, vary.getKey());
+            if (value == null ? vary.getValue() != null : !value.equals(vary.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isFresh(long now) {
+        return getAge(now) < getFreshnessLifetime();
+    }
+
+    /**
+     * @return <code>true</code> if the response may be used for requests with other credentials
+     *         (<code>Cache-Control: public</code> or <code>s-maxage</code>)
+     */
+    boolean isShared() {
+        Map<String, String> cacheControl = cacheControl(getHeader("Cache-Control"));
+        return cacheControl.containsKey("public") || cacheControl.containsKey("s-maxage");
+    }
+
+    boolean hasValidators() {
+        return getHeader("ETag") != null || getHeader("Last-Modified") != null;
+    }
+
+    long getFreshnessLifetime() {
+        Map<String, String> cacheControl = cacheControl(getHeader("Cache-Control"));
+        if (cacheControl.containsKey("no-cache")) {
+            return 0L;
+        }
+        String maxAge = cacheControl.get("max-age");
+        if (maxAge != null) {
+            try {
+                return Long.parseLong(maxAge) * 1000L;
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        }
+        long expires = getHeaderDate("Expires", -1L);
+        if (expires >= 0) {
+            return Math.max(0L, expires - getHeaderDate("Date", responseMillis));
+        }
+        return 0L;
+    }
+
+    long getAge(long now) {
+        long age = Math.max(0L, now - responseMillis);
+        String ageHeader = getHeader("Age");
+        if (ageHeader != null) {
+            try {
+                age += Math.max(0L, Long.parseLong(ageHeader.trim()) * 1000L);
+            } catch (NumberFormatException ignored) {
+                // ignored
+            }
+        }
+        return age;
+    }
+
+    int getSize() {
+        int size = key.length() * 2 + 64;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                size += (header.getKey().length() + value.length()) * 2;
+            }
+        }
+        return size + (body != null ? body.length : 0);
+    }
+
+    String getHeader(String name) {
+        return getHeader(headers, name);
+    }
+
+    long getHeaderDate(String name, long defaultValue) {
+        String value = getHeader(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return WebbUtils.getRfc1123DateFormat().parse(value).getTime();
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return the last value of the header (like <code>HttpURLConnection</code>), <code>null</code> if not present
+     */
+    static String getHeader(Map<String, List<String>> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                List<String> values = header.getValue();
+                return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a <code>Cache-Control</code> header.
+     * @return directive (lower case) -&gt; argument (or empty string)
+     */
+    static Map<String, String> cacheControl(String value) {
+        Map<String, String> directives = new HashMap<String, String>();
+        if (value == null) {
+            return directives;
+        }
+        for (String directive : value.split(",")) {
+            int eq = directive.indexOf('=');
+            if (eq < 0) {
+                directives.put(directive.trim().toLowerCase(Locale.ENGLISH), "");
+            } else {
+                String argument = directive.substring(eq + 1).trim();
+                if (argument.startsWith("\"") && argument.endsWith("\"") && argument.length() > 1) {
+                    argument = argument.substring(1, argument.length() - 1);
+                }
+                directives.put(directive.substring(0, eq).trim().toLowerCase(Locale.ENGLISH), argument);
+            }
+        }
+        return directives;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(key);
+        out.writeInt(statusCode);
+        out.writeBoolean(responseMessage != null);
+        if (responseMessage != null) {
+            out.writeUTF(responseMessage);
+        }
+        out.writeLong(responseMillis);
+        out.writeInt(headers.size());
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeInt(header.getValue().size());
+            for (String value : header.getValue()) {
+                out.writeUTF(value);
+            }
+        }
+        out.writeInt(varyValues.size());
+        for (Map.Entry<String, String> vary : varyValues.entrySet()) {
+            out.writeUTF(vary.getKey());
+            out.writeBoolean(vary.getValue() != null);
+            if (vary.getValue() != null) {
+                out.writeUTF(vary.getValue());
+            }
+        }
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    static CacheEntry readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("unsupported cache file format");
+        }
+        String key = in.readUTF();
+        int statusCode = in.readInt();
+        String responseMessage = in.readBoolean() ? in.readUTF() : null;
+        long responseMillis = in.readLong();
+        Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+        for (int i = in.readInt(); i > 0; --i) {
+            String name = in.readUTF();
+            List<String> values = new ArrayList<String>();
+            for (int j = in.readInt(); j > 0; --j) {
+                values.add(in.readUTF());
+            }
+            headers.put(name, Collections.unmodifiableList(values));
+        }
+        Map<String, String> varyValues = new HashMap<String, String>();
+        for (int i = in.readInt(); i > 0; --i) {
+            String name = in.readUTF();
+            varyValues.put(name, in.readBoolean() ? in.readUTF() : null);
+        }
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new CacheEntry(key, statusCode, responseMessage, Collections.unmodifiableMap(headers),
+                varyValues, body, responseMillis);
+    }
+}
@@ -0,0 +1,285 @@
+package com.goebl.david;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers requests from the {@link HttpCache} or forwards them to the real connection (and stores the response).
+ * <br>
+ * The decision is taken when the response is requested the first time (<code>connect()</code> or
+ * <code>getResponseCode()</code>), because only then all request properties are known.
+ *
+ * @since 1.3.1
+ */
+class CachingConnection implements Connection {
+    private static final String HDR_IF_NONE_MATCH = "If-None-Match";
+    private static final String HDR_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HDR_AUTHORIZATION = "Authorization";
+
+    private final HttpCache cache;
+    private final Connection delegate;
+    private final String uri;
+
+    private String method = "GET";
+    private boolean conditionalRequest;
+    /** the response belongs to the credentials of the request and must not be shared */
+    private boolean authorized;
+    private boolean resolved;
+    /** if not <code>null</code>, the response is served from this entry */
+    private CacheEntry entry;
+    /** <code>true</code> if the response is served from the cache without asking the server */
+    private boolean hit;
+    /** the body of a response which was too large for the cache (partly read already) */
+    private InputStream passThroughBody;
+
+    CachingConnection(HttpCache cache, Connection delegate, String uri) {
+        this.cache = cache;
+        this.delegate = delegate;
+        this.uri = uri;
+    }
+
+    public void setRequestMethod(String method) throws IOException {
+        this.method = method;
+        delegate.setRequestMethod(method);
+    }
+
+    public void setInstanceFollowRedirects(boolean followRedirects) {
+        delegate.setInstanceFollowRedirects(followRedirects);
+    }
+
+    public void setUseCaches(boolean useCaches) {
+        delegate.setUseCaches(useCaches);
+    }
+
+    public void setConnectTimeout(int timeout) {
+        delegate.setConnectTimeout(timeout);
+    }
+
+    public void setReadTimeout(int timeout) {
+        delegate.setReadTimeout(timeout);
+    }
+
+    public void setIfModifiedSince(long ifModifiedSince) {
+        // the caller wants to handle 304 by itself
+        conditionalRequest |= ifModifiedSince > 0;
+        delegate.setIfModifiedSince(ifModifiedSince);
+    }
+
+    public void addRequestProperty(String name, String value) {
+        checkRequestProperty(name);
+        delegate.addRequestProperty(name, value);
+    }
+
+    public void setRequestProperty(String name, String value) {
+        checkRequestProperty(name);
+        delegate.setRequestProperty(name, value);
+    }
+
+    public Map<String, List<String>> getRequestProperties() {
+        return delegate.getRequestProperties();
+    }
+
+    public void setFixedLengthStreamingMode(int contentLength) {
+        delegate.setFixedLengthStreamingMode(contentLength);
+    }
+
+    public void setChunkedStreamingMode(int chunkLength) {
+        delegate.setChunkedStreamingMode(chunkLength);
+    }
+
+    public void setDoOutput(boolean doOutput) {
+        delegate.setDoOutput(doOutput);
+    }
+
+    public OutputStream getOutputStream() throws IOException {
+        resolve();
+        return delegate.getOutputStream();
+    }
+
+    public void connect() throws IOException {
+        resolve();
+        if (entry == null) {
+            delegate.connect();
+        }
+    }
+
+    public int getResponseCode() throws IOException {
+        resolve();
+        return entry != null ? entry.statusCode : delegate.getResponseCode();
+    }
+
+    public String getResponseMessage() throws IOException {
+        resolve();
+        return entry != null ? entry.responseMessage : delegate.getResponseMessage();
+    }
+
+    public InputStream getInputStream() throws IOException {
+        resolve();
+        if (entry != null) {
+            return new ByteArrayInputStream(entry.body);
+        }
+        return passThroughBody != null ? passThroughBody : delegate.getInputStream();
+    }
+
+    public InputStream getErrorStream() {
+        return entry != null ? null : delegate.getErrorStream();
+    }
+
+    public String getContentEncoding() {
+        return getHeaderField(Const.HDR_CONTENT_ENCODING);
+    }
+
+    public String getContentType() {
+        return getHeaderField(Const.HDR_CONTENT_TYPE);
+    }
+
+    public long getDate() {
+        return getHeaderFieldDate("Date", 0L);
+    }
+
+    public long getExpiration() {
+        return getHeaderFieldDate("Expires", 0L);
+    }
+
+    public long getLastModified() {
+        return getHeaderFieldDate("Last-Modified", 0L);
+    }
+
+    public String getHeaderField(String name) {
+        if (entry == null) {
+            return delegate.getHeaderField(name);
+        }
+        if (name == null) {
+            return "HTTP/1.1 " + entry.statusCode + (entry.responseMessage != null ? " " + entry.responseMessage : "");
+        }
+        return entry.getHeader(name);
+    }
+
+    public Map<String, List<String>> getHeaderFields() {
+        return entry != null ? entry.headers : delegate.getHeaderFields();
+    }
+
+    public long getHeaderFieldDate(String name, long defaultValue) {
+        return entry != null ? entry.getHeaderDate(name, defaultValue) : delegate.getHeaderFieldDate(name, defaultValue);
+    }
+
+    public int getHeaderFieldInt(String name, int defaultValue) {
+        if (entry == null) {
+            return delegate.getHeaderFieldInt(name, defaultValue);
+        }
+        try {
+            String value = entry.getHeader(name);
+            return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public void disconnect() {
+        delegate.disconnect();
+    }
+
+    /**
+     * @return the connection of the transport, or <code>null</code> if the response is served from the cache
+     *         without asking the server
+     */
+    Connection getNetworkConnection() {
+        return hit ? null : delegate;
+    }
+
+    private void checkRequestProperty(String name) {
+        if (HDR_IF_NONE_MATCH.equalsIgnoreCase(name) || HDR_IF_MODIFIED_SINCE.equalsIgnoreCase(name)) {
+            conditionalRequest = true;
+        } else if (HDR_AUTHORIZATION.equalsIgnoreCase(name)) {
+            // HttpURLConnection hides this header in getRequestProperties(), so it must be noticed here
+            authorized = true;
+        }
+    }
+
+    private void resolve() throws IOException {
+        if (resolved) {
+            return;
+        }
+        resolved = true;
+
+        if (!"GET".equals(method)) {
+            if (!"HEAD".equals(method) && !"OPTIONS".equals(method)) {
+                cache.remove(uri); // the resource is probably changed
+            }
+            return;
+        }
+        Map<String, List<String>> requestHeaders = delegate.getRequestProperties();
+        Map<String, String> cacheControl = CacheEntry.cacheControl(CacheEntry.getHeader(requestHeaders, "Cache-Control"));
+        if (conditionalRequest || cacheControl.containsKey("no-store")) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        CacheEntry cached = cache.get(uri);
+        if (cached != null && (!cached.matches(requestHeaders) || (authorized && !cached.isShared()))) {
+            cached = null;
+        }
+        boolean revalidate = cacheControl.containsKey("no-cache") || "0".equals(cacheControl.get("max-age"));
+        if (cached != null && !revalidate && cached.isFresh(now)) {
+            cache.recordHit();
+            hit = true;
+            entry = cached;
+            return;
+        }
+        if (cached != null) {
+            String etag = cached.getHeader("ETag");
+            if (etag != null) {
+                delegate.setRequestProperty(HDR_IF_NONE_MATCH, etag);
+            }
+            String lastModified = cached.getHeader("Last-Modified");
+            if (lastModified != null) {
+                delegate.setRequestProperty(HDR_IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+
+        int statusCode = delegate.getResponseCode();
+        if (statusCode == 304 && cached != null) {
+            cache.recordRevalidation();
+            entry = cached.revalidated(delegate.getHeaderFields(), now);
+            cache.put(entry);
+            return;
+        }
+        cache.recordMiss();
+        if (statusCode != 200) {
+            return;
+        }
+        CacheEntry candidate = CacheEntry.create(uri, statusCode, delegate.getResponseMessage(),
+                delegate.getHeaderFields(), requestHeaders, now);
+        int maxSize = cache.getMaxEntrySize();
+        if (candidate == null || (authorized && !candidate.isShared())
+                || delegate.getHeaderFieldInt(Const.HDR_CONTENT_LENGTH, -1) > maxSize) {
+            return;
+        }
+
+        InputStream is = delegate.getInputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = BufferPool.acquire();
+        try {
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+                if (bytes.size() > maxSize) {
+                    // too large - hand over what we have and the rest of the stream
+                    passThroughBody = new SequenceInputStream(new ByteArrayInputStream(bytes.toByteArray()), is);
+                    return;
+                }
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+        is.close();
+        entry = candidate.withBody(bytes.toByteArray());
+        cache.put(entry);
+    }
+}
@@ -0,0 +1,25 @@
+package com.goebl.david;
+
+/**
+ * Receives the outcome of an asynchronously executed request (see {@link ResponseFuture#addCallback(Callback)}).
+ * <br>
+ * The methods are called by the thread which completed the request, so they should return quickly.
+ *
+ * @since 1.3.1
+ */
+public interface Callback<T> {
+
+    /**
+     * Called when the request has been executed (this does not mean the status code is 2xx,
+     * unless {@link Request#ensureSuccess()} has been used).
+     * @param response the response of the request
+     */
+    void onSuccess(Response<T> response);
+
+    /**
+     * Called when the request failed or has been cancelled.
+     * @param exception the exception; in case of cancellation the cause is a
+     *                  {@link java.util.concurrent.CancellationException}.
+     */
+    void onFailure(WebbException exception);
+}
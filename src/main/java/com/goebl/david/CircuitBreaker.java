@@ -0,0 +1,235 @@
+package com.goebl.david;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An {@link Interceptor} which stops sending requests to a host after too many of them failed.
+ * <br>
+ * For every host (scheme, host and port) the outcome of the last requests is recorded in a sliding window.
+ * A request failed if the {@link RetryManager} of the <code>Webb</code> instance considers the response
+ * worth a retry ({@link RetryManager#isRetryUseful(Response)}, e.g. 503) or the exception recoverable
+ * ({@link RetryManager#isRecoverable(WebbException)}), or if the connection could not be established at all
+ * (any <code>IOException</code>). Other exceptions are not counted.
+ * <ul>
+ *     <li><b>closed</b>: requests are executed. If the failure rate in the window reaches the threshold
+ *     (and a minimum of requests has been recorded), the circuit opens.</li>
+ *     <li><b>open</b>: requests fail immediately with a {@link CircuitOpenException} without opening a
+ *     connection (and without retries). After the open duration the circuit becomes half-open.</li>
+ *     <li><b>half-open</b>: a limited number of trial requests is executed. If they succeed, the circuit
+ *     closes, otherwise it opens again.</li>
+ * </ul>
+ * Register the circuit breaker as first interceptor, so it protects all later ones:
+ * <pre><code>
+ * Webb webb = Webb.builder().interceptor(new CircuitBreaker()).build();
+ * </code></pre>
+ * The circuit breaker is thread-safe and can be shared by several <code>Webb</code> instances.
+ * Configure it before it is used.
+ *
+ * @since 1.3.1
+ */
+public class CircuitBreaker implements Interceptor {
+
+    /**
+     * The states of the circuit of a host.
+     */
+    public enum State {
+        /** requests are executed and their outcome is recorded */
+        CLOSED,
+        /** requests fail immediately */
+        OPEN,
+        /** some trial requests are executed to find out if the host is available again */
+        HALF_OPEN
+    }
+
+    private final ConcurrentHashMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    private double failureRateThreshold = 0.5;
+    private int windowSize = 20;
+    private int minimumRequests = 10;
+    private long openMillis = 30000L;
+    private int trialRequests = 1;
+
+    /**
+     * Create a circuit breaker which opens if 50% of the last 20 requests (at least 10) failed, stays open
+     * for 30 seconds and closes again after one successful trial request.
+     */
+    public CircuitBreaker() {
+    }
+
+    /**
+     * Set when the circuit opens.
+     *
+     * @param failureRateThreshold the ratio of failed requests which opens the circuit (<code>0 &lt; x &lt;= 1</code>)
+     * @param windowSize the number of most recent requests per host which are considered
+     * @param minimumRequests the minimum number of requests in the window before the circuit may open
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public CircuitBreaker failureRate(double failureRateThreshold, int windowSize, int minimumRequests) {
+        if (failureRateThreshold <= 0.0 || failureRateThreshold > 1.0) {
+            throw new IllegalArgumentException("failureRateThreshold must be > 0 and <= 1");
+        }
+        if (windowSize < 1 || minimumRequests < 1 || minimumRequests > windowSize) {
+            throw new IllegalArgumentException(
+                    "windowSize and minimumRequests must be > 0, minimumRequests must be <= windowSize");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.windowSize = windowSize;
+        this.minimumRequests = minimumRequests;
+        return this;
+    }
+
+    /**
+     * Set how long the circuit stays open and how many trial requests must succeed to close it again.
+     *
+     * @param openMillis the time in milliseconds the circuit stays open before trial requests are let through
+     * @param trialRequests the number of successful trial requests needed to close the circuit
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public CircuitBreaker openDuration(long openMillis, int trialRequests) {
+        if (openMillis < 0 || trialRequests < 1) {
+            throw new IllegalArgumentException("openMillis must be >= 0 and trialRequests > 0");
+        }
+        this.openMillis = openMillis;
+        this.trialRequests = trialRequests;
+        return this;
+    }
+
+    /**
+     * @param host the origin like <code>https://api.example.com</code> or any URI of the host
+     * @return the current state of the circuit for the host
+     */
+    public State getState(String host) {
+        Circuit circuit = circuits.get(WebbUtils.hostKey(host));
+        return circuit == null ? State.CLOSED : circuit.getState(System.currentTimeMillis());
+    }
+
+    /**
+     * Close all circuits and forget all recorded outcomes.
+     */
+    public void reset() {
+        circuits.clear();
+    }
+
+    public <T> Response<T> intercept(Chain<T> chain) {
+        Request request = chain.getRequest();
+        String host = WebbUtils.hostKey(request.uri);
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit();
+            Circuit existing = circuits.putIfAbsent(host, circuit);
+            if (existing != null) {
+                circuit = existing;
+            }
+        }
+        int trial = circuit.acquire(host, System.currentTimeMillis());
+
+        RetryManager retryManager = request.webb.retryManager();
+        Response<T> response;
+        try {
+            response = chain.proceed(request);
+        } catch (WebbException e) {
+            if (e.getCause() instanceof IOException || retryManager.isRecoverable(e)) {
+                circuit.record(trial, true, System.currentTimeMillis());
+            } else {
+                circuit.ignore(trial);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            circuit.ignore(trial);
+            throw e;
+        }
+        circuit.record(trial, retryManager.isRetryUseful(response), System.currentTimeMillis());
+        return response;
+    }
+
+    /**
+     * The state of one host. Access is synchronized, contention is low because the critical sections are tiny.
+     */
+    private class Circuit {
+        private final boolean[] outcomes = new boolean[windowSize];
+        private int count;
+        private int next;
+        private int failures;
+        private State state = State.CLOSED;
+        private long openUntil;
+        /** counts the half-open periods, so trial requests of an earlier one are recognized */
+        private int halfOpenPeriod;
+        private int trialsStarted;
+        private int trialsSucceeded;
+
+        synchronized State getState(long now) {
+            return state == State.OPEN && now >= openUntil ? State.HALF_OPEN : state;
+        }
+
+        /**
+         * @return the half-open period if the request is a trial request, <code>0</code> otherwise
+         */
+        synchronized int acquire(String host, long now) {
+            if (state == State.OPEN) {
+                if (now < openUntil) {
+                    throw new CircuitOpenException(host, openUntil - now);
+                }
+                state = State.HALF_OPEN;
+                ++halfOpenPeriod;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialsStarted >= trialRequests) {
+                    // the trial requests are still running
+                    throw new CircuitOpenException(host, 0L);
+                }
+                ++trialsStarted;
+                return halfOpenPeriod;
+            }
+            return 0;
+        }
+
+        synchronized void record(int trial, boolean failed, long now) {
+            if (state == State.HALF_OPEN) {
+                if (trial != halfOpenPeriod) {
+                    return; // a request started before the circuit opened, it says nothing about the host now
+                }
+                if (failed) {
+                    open(now);
+                } else if (++trialsSucceeded >= trialRequests) {
+                    state = State.CLOSED;
+                    count = 0;
+                    next = 0;
+                    failures = 0;
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                return; // a request started before the circuit opened
+            }
+            if (count == outcomes.length) {
+                if (outcomes[next]) {
+                    --failures;
+                }
+            } else {
+                ++count;
+            }
+            outcomes[next] = failed;
+            next = (next + 1) % outcomes.length;
+            if (failed) {
+                ++failures;
+            }
+            if (count >= minimumRequests && failures >= failureRateThreshold * count) {
+                open(now);
+            }
+        }
+
+        synchronized void ignore(int trial) {
+            if (state == State.HALF_OPEN && trial == halfOpenPeriod) {
+                --trialsStarted;
+            }
+        }
+
+        private void open(long now) {
+            state = State.OPEN;
+            openUntil = now + openMillis;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.goebl.david;
+
+/**
+ * Thrown instead of executing a request while the {@link CircuitBreaker} for the host is open.
+ * <br>
+ * No connection has been opened, so this exception is thrown immediately. It's not recoverable
+ * in terms of {@link RetryManager#isRecoverable(WebbException)}, so no retries are attempted.
+ *
+ * @since 1.3.1
+ */
+public class CircuitOpenException extends WebbException {
+
+    private final String host;
+    private final long remainingMillis;
+
+    public CircuitOpenException(String host, long remainingMillis) {
+        super("circuit open for " + host + ", retry in " + remainingMillis + "ms");
+        this.host = host;
+        this.remainingMillis = remainingMillis;
+    }
+
+    /**
+     * @return the host (origin, e.g. <code>https://api.example.com</code>) which is considered unavailable
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the time until the next request to the host will be let through (for a trial), in milliseconds
+     */
+    public long getRemainingMillis() {
+        return remainingMillis;
+    }
+}
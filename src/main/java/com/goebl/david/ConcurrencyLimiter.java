@@ -0,0 +1,257 @@
+package com.goebl.david;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link Interceptor} which limits the number of concurrent requests per host (bulkhead).
+ * <br>
+ * If the limit of a host (scheme, host and port) is reached, further requests wait until a running request
+ * finishes. If too many requests are waiting already, or if waiting takes too long, the request fails with a
+ * {@link LimitExceededException} without opening a connection; a request never waits beyond its deadline
+ * (see {@link Request#deadline(long)}). Asynchronous requests wait on the thread of
+ * the executor. A slot is freed as soon as the response has been received, for streamed responses
+ * (<code>asStream()</code>) this is before the body is read.
+ * <br>
+ * In adaptive mode the limit of every host is adjusted with AIMD (additive increase, multiplicative decrease):
+ * it grows by about one per round-trip as long as requests succeed with a latency close to the lowest latency
+ * observed, and shrinks by 10% when a request fails (see {@link RetryManager#isRetryUseful(Response)}, connection
+ * errors, 429) or its latency exceeds the lowest latency by the given tolerance. This way the limit settles
+ * around the concurrency the host can sustain without queueing.
+ * <pre><code>
+ * Webb webb = Webb.builder()
+ *         .interceptor(new ConcurrencyLimiter(20).queue(100, 5000).adaptive(2, 200, 2.0))
+ *         .build();
+ * </code></pre>
+ * The limiter is thread-safe and can be shared by several <code>Webb</code> instances.
+ * Configure it before it is used.
+ *
+ * @since 1.3.1
+ */
+public class ConcurrencyLimiter implements Interceptor {
+
+    /** factor for the multiplicative decrease */
+    private static final double BACKOFF_RATIO = 0.9;
+    /** number of samples after which the lowest latency is measured again (the host might have become slower) */
+    private static final int MIN_LATENCY_WINDOW = 1000;
+
+    private final ConcurrentHashMap<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+
+    private final int initialLimit;
+    private int maxQueued = Integer.MAX_VALUE;
+    private long maxWaitMillis = 10000L;
+    private boolean adaptive;
+    private int minLimit;
+    private int maxLimit;
+    private double tolerance;
+
+    /**
+     * Create a limiter with a fixed limit per host, an unbounded queue and a maximum waiting time of 10 seconds.
+     *
+     * @param maxConcurrency the maximum number of concurrent requests per host (initial limit in adaptive mode)
+     */
+    public ConcurrencyLimiter(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be > 0");
+        }
+        this.initialLimit = maxConcurrency;
+    }
+
+    /**
+     * Set how many requests may wait for a free slot and for how long.
+     *
+     * @param maxQueued the maximum number of waiting requests per host, <code>0</code> to reject immediately
+     * @param maxWaitMillis the maximum time in milliseconds a request waits for a free slot
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public ConcurrencyLimiter queue(int maxQueued, long maxWaitMillis) {
+        if (maxQueued < 0 || maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxQueued and maxWaitMillis must be >= 0");
+        }
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        return this;
+    }
+
+    /**
+     * Adjust the limit of every host automatically (AIMD).
+     *
+     * @param minLimit the limit never gets lower than this
+     * @param maxLimit the limit never gets higher than this
+     * @param tolerance a request is considered slow (like a failure) if its latency is more than
+     *                  <code>tolerance</code> times the lowest latency observed, e.g. <code>2.0</code>
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public ConcurrencyLimiter adaptive(int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || tolerance <= 1.0) {
+            throw new IllegalArgumentException("required: 0 < minLimit <= maxLimit and tolerance > 1");
+        }
+        this.adaptive = true;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * @param host the origin like <code>https://api.example.com</code> or any URI of the host
+     * @return the current limit of concurrent requests for the host
+     */
+    public int getLimit(String host) {
+        Limit limit = limits.get(WebbUtils.hostKey(host));
+        return limit == null ? initialLimit : limit.getLimit();
+    }
+
+    /**
+     * @param host the origin like <code>https://api.example.com</code> or any URI of the host
+     * @return the number of requests to the host which are currently running
+     */
+    public int getInFlight(String host) {
+        Limit limit = limits.get(WebbUtils.hostKey(host));
+        return limit == null ? 0 : limit.getInFlight();
+    }
+
+    /**
+     * @param host the origin like <code>https://api.example.com</code> or any URI of the host
+     * @return the number of requests to the host which are currently waiting for a free slot
+     */
+    public int getQueued(String host) {
+        Limit limit = limits.get(WebbUtils.hostKey(host));
+        return limit == null ? 0 : limit.getQueued();
+    }
+
+    public <T> Response<T> intercept(Chain<T> chain) {
+        Request request = chain.getRequest();
+        String host = WebbUtils.hostKey(request.uri);
+        Limit limit = limits.get(host);
+        if (limit == null) {
+            limit = new Limit();
+            Limit existing = limits.putIfAbsent(host, limit);
+            if (existing != null) {
+                limit = existing;
+            }
+        }
+        limit.acquire(host, Math.max(0L, Math.min(maxWaitMillis, request.remainingMillis())));
+
+        long start = System.nanoTime();
+        boolean overloaded = false;
+        try {
+            Response<T> response = chain.proceed(request);
+            overloaded = response.getStatusCode() == 429 || request.webb.retryManager().isRetryUseful(response);
+            return response;
+        } catch (WebbException e) {
+            overloaded = e.getCause() instanceof IOException;
+            throw e;
+        } finally {
+            limit.release(System.nanoTime() - start, overloaded);
+        }
+    }
+
+    /**
+     * The state of one host, guarded by its lock. Waiting uses a <code>Condition</code> instead of the monitor,
+     * so queued virtual threads don't pin their carrier threads.
+     */
+    private class Limit {
+        private final Lock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        private double limit = adaptive ? Math.max(minLimit, Math.min(maxLimit, initialLimit)) : initialLimit;
+        private int inFlight;
+        private int queued;
+        private long minLatency = Long.MAX_VALUE;
+        private long windowMinLatency = Long.MAX_VALUE;
+        private int samples;
+
+        int getLimit() {
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getInFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getQueued() {
+            lock.lock();
+            try {
+                return queued;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void acquire(String host, long waitMillis) {
+            lock.lock();
+            try {
+                if (inFlight < (int) limit) {
+                    ++inFlight;
+                    return;
+                }
+                if (queued >= maxQueued) {
+                    throw new LimitExceededException("too many concurrent requests", host);
+                }
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+                ++queued;
+                try {
+                    while (inFlight >= (int) limit) {
+                        if (remainingNanos <= 0) {
+                            throw new LimitExceededException("timeout waiting for a free slot", host);
+                        }
+                        remainingNanos = released.awaitNanos(remainingNanos);
+                    }
+                    ++inFlight;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new WebbException(e);
+                } finally {
+                    --queued;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long latencyNanos, boolean overloaded) {
+            lock.lock();
+            try {
+                --inFlight;
+                if (adaptive) {
+                    adapt(latencyNanos, overloaded);
+                }
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adapt(long latencyNanos, boolean overloaded) {
+            if (++samples >= MIN_LATENCY_WINDOW) {
+                // start a new window, so the lowest latency can grow again
+                minLatency = windowMinLatency;
+                windowMinLatency = Long.MAX_VALUE;
+                samples = 0;
+            }
+            windowMinLatency = Math.min(windowMinLatency, latencyNanos);
+            minLatency = Math.min(minLatency, latencyNanos);
+
+            if (overloaded || latencyNanos > minLatency * tolerance) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else if (inFlight + 1 >= limit / 2) {
+                // only grow if the limit is actually used, otherwise it would grow without bounds
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.goebl.david;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single HTTP exchange as seen by {@link Webb}, opened by a {@link Transport}.
+ * <br>
+ * The methods are modelled after {@link java.net.HttpURLConnection}, which is the default implementation
+ * (see {@link HttpUrlConnectionTransport}). The life-cycle is the same: first the request is configured
+ * (method, timeouts, headers), then the body is written (if any) or {@link #connect()} is called,
+ * then status, headers and body of the response can be read.
+ *
+ * @since 1.3.1
+ */
+public interface Connection {
+
+    /**
+     * Set the HTTP method (GET, POST, PUT, DELETE).
+     * @param method the method name
+     * @throws IOException if the method is not supported by the transport
+     */
+    void setRequestMethod(String method) throws IOException;
+
+    /**
+     * @param followRedirects <code>true</code> to automatically follow redirects (HTTP status code 3xx)
+     */
+    void setInstanceFollowRedirects(boolean followRedirects);
+
+    /**
+     * @param useCaches <code>true</code> if the transport is allowed to use caching whenever it can
+     */
+    void setUseCaches(boolean useCaches);
+
+    /**
+     * @param timeout timeout in milliseconds for connecting the server, <code>0</code> means infinite
+     */
+    void setConnectTimeout(int timeout);
+
+    /**
+     * @param timeout timeout in milliseconds for reading from the server, <code>0</code> means infinite
+     */
+    void setReadTimeout(int timeout);
+
+    /**
+     * @param ifModifiedSince time as the number of milliseconds since January 1, 1970, GMT
+     */
+    void setIfModifiedSince(long ifModifiedSince);
+
+    /**
+     * Add a request header (an existing value with the same name is not replaced).
+     * @param name name of the header
+     * @param value value of the header
+     */
+    void addRequestProperty(String name, String value);
+
+    /**
+     * Set a request header (an existing value with the same name is replaced).
+     * @param name name of the header
+     * @param value value of the header
+     */
+    void setRequestProperty(String name, String value);
+
+    /**
+     * @return the request headers set so far (read-only)
+     */
+    Map<String, List<String>> getRequestProperties();
+
+    /**
+     * @param contentLength the number of bytes which will be written to the output stream
+     */
+    void setFixedLengthStreamingMode(int contentLength);
+
+    /**
+     * @param chunkLength number of bytes per chunk or <code>-1</code> for the default chunk size
+     */
+    void setChunkedStreamingMode(int chunkLength);
+
+    /**
+     * @param doOutput <code>true</code> if a request body will be written
+     */
+    void setDoOutput(boolean doOutput);
+
+    /**
+     * @return the stream for writing the request body
+     * @throws IOException in case of network errors
+     */
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * Send the request when there is no request body.
+     * @throws IOException in case of network errors
+     */
+    void connect() throws IOException;
+
+    /**
+     * @return the HTTP status code (sends the request if not already done)
+     * @throws IOException in case of network errors
+     */
+    int getResponseCode() throws IOException;
+
+    /**
+     * @return the text explaining the status code
+     * @throws IOException in case of network errors
+     */
+    String getResponseMessage() throws IOException;
+
+    /**
+     * @return stream of the response body in case of success
+     * @throws IOException in case of network errors or error status codes
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * @return stream of the response body in case of error status codes or <code>null</code>
+     */
+    InputStream getErrorStream();
+
+    /**
+     * @return value of the "Content-Encoding" header or <code>null</code>
+     */
+    String getContentEncoding();
+
+    /**
+     * @return value of the "Content-Type" header or <code>null</code>
+     */
+    String getContentType();
+
+    /**
+     * @return the parsed "Date" header as millis or <code>0</code>
+     */
+    long getDate();
+
+    /**
+     * @return the parsed "Expires" header as millis or <code>0</code>
+     */
+    long getExpiration();
+
+    /**
+     * @return the parsed "Last-Modified" header as millis or <code>0</code>
+     */
+    long getLastModified();
+
+    /**
+     * @param name name of the header field, <code>null</code> returns the status line
+     * @return the value of the named header field, or <code>null</code>
+     */
+    String getHeaderField(String name);
+
+    /**
+     * @return all response header fields (names as sent by the server), without the status line
+     */
+    Map<String, List<String>> getHeaderFields();
+
+    /**
+     * @param name name of the header field
+     * @param defaultValue the default value if the field is not present or malformed
+     * @return the value of the named header field parsed as millis, or the given default value
+     */
+    long getHeaderFieldDate(String name, long defaultValue);
+
+    /**
+     * @param name name of the header field
+     * @param defaultValue the default value if the field is not present or malformed
+     * @return the value of the named header field parsed as number, or the given default value
+     */
+    int getHeaderFieldInt(String name, int defaultValue);
+
+    /**
+     * Release all resources held by this exchange.
+     */
+    void disconnect();
+}
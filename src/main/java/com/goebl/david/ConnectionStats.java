@@ -0,0 +1,107 @@
+package com.goebl.david;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how connections of a {@link Webb} instance end (see {@link Webb#getConnectionStats()}).
+ * <br>
+ * After a request the remaining bytes of the response body are read (drained) and the stream is closed,
+ * so the HTTP engine can keep the connection alive and use it for the next request to the same host.
+ * A connection is only disconnected (and the next request has to pay for a new TCP and TLS handshake)
+ * if this is not possible: the request failed, was cancelled, or more than 64 KiB were left unread.
+ * <br>
+ * <code>HttpURLConnection</code> does not tell whether a request actually got a pooled connection,
+ * so the number of released connections is the upper bound of possible reuses. Counting is lock-free.
+ *
+ * @since 1.3.1
+ */
+public class ConnectionStats {
+    /** at most this many unread bytes are drained to release a connection, larger rests are disconnected */
+    static final int DRAIN_LIMIT = 64 * 1024;
+
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong drainedBytes = new AtomicLong();
+
+    /**
+     * @return the number of connections handed back to the HTTP engine for reuse (keep-alive)
+     */
+    public long getReleased() {
+        return released.get();
+    }
+
+    /**
+     * @return the number of connections which have been disconnected
+     */
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    /**
+     * @return the number of unread bytes which have been drained to release connections
+     */
+    public long getDrainedBytes() {
+        return drainedBytes.get();
+    }
+
+    /**
+     * Reset all counters.
+     */
+    public void reset() {
+        released.set(0L);
+        discarded.set(0L);
+        drainedBytes.set(0L);
+    }
+
+    @Override
+    public String toString() {
+        return "released=" + getReleased() + " discarded=" + getDiscarded() + " drained=" + getDrainedBytes();
+    }
+
+    /**
+     * Read the rest of the body and close the stream, disconnect if this fails or takes too long.
+     *
+     * @param connection the connection of the response
+     * @param is the stream of the response body or <code>null</code>
+     * @param reusable <code>false</code> if the state of the connection is unknown (e.g. after an error)
+     */
+    void release(Connection connection, InputStream is, boolean reusable) {
+        if (is != null) {
+            if (reusable) {
+                reusable = drain(is);
+            }
+            try { is.close(); } catch (Exception ignored) {}
+        }
+        if (connection == null) {
+            return;
+        }
+        if (reusable) {
+            released.incrementAndGet();
+        } else {
+            discarded.incrementAndGet();
+            try { connection.disconnect(); } catch (Exception ignored) {}
+        }
+    }
+
+    private boolean drain(InputStream is) {
+        byte[] buffer = BufferPool.acquire();
+        long total = 0;
+        try {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                total += read;
+                if (total > DRAIN_LIMIT) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            BufferPool.release(buffer);
+            drainedBytes.addAndGet(total);
+        }
+    }
+}
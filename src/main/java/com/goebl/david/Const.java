@@ -11,13 +11,19 @@ class Const {
     static final String TEXT_PLAIN = "text/plain";
     static final String HDR_CONTENT_TYPE = "Content-Type";
     static final String HDR_CONTENT_ENCODING = "Content-Encoding";
+    static final String HDR_CONTENT_LENGTH = "Content-Length";
     static final String HDR_ACCEPT_ENCODING = "Accept-Encoding";
     static final String HDR_ACCEPT = "Accept";
     static final String HDR_USER_AGENT = "User-Agent";
+    static final String HDR_RETRY_AFTER = "Retry-After";
     static final String UTF8 = "utf-8";
 
     static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
     static final Class BYTE_ARRAY_CLASS = EMPTY_BYTE_ARRAY.getClass();
     /** Minimal number of bytes the compressed content must be smaller than uncompressed */
     static final int MIN_COMPRESSED_ADVANTAGE = 80;
+    /** Maximal number of bytes allocated in advance when the length of the response body is known */
+    static final int MAX_PRESIZE = 16 * 1024 * 1024;
+    /** Size of the internal buffer of GZIPOutputStream (default 512 is rather small) */
+    static final int GZIP_BUFFER_SIZE = 8192;
 }
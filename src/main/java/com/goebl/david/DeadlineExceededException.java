@@ -0,0 +1,28 @@
+package com.goebl.david;
+
+/**
+ * Thrown when the deadline of a request (see {@link Request#deadline(long)}) has passed before an attempt
+ * could be started, e.g. while an {@link Interceptor} made the request wait.
+ * <br>
+ * An attempt which is already running when the deadline passes fails with the usual
+ * {@link java.net.SocketTimeoutException} as cause, because its timeouts have been shortened.
+ * It's not recoverable in terms of {@link RetryManager#isRecoverable(WebbException)}.
+ *
+ * @since 1.3.1
+ */
+public class DeadlineExceededException extends WebbException {
+
+    private final long timeoutMillis;
+
+    public DeadlineExceededException(long timeoutMillis) {
+        super("deadline of " + timeoutMillis + "ms exceeded");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return the configured time for the whole request in milliseconds
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
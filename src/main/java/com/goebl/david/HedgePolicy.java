@@ -0,0 +1,125 @@
+package com.goebl.david;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Settings and statistics for hedged <code>GET</code> requests (see {@link Webb#setHedgePolicy(HedgePolicy)}).
+ * <br>
+ * If a <code>GET</code> request takes longer than the given percentile of the latencies observed so far,
+ * a second identical request is sent and the response which arrives first is used; the other request is
+ * cancelled (its connection is disconnected). This cuts the tail latency caused by single slow servers
+ * behind a load balancer for the price of a few additional requests.
+ * <br>
+ * The additional load is capped by a budget: every request earns <code>budgetRatio</code> hedge tokens
+ * (at most 10 are saved up), every hedged request costs one. Until 20 latencies have been recorded no
+ * requests are hedged. Latencies are weighted towards recent requests.
+ * <br>
+ * Only use hedging for idempotent requests, i.e. for servers where a <code>GET</code> doesn't change anything.
+ * One instance can be shared by several <code>Webb</code> instances calling the same service (it's thread-safe).
+ *
+ * @since 1.3.1
+ */
+public class HedgePolicy {
+    static final int MIN_SAMPLES = 20;
+    private static final int DECAY_SAMPLES = 2000;
+    private static final double MAX_TOKENS = 10.0;
+
+    private final double percentile;
+    private final long minDelayMillis;
+    private final double budgetRatio;
+
+    private final AtomicLongArray histogram = new AtomicLongArray(HistogramMetrics.BUCKETS);
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private double tokens;
+
+    /**
+     * Hedge requests slower than 95% of all requests (but at least 10ms), send at most 5% more requests.
+     */
+    public HedgePolicy() {
+        this(95.0, 10L, 0.05);
+    }
+
+    /**
+     * @param percentile the percentile of the latency after which a request is hedged, e.g. <code>95.0</code>
+     * @param minDelayMillis the minimum time in milliseconds to wait before hedging
+     * @param budgetRatio the maximum ratio of additional requests, e.g. <code>0.05</code> for 5%
+     */
+    public HedgePolicy(double percentile, long minDelayMillis, double budgetRatio) {
+        if (percentile <= 0.0 || percentile >= 100.0) {
+            throw new IllegalArgumentException("percentile must be > 0 and < 100");
+        }
+        if (minDelayMillis < 0 || budgetRatio < 0.0) {
+            throw new IllegalArgumentException("minDelayMillis and budgetRatio must be >= 0");
+        }
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.budgetRatio = budgetRatio;
+    }
+
+    /**
+     * @return the current delay in milliseconds after which a request is hedged,
+     *         <code>-1</code> if not enough latencies have been recorded yet
+     */
+    public long getDelayMillis() {
+        long total = 0;
+        for (int i = 0; i < HistogramMetrics.BUCKETS; ++i) {
+            total += histogram.get(i);
+        }
+        if (total < MIN_SAMPLES) {
+            return -1L;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < HistogramMetrics.BUCKETS; ++i) {
+            seen += histogram.get(i);
+            if (seen >= rank) {
+                return Math.max(minDelayMillis, HistogramMetrics.upperBound(i) / 1000L);
+            }
+        }
+        return Math.max(minDelayMillis, HistogramMetrics.upperBound(HistogramMetrics.BUCKETS - 1) / 1000L);
+    }
+
+    /**
+     * @return the number of requests executed with this policy
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of additional (hedged) requests
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    synchronized void recordRequest() {
+        requests.incrementAndGet();
+        tokens = Math.min(MAX_TOKENS, tokens + budgetRatio);
+    }
+
+    synchronized boolean acquireHedge() {
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    void recordLatency(long nanos) {
+        histogram.incrementAndGet(HistogramMetrics.bucket(nanos / 1000L));
+        if (samples.incrementAndGet() % DECAY_SAMPLES == 0) {
+            // halve all counts, so old latencies lose weight
+            for (int i = 0; i < HistogramMetrics.BUCKETS; ++i) {
+                long count;
+                do {
+                    count = histogram.get(i);
+                } while (!histogram.compareAndSet(i, count, count / 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.goebl.david;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link MetricsListener} collecting the durations of all request phases in histograms.
+ * <br>
+ * Durations are recorded in microseconds with logarithmic buckets (4 buckets per power of two), so
+ * percentiles have a relative error of at most 25% while the memory footprint is small and constant.
+ * Recording is lock-free and can be called from many threads concurrently.
+ * <pre><code>
+ * HistogramMetrics metrics = new HistogramMetrics();
+ * webb.setMetricsListener(metrics);
+ * ...
+ * double p99 = metrics.getPercentileMillis(RequestMetrics.Phase.TOTAL, 99.0);
+ * </code></pre>
+ *
+ * @since 1.3.1
+ */
+public class HistogramMetrics implements MetricsListener {
+    static final int SUB_BUCKETS = 4;
+    static final int BUCKETS = 42 * SUB_BUCKETS;
+
+    private final AtomicLongArray[] histograms = new AtomicLongArray[RequestMetrics.Phase.values().length];
+    private final AtomicLongArray sums = new AtomicLongArray(RequestMetrics.Phase.values().length);
+    private final AtomicLongArray statusClasses = new AtomicLongArray(6);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesSentUncompressed = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesReceivedDecoded = new AtomicLong();
+
+    public HistogramMetrics() {
+        for (int i = 0; i < histograms.length; ++i) {
+            histograms[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    public void onRequest(RequestMetrics metrics) {
+        for (RequestMetrics.Phase phase : RequestMetrics.Phase.values()) {
+            long micros = metrics.getNanos(phase) / 1000L;
+            histograms[phase.ordinal()].incrementAndGet(bucket(micros));
+            sums.addAndGet(phase.ordinal(), micros);
+        }
+        int statusCode = metrics.getStatusCode();
+        statusClasses.incrementAndGet(statusCode >= 100 && statusCode < 600 ? statusCode / 100 : 0);
+        if (metrics.getException() != null) {
+            failures.incrementAndGet();
+        }
+        retries.addAndGet(metrics.getRetries());
+        bytesSent.addAndGet(metrics.getBytesSent());
+        bytesSentUncompressed.addAndGet(metrics.getBytesSentUncompressed());
+        bytesReceived.addAndGet(metrics.getBytesReceived());
+        bytesReceivedDecoded.addAndGet(metrics.getBytesReceivedDecoded());
+        count.incrementAndGet();
+    }
+
+    /**
+     * @return the number of requests recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the number of requests which failed with an exception (no response received)
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return the sum of retries of all requests
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * @param statusClass <code>1</code> to <code>5</code> for 1xx to 5xx status codes, <code>0</code> for
+     *                    requests without a (valid) status code
+     * @return the number of requests with a status code of the given class
+     */
+    public long getStatusCount(int statusClass) {
+        return statusClasses.get(statusClass);
+    }
+
+    /**
+     * @return the sum of bytes sent (after compression)
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return the sum of bytes sent (before compression)
+     */
+    public long getBytesSentUncompressed() {
+        return bytesSentUncompressed.get();
+    }
+
+    /**
+     * @return the sum of bytes received (before decompression)
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return the sum of bytes received (after decompression)
+     */
+    public long getBytesReceivedDecoded() {
+        return bytesReceivedDecoded.get();
+    }
+
+    /**
+     * @param phase the phase of the requests
+     * @return the average duration in milliseconds or <code>0</code> if nothing has been recorded
+     */
+    public double getMeanMillis(RequestMetrics.Phase phase) {
+        long n = count.get();
+        return n == 0 ? 0.0 : sums.get(phase.ordinal()) / 1000.0 / n;
+    }
+
+    /**
+     * @param phase the phase of the requests
+     * @param percentile the percentile, e.g. <code>50.0</code> for the median or <code>99.9</code>
+     * @return the (upper bound of the) duration in milliseconds or <code>0</code> if nothing has been recorded
+     */
+    public double getPercentileMillis(RequestMetrics.Phase phase, double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        AtomicLongArray histogram = histograms[phase.ordinal()];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            total += histogram.get(i);
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += histogram.get(i);
+            if (seen >= rank) {
+                return upperBound(i) / 1000.0;
+            }
+        }
+        return upperBound(BUCKETS - 1) / 1000.0;
+    }
+
+    /**
+     * Forget everything recorded so far. Requests recorded concurrently might be partly lost.
+     */
+    public void reset() {
+        for (AtomicLongArray histogram : histograms) {
+            for (int i = 0; i < BUCKETS; ++i) {
+                histogram.set(i, 0L);
+            }
+        }
+        for (int i = 0; i < sums.length(); ++i) {
+            sums.set(i, 0L);
+        }
+        for (int i = 0; i < statusClasses.length(); ++i) {
+            statusClasses.set(i, 0L);
+        }
+        count.set(0L);
+        failures.set(0L);
+        retries.set(0L);
+        bytesSent.set(0L);
+        bytesSentUncompressed.set(0L);
+        bytesReceived.set(0L);
+        bytesReceivedDecoded.set(0L);
+    }
+
+    /**
+     * @return a multi-line report with count, mean, median, p90, p99 and max of every phase
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("requests=").append(getCount())
+                .append(" failures=").append(getFailureCount())
+                .append(" retries=").append(getRetryCount())
+                .append(" sent=").append(getBytesSent()).append('/').append(getBytesSentUncompressed())
+                .append(" received=").append(getBytesReceived()).append('/').append(getBytesReceivedDecoded())
+                .append('\n');
+        for (RequestMetrics.Phase phase : RequestMetrics.Phase.values()) {
+            sb.append(String.format(Locale.ENGLISH, "%-10s mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms%n",
+                    phase.name().toLowerCase(Locale.ENGLISH),
+                    getMeanMillis(phase),
+                    getPercentileMillis(phase, 50.0),
+                    getPercentileMillis(phase, 90.0),
+                    getPercentileMillis(phase, 99.0),
+                    getPercentileMillis(phase, 100.0)));
+        }
+        return sb.toString();
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return micros < 0 ? 0 : (int) micros;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int index = (msb - 1) * SUB_BUCKETS + (int) ((micros >> (msb - 2)) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int msb = bucket / SUB_BUCKETS + 1;
+        long width = 1L << (msb - 2);
+        return (SUB_BUCKETS + bucket % SUB_BUCKETS) * width + width - 1;
+    }
+}
@@ -0,0 +1,479 @@
+package com.goebl.david;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Transport} speaking HTTP/2 with the <code>java.net.http.HttpClient</code> of Java 11 or later.
+ * <br>
+ * All requests to a host share one connection (multiplexing), so many concurrent requests don't need a socket
+ * each. Flow control and the limit of concurrent streams announced by the server are handled by the
+ * <code>HttpClient</code>. If the server doesn't support HTTP/2 (no ALPN for <code>https</code>, no upgrade
+ * for <code>http</code>), HTTP/1.1 is used. The <code>HttpClient</code> is accessed via reflection, so the
+ * library still runs on older JVMs and Android, where this transport is not available.
+ * <pre><code>
+ * Webb webb = Webb.builder()
+ *         .transport(new Http2Transport())
+ *         .build();
+ * </code></pre>
+ * Differences to {@link HttpUrlConnectionTransport}:
+ * <ul>
+ *     <li>The <code>HttpClient</code> is created on first use with the {@link TlsConfig} and the proxy
+ *     of the <code>Webb</code> instance, so use one transport per configuration.
+ *     A custom <code>SSLSocketFactory</code> or <code>HostnameVerifier</code> is not supported.</li>
+ *     <li>Connect and read timeout are added up to a timeout for receiving the response headers,
+ *     reading the body has no timeout.</li>
+ *     <li>Request bodies are buffered in memory before they are sent.</li>
+ *     <li>HTTP/2 has no reason phrase, so {@link Response#getResponseMessage()} is <code>null</code>.</li>
+ * </ul>
+ * The transport is thread-safe.
+ *
+ * @since 1.3.1
+ */
+public class Http2Transport implements Transport {
+
+    private Object client;
+    private Object redirectingClient;
+
+    /**
+     * @throws UnsupportedOperationException if the JVM has no <code>java.net.http.HttpClient</code>
+     */
+    public Http2Transport() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("HTTP/2 requires Java 11 or later");
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the running JVM supports this transport
+     */
+    public static boolean isSupported() {
+        return Api.INSTANCE != null;
+    }
+
+    public Connection open(Webb webb, String uri) throws IOException {
+        try {
+            return new Http2Connection(this, webb, new URI(uri));
+        } catch (URISyntaxException e) {
+            throw new IOException("invalid URI: " + uri);
+        }
+    }
+
+    synchronized Object client(Webb webb, boolean followRedirects) {
+        Object result = followRedirects ? redirectingClient : client;
+        if (result == null) {
+            result = Api.INSTANCE.newClient(webb, followRedirects);
+            if (followRedirects) {
+                redirectingClient = result;
+            } else {
+                client = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The methods of <code>java.net.http</code>, looked up once.
+     */
+    private static final class Api {
+        static final Api INSTANCE = load();
+
+        /** headers the <code>HttpClient</code> sets itself and refuses to accept */
+        static final String[] RESTRICTED = {"connection", "content-length", "expect", "host", "upgrade"};
+
+        Method newClientBuilder;
+        Method version;
+        Method followRedirects;
+        Method sslContext;
+        Method proxy;
+        Method buildClient;
+        Object http2;
+        Object redirectNever;
+        Object redirectNormal;
+        Method proxySelectorOf;
+
+        Method newRequestBuilder;
+        Method method;
+        Method header;
+        Method timeout;
+        Method buildRequest;
+        Method ofByteArray;
+        Method noBody;
+        Method durationOfMillis;
+
+        Method sendAsync;
+        Object ofInputStream;
+        Method statusCode;
+        Method responseVersion;
+        Method headers;
+        Method headersMap;
+        Method body;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Api load() {
+            try {
+                Api api = new Api();
+                Class<?> clientClass = Class.forName("java.net.http.HttpClient");
+                Class<?> clientBuilderClass = Class.forName("java.net.http.HttpClient$Builder");
+                Class<?> versionClass = Class.forName("java.net.http.HttpClient$Version");
+                Class<?> redirectClass = Class.forName("java.net.http.HttpClient$Redirect");
+                Class<?> proxySelectorClass = Class.forName("java.net.ProxySelector");
+                Class<?> requestClass = Class.forName("java.net.http.HttpRequest");
+                Class<?> requestBuilderClass = Class.forName("java.net.http.HttpRequest$Builder");
+                Class<?> publisherClass = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+                Class<?> publishersClass = Class.forName("java.net.http.HttpRequest$BodyPublishers");
+                Class<?> handlerClass = Class.forName("java.net.http.HttpResponse$BodyHandler");
+                Class<?> handlersClass = Class.forName("java.net.http.HttpResponse$BodyHandlers");
+                Class<?> responseClass = Class.forName("java.net.http.HttpResponse");
+                Class<?> headersClass = Class.forName("java.net.http.HttpHeaders");
+                Class<?> durationClass = Class.forName("java.time.Duration");
+
+                api.newClientBuilder = clientClass.getMethod("newBuilder");
+                api.version = clientBuilderClass.getMethod("version", versionClass);
+                api.followRedirects = clientBuilderClass.getMethod("followRedirects", redirectClass);
+                api.sslContext = clientBuilderClass.getMethod("sslContext", SSLContext.class);
+                api.proxy = clientBuilderClass.getMethod("proxy", proxySelectorClass);
+                api.buildClient = clientBuilderClass.getMethod("build");
+                api.http2 = Enum.valueOf((Class) versionClass, "HTTP_2");
+                api.redirectNever = Enum.valueOf((Class) redirectClass, "NEVER");
+                api.redirectNormal = Enum.valueOf((Class) redirectClass, "NORMAL");
+                api.proxySelectorOf = proxySelectorClass.getMethod("of", InetSocketAddress.class);
+
+                api.newRequestBuilder = requestClass.getMethod("newBuilder", URI.class);
+                api.method = requestBuilderClass.getMethod("method", String.class, publisherClass);
+                api.header = requestBuilderClass.getMethod("header", String.class, String.class);
+                api.timeout = requestBuilderClass.getMethod("timeout", durationClass);
+                api.buildRequest = requestBuilderClass.getMethod("build");
+                api.ofByteArray = publishersClass.getMethod("ofByteArray", byte[].class);
+                api.noBody = publishersClass.getMethod("noBody");
+                api.durationOfMillis = durationClass.getMethod("ofMillis", long.class);
+
+                api.sendAsync = clientClass.getMethod("sendAsync", requestClass, handlerClass);
+                api.ofInputStream = handlersClass.getMethod("ofInputStream").invoke(null);
+                api.statusCode = responseClass.getMethod("statusCode");
+                api.responseVersion = responseClass.getMethod("version");
+                api.headers = responseClass.getMethod("headers");
+                api.headersMap = headersClass.getMethod("map");
+                api.body = responseClass.getMethod("body");
+                return api;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        Object newClient(Webb webb, boolean follow) {
+            try {
+                Object builder = newClientBuilder.invoke(null);
+                version.invoke(builder, http2);
+                followRedirects.invoke(builder, follow ? redirectNormal : redirectNever);
+                if (webb.getTlsConfig() != null) {
+                    sslContext.invoke(builder, webb.getTlsConfig().getSSLContext());
+                }
+                Proxy webbProxy = webb.getProxy();
+                if (webbProxy != null && webbProxy.address() instanceof InetSocketAddress) {
+                    proxy.invoke(builder, proxySelectorOf.invoke(null, webbProxy.address()));
+                }
+                return buildClient.invoke(builder);
+            } catch (Exception e) {
+                throw new WebbException("cannot create HttpClient", e);
+            }
+        }
+
+        static boolean isRestricted(String name) {
+            for (String restricted : RESTRICTED) {
+                if (restricted.equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Collects the settings of the request, sends it (after the body has been written) and waits for the
+     * response headers.
+     */
+    private static class Http2Connection implements Connection {
+        private final Http2Transport transport;
+        private final Webb webb;
+        private final URI uri;
+        private final Map<String, List<String>> requestProperties = new LinkedHashMap<String, List<String>>();
+        private String method = "GET";
+        private boolean followRedirects = HttpURLConnection.getFollowRedirects();
+        private int connectTimeout;
+        private int readTimeout;
+        private long ifModifiedSince;
+        private boolean doOutput;
+        private ByteArrayOutputStream requestBody;
+
+        private boolean sent;
+        private volatile Future<?> pending;
+        private volatile InputStream responseBody;
+        private int statusCode;
+        /** the negotiated version, <code>null</code> until the response has been received */
+        private String protocol;
+        private Map<String, List<String>> responseHeaders = Collections.emptyMap();
+
+        Http2Connection(Http2Transport transport, Webb webb, URI uri) {
+            this.transport = transport;
+            this.webb = webb;
+            this.uri = uri;
+        }
+
+        public void setRequestMethod(String method) {
+            this.method = method;
+        }
+
+        public void setInstanceFollowRedirects(boolean followRedirects) {
+            this.followRedirects = followRedirects;
+        }
+
+        public void setUseCaches(boolean useCaches) {}
+
+        public void setConnectTimeout(int timeout) {
+            this.connectTimeout = timeout;
+        }
+
+        public void setReadTimeout(int timeout) {
+            this.readTimeout = timeout;
+        }
+
+        public void setIfModifiedSince(long ifModifiedSince) {
+            this.ifModifiedSince = ifModifiedSince;
+        }
+
+        public void addRequestProperty(String name, String value) {
+            List<String> values = requestProperties.get(name);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                requestProperties.put(name, values);
+            }
+            values.add(value);
+        }
+
+        public void setRequestProperty(String name, String value) {
+            List<String> values = new ArrayList<String>(1);
+            values.add(value);
+            requestProperties.put(name, values);
+        }
+
+        public Map<String, List<String>> getRequestProperties() {
+            return Collections.unmodifiableMap(requestProperties);
+        }
+
+        public void setFixedLengthStreamingMode(int contentLength) {}
+        public void setChunkedStreamingMode(int chunkLength) {}
+        public void setDoOutput(boolean doOutput) {
+            this.doOutput = doOutput;
+        }
+
+        public OutputStream getOutputStream() {
+            if (requestBody == null) {
+                requestBody = new ByteArrayOutputStream();
+            }
+            return requestBody;
+        }
+
+        /**
+         * With a request body the request is sent when the body has been written (first access to the response).
+         */
+        public void connect() throws IOException {
+            if (!doOutput) {
+                send();
+            }
+        }
+
+        private void send() throws IOException {
+            if (sent) {
+                return;
+            }
+            sent = true;
+            Api api = Api.INSTANCE;
+            Object response;
+            try {
+                Object builder = api.newRequestBuilder.invoke(null, uri);
+                api.method.invoke(builder, method, requestBody != null
+                        ? api.ofByteArray.invoke(null, (Object) requestBody.toByteArray())
+                        : api.noBody.invoke(null));
+                for (Map.Entry<String, List<String>> property : requestProperties.entrySet()) {
+                    if (!Api.isRestricted(property.getKey())) {
+                        for (String value : property.getValue()) {
+                            api.header.invoke(builder, property.getKey(), value);
+                        }
+                    }
+                }
+                if (ifModifiedSince > 0) {
+                    api.header.invoke(builder, "If-Modified-Since",
+                            WebbUtils.getRfc1123DateFormat().format(new Date(ifModifiedSince)));
+                }
+                if (connectTimeout > 0 && readTimeout > 0) {
+                    api.timeout.invoke(builder, api.durationOfMillis.invoke(null, (long) connectTimeout + readTimeout));
+                }
+                Object request = api.buildRequest.invoke(builder);
+                Future<?> future = (Future<?>) api.sendAsync.invoke(
+                        transport.client(webb, followRedirects), request, api.ofInputStream);
+                pending = future;
+                response = future.get();
+            } catch (InvocationTargetException e) {
+                throw ioException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw ioException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw ioException(e.getCause());
+            } catch (CancellationException e) {
+                throw new IOException("request has been cancelled");
+            } catch (InterruptedException e) {
+                Future<?> future = pending;
+                if (future != null) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            readResponse(api, response);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void readResponse(Api api, Object response) throws IOException {
+            try {
+                statusCode = (Integer) api.statusCode.invoke(response);
+                protocol = api.responseVersion.invoke(response) == api.http2 ? "HTTP/2" : "HTTP/1.1";
+                Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+                Map<String, List<String>> all = (Map<String, List<String>>) api.headersMap.invoke(
+                        api.headers.invoke(response));
+                for (Map.Entry<String, List<String>> header : all.entrySet()) {
+                    if (!header.getKey().startsWith(":")) {
+                        headers.put(header.getKey(), header.getValue());
+                    }
+                }
+                responseHeaders = Collections.unmodifiableMap(headers);
+                responseBody = (InputStream) api.body.invoke(response);
+            } catch (InvocationTargetException e) {
+                throw ioException(e.getCause());
+            } catch (Exception e) {
+                throw ioException(e);
+            }
+        }
+
+        /**
+         * Keeps the original exception as cause (<code>IOException(Throwable)</code> needs Java 6).
+         */
+        private static IOException ioException(Throwable cause) {
+            IOException e = new IOException(String.valueOf(cause));
+            e.initCause(cause);
+            return e;
+        }
+
+        public int getResponseCode() throws IOException {
+            send();
+            return statusCode;
+        }
+
+        public String getResponseMessage() throws IOException {
+            send();
+            return null;
+        }
+
+        public InputStream getInputStream() throws IOException {
+            send();
+            if (statusCode >= 400) {
+                throw new IOException("Server returned HTTP response code: " + statusCode + " for URL: " + uri);
+            }
+            return responseBody;
+        }
+
+        public InputStream getErrorStream() {
+            return statusCode >= 400 ? responseBody : null;
+        }
+
+        public String getContentEncoding() {
+            return getHeaderField(Const.HDR_CONTENT_ENCODING);
+        }
+
+        public String getContentType() {
+            return getHeaderField(Const.HDR_CONTENT_TYPE);
+        }
+
+        public long getDate() {
+            return getHeaderFieldDate("Date", 0L);
+        }
+
+        public long getExpiration() {
+            return getHeaderFieldDate("Expires", 0L);
+        }
+
+        public long getLastModified() {
+            return getHeaderFieldDate("Last-Modified", 0L);
+        }
+
+        public String getHeaderField(String name) {
+            if (name == null) {
+                // the status line, with the version which has been negotiated
+                return protocol != null ? protocol + " " + statusCode : null;
+            }
+            return CacheEntry.getHeader(responseHeaders, name);
+        }
+
+        public Map<String, List<String>> getHeaderFields() {
+            return responseHeaders;
+        }
+
+        public long getHeaderFieldDate(String name, long defaultValue) {
+            String value = getHeaderField(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return WebbUtils.getRfc1123DateFormat().parse(value).getTime();
+            } catch (Exception e) {
+                return defaultValue;
+            }
+        }
+
+        public int getHeaderFieldInt(String name, int defaultValue) {
+            try {
+                String value = getHeaderField(name);
+                return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+
+        /**
+         * Cancels the stream, the connection stays open for the other streams.
+         */
+        public void disconnect() {
+            Future<?> future = pending;
+            if (future != null) {
+                future.cancel(true);
+            }
+            InputStream body = responseBody;
+            if (body != null) {
+                try { body.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+}
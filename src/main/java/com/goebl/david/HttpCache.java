@@ -0,0 +1,347 @@
+package com.goebl.david;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client-side HTTP cache for <code>GET</code> requests.
+ * <br>
+ * Responses with status 200 are stored if they are fresh for some time (<code>Cache-Control: max-age</code>
+ * or <code>Expires</code>) or can be revalidated (<code>ETag</code> or <code>Last-Modified</code>).
+ * Fresh responses are returned without contacting the server, stale ones are revalidated with
+ * <code>If-None-Match</code>/<code>If-Modified-Since</code> and a <code>304 Not Modified</code> answer
+ * is turned into the cached response. <code>Vary</code> is honored (one variant per URI is kept).
+ * <br>
+ * Entries are kept in memory (least recently used are evicted first) and optionally in a directory,
+ * so they survive a restart. <code>POST</code>, <code>PUT</code> and <code>DELETE</code> requests
+ * remove the entry of their URI.
+ * <br>
+ * The cache is thread-safe and can be shared by several <code>Webb</code> instances.
+ * If a request sets <code>If-Modified-Since</code> or <code>If-None-Match</code> by itself, the cache
+ * is bypassed, <code>Cache-Control: no-cache</code> or <code>max-age=0</code> forces a revalidation.
+ * Responses to requests with an <code>Authorization</code> header are only stored and served if the server
+ * marks them <code>public</code> (or sends <code>s-maxage</code>), so they are never shared between users.
+ * Responses served from the cache don't have an <code>HttpURLConnection</code>
+ * ({@link Response#getConnection()} returns <code>null</code>).
+ *
+ * @see Webb#setCache(HttpCache)
+ * @since 1.3.1
+ */
+public class HttpCache {
+    private static final String FILE_SUFFIX = ".cache";
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, CacheEntry> memory = new LinkedHashMap<String, CacheEntry>(64, 0.75f, true);
+    private long memoryBytes;
+    private final Object diskLock = new Object();
+    private long diskBytes = -1; // unknown until first access
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Create a cache which holds the responses in memory only.
+     * @param maxMemoryBytes the maximum (approximated) size of all entries
+     */
+    public HttpCache(long maxMemoryBytes) {
+        this(maxMemoryBytes, null, 0);
+    }
+
+    /**
+     * Create a cache with a memory and a disk tier.
+     * @param maxMemoryBytes the maximum (approximated) size of all entries in memory
+     * @param directory the directory for the disk tier (created if necessary) or <code>null</code> for memory only
+     * @param maxDiskBytes the maximum size of all files in the directory
+     */
+    public HttpCache(long maxMemoryBytes, File directory, long maxDiskBytes) {
+        if (maxMemoryBytes < 0 || maxDiskBytes < 0) {
+            throw new IllegalArgumentException("sizes must not be negative");
+        }
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("cannot create directory " + directory);
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = directory != null ? maxDiskBytes : 0;
+    }
+
+    /**
+     * @return number of requests answered from the cache without contacting the server
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of requests answered with <code>304 Not Modified</code> by the server
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    /**
+     * @return number of cacheable requests which had to be executed (not stored or modified)
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of entries in the memory tier
+     */
+    public synchronized int getMemoryEntryCount() {
+        return memory.size();
+    }
+
+    /**
+     * @return the approximated size of the memory tier
+     */
+    public synchronized long getMemorySize() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return the size of the disk tier (<code>0</code> if there is no disk tier)
+     */
+    public long getDiskSize() {
+        if (directory == null) {
+            return 0;
+        }
+        synchronized (diskLock) {
+            initDiskSize();
+            return diskBytes;
+        }
+    }
+
+    /**
+     * Removes the entry for the URI (e.g. because you know the resource has been changed).
+     * @param uri the absolute URI including the query string
+     */
+    public void remove(String uri) {
+        synchronized (this) {
+            CacheEntry removed = memory.remove(uri);
+            if (removed != null) {
+                memoryBytes -= removed.getSize();
+            }
+        }
+        if (directory != null) {
+            File file = file(uri);
+            synchronized (diskLock) {
+                long length = file.length();
+                if (file.delete() && diskBytes >= 0) {
+                    diskBytes -= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries from memory and disk.
+     */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+        if (directory != null) {
+            synchronized (diskLock) {
+                for (File file : listFiles()) {
+                    file.delete();
+                }
+                diskBytes = 0;
+            }
+        }
+    }
+
+    Connection wrap(Connection connection, String uri) {
+        return new CachingConnection(this, connection, uri);
+    }
+
+    int getMaxEntrySize() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(maxMemoryBytes, maxDiskBytes) / 4);
+    }
+
+    void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    void recordRevalidation() {
+        revalidationCount.incrementAndGet();
+    }
+
+    void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    CacheEntry get(String key) {
+        synchronized (this) {
+            CacheEntry entry = memory.get(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        if (directory == null) {
+            return null;
+        }
+        CacheEntry entry = readFile(key);
+        if (entry != null) {
+            putMemory(entry);
+        }
+        return entry;
+    }
+
+    void put(CacheEntry entry) {
+        putMemory(entry);
+        if (directory != null) {
+            writeFile(entry);
+        }
+    }
+
+    private synchronized void putMemory(CacheEntry entry) {
+        CacheEntry old = memory.remove(entry.key);
+        if (old != null) {
+            memoryBytes -= old.getSize();
+        }
+        int size = entry.getSize();
+        if (size > maxMemoryBytes / 4) {
+            return; // a single entry should not flush the whole cache
+        }
+        memory.put(entry.key, entry);
+        memoryBytes += size;
+        Iterator<CacheEntry> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().getSize();
+            eldest.remove();
+        }
+    }
+
+    private CacheEntry readFile(String key) {
+        File file = file(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BufferPool.BUFFER_SIZE));
+            CacheEntry entry = CacheEntry.readFrom(in);
+            if (!key.equals(entry.key)) {
+                return null; // hash collision
+            }
+            file.setLastModified(System.currentTimeMillis()); // for LRU eviction
+            return entry;
+        } catch (IOException e) {
+            file.delete(); // corrupt or old format
+            return null;
+        } finally {
+            if (in != null) {
+                try { in.close(); } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    private void writeFile(CacheEntry entry) {
+        File file = file(entry.key);
+        File tmp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), BufferPool.BUFFER_SIZE));
+            entry.writeTo(out);
+            out.close();
+            out = null;
+            synchronized (diskLock) {
+                initDiskSize();
+                diskBytes -= file.length();
+                if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+                    tmp.delete();
+                    return;
+                }
+                diskBytes += file.length();
+                if (diskBytes > maxDiskBytes) {
+                    evictFiles();
+                }
+            }
+        } catch (IOException e) {
+            tmp.delete(); // the disk tier is best effort
+        } finally {
+            if (out != null) {
+                try { out.close(); } catch (Exception ignored) {}
+                tmp.delete();
+            }
+        }
+    }
+
+    // guarded by diskLock
+    private void evictFiles() {
+        File[] files = listFiles();
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        long target = maxDiskBytes * 9 / 10; // some headroom, so not every write evicts
+        for (int i = 0; i < files.length && diskBytes > target; ++i) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+
+    // guarded by diskLock
+    private void initDiskSize() {
+        if (diskBytes < 0) {
+            long size = 0;
+            for (File file : listFiles()) {
+                size += file.length();
+            }
+            diskBytes = size;
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        File[] result = new File[count];
+        System.arraycopy(files, 0, result, 0, count);
+        return result;
+    }
+
+    private File file(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(Const.UTF8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + FILE_SUFFIX.length());
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, name.append(FILE_SUFFIX).toString());
+        } catch (Exception e) {
+            throw new WebbException(e);
+        }
+    }
+}
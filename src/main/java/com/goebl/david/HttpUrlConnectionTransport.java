@@ -0,0 +1,212 @@
+package com.goebl.david;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The default {@link Transport} based on {@link java.net.HttpURLConnection}.
+ *
+ * @since 1.3.1
+ */
+public class HttpUrlConnectionTransport implements Transport {
+
+    static final HttpUrlConnectionTransport DEFAULT = new HttpUrlConnectionTransport();
+
+    /**
+     * Configure the keep-alive cache of <code>HttpURLConnection</code> by setting the system properties read by
+     * the JDK (<code>http.maxConnections</code>, <code>http.keepAlive.time.server</code> and
+     * <code>http.keepAlive.time.proxy</code>) and by Android (<code>http.maxConnections</code>,
+     * <code>http.keepAliveDuration</code>).
+     * <br>
+     * The cache belongs to the JVM, so the settings apply to all hosts and all users of
+     * <code>HttpURLConnection</code>, not only to <code>Webb</code>. They are read when the first connection
+     * is opened, so call this method at startup. Older JDKs ignore the idle time and use the
+     * <code>Keep-Alive</code> header of the server or 5 seconds. See {@link Webb#getConnectionStats()} for
+     * the number of connections which have been released for reuse.
+     *
+     * @param maxIdlePerHost the maximum number of idle connections kept per host (JDK default 5)
+     * @param idleMillis the time an idle connection is kept, rounded up to seconds for the JDK
+     */
+    public static void configureKeepAlive(int maxIdlePerHost, long idleMillis) {
+        if (maxIdlePerHost < 1 || idleMillis < 1) {
+            throw new IllegalArgumentException("maxIdlePerHost and idleMillis must be > 0");
+        }
+        String idleSeconds = String.valueOf((idleMillis + 999L) / 1000L);
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(maxIdlePerHost));
+        System.setProperty("http.keepAlive.time.server", idleSeconds);
+        System.setProperty("http.keepAlive.time.proxy", idleSeconds);
+        System.setProperty("http.keepAliveDuration", String.valueOf(idleMillis));
+    }
+
+    public Connection open(Webb webb, String uri) throws IOException {
+        URL apiUrl = new URL(uri);
+        Proxy proxy = webb.getProxy();
+        HttpURLConnection connection = (HttpURLConnection)
+                (proxy != null ? apiUrl.openConnection(proxy) : apiUrl.openConnection());
+
+        prepareSslConnection(webb, connection);
+        return new UrlConnection(connection);
+    }
+
+    /**
+     * Hook for subclasses to configure HTTPS connections.
+     * @param webb the instance executing the request
+     * @param connection the freshly opened connection
+     */
+    protected void prepareSslConnection(Webb webb, HttpURLConnection connection) {
+        HostnameVerifier hostnameVerifier = webb.getHostnameVerifier();
+        SSLSocketFactory sslSocketFactory = webb.getSSLSocketFactory();
+        if (sslSocketFactory == null && webb.getTlsConfig() != null) {
+            sslSocketFactory = webb.getTlsConfig().getSocketFactory();
+        }
+        if ((hostnameVerifier != null || sslSocketFactory != null) && connection instanceof HttpsURLConnection) {
+            HttpsURLConnection sslConnection = (HttpsURLConnection) connection;
+            if (hostnameVerifier != null) {
+                sslConnection.setHostnameVerifier(hostnameVerifier);
+            }
+            if (sslSocketFactory != null) {
+                sslConnection.setSSLSocketFactory(sslSocketFactory);
+            }
+        }
+    }
+
+    /**
+     * Adapter from {@link Connection} to {@link HttpURLConnection}.
+     */
+    static class UrlConnection implements Connection {
+        final HttpURLConnection connection;
+
+        UrlConnection(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        public void setRequestMethod(String method) throws IOException {
+            connection.setRequestMethod(method);
+        }
+
+        public void setInstanceFollowRedirects(boolean followRedirects) {
+            connection.setInstanceFollowRedirects(followRedirects);
+        }
+
+        public void setUseCaches(boolean useCaches) {
+            connection.setUseCaches(useCaches);
+        }
+
+        public void setConnectTimeout(int timeout) {
+            connection.setConnectTimeout(timeout);
+        }
+
+        public void setReadTimeout(int timeout) {
+            connection.setReadTimeout(timeout);
+        }
+
+        public void setIfModifiedSince(long ifModifiedSince) {
+            connection.setIfModifiedSince(ifModifiedSince);
+        }
+
+        public void addRequestProperty(String name, String value) {
+            connection.addRequestProperty(name, value);
+        }
+
+        public void setRequestProperty(String name, String value) {
+            connection.setRequestProperty(name, value);
+        }
+
+        public Map<String, List<String>> getRequestProperties() {
+            return connection.getRequestProperties();
+        }
+
+        public void setFixedLengthStreamingMode(int contentLength) {
+            connection.setFixedLengthStreamingMode(contentLength);
+        }
+
+        public void setChunkedStreamingMode(int chunkLength) {
+            connection.setChunkedStreamingMode(chunkLength);
+        }
+
+        public void setDoOutput(boolean doOutput) {
+            connection.setDoOutput(doOutput);
+        }
+
+        public OutputStream getOutputStream() throws IOException {
+            return connection.getOutputStream();
+        }
+
+        public void connect() throws IOException {
+            connection.connect();
+        }
+
+        public int getResponseCode() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        public String getResponseMessage() throws IOException {
+            return connection.getResponseMessage();
+        }
+
+        public InputStream getInputStream() throws IOException {
+            return connection.getInputStream();
+        }
+
+        public InputStream getErrorStream() {
+            return connection.getErrorStream();
+        }
+
+        public String getContentEncoding() {
+            return connection.getContentEncoding();
+        }
+
+        public String getContentType() {
+            return connection.getContentType();
+        }
+
+        public long getDate() {
+            return connection.getDate();
+        }
+
+        public long getExpiration() {
+            return connection.getExpiration();
+        }
+
+        public long getLastModified() {
+            return connection.getLastModified();
+        }
+
+        public String getHeaderField(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        public Map<String, List<String>> getHeaderFields() {
+            Map<String, List<String>> fields = new LinkedHashMap<String, List<String>>();
+            for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+                if (field.getKey() != null) {
+                    fields.put(field.getKey(), field.getValue());
+                }
+            }
+            return fields;
+        }
+
+        public long getHeaderFieldDate(String name, long defaultValue) {
+            return connection.getHeaderFieldDate(name, defaultValue);
+        }
+
+        public int getHeaderFieldInt(String name, int defaultValue) {
+            return connection.getHeaderFieldInt(name, defaultValue);
+        }
+
+        public void disconnect() {
+            connection.disconnect();
+        }
+    }
+}
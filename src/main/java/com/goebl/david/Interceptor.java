@@ -0,0 +1,83 @@
+package com.goebl.david;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Observes, modifies or short-circuits the execution of requests.
+ * <br>
+ * Interceptors are registered with {@link Webb#addInterceptor(Interceptor)} and form an ordered chain: the
+ * interceptor added first is called first and decides whether (and how often) the next one is called by
+ * {@link Chain#proceed(Request)}. The last element of the chain opens the connection and executes the request.
+ * An interceptor can
+ * <ul>
+ *     <li>change the request (e.g. add an <code>Authorization</code> header) before calling <code>proceed</code></li>
+ *     <li>inspect the response and call <code>proceed</code> again (e.g. refresh an expired token on 401)</li>
+ *     <li>answer without calling <code>proceed</code> at all, e.g. with {@link Chain#respond(int, Map, byte[])}
+ *     or by throwing a {@link WebbException} - then no connection is opened</li>
+ * </ul>
+ * The chain is executed for every attempt, so retries pass all interceptors again. Coalesced requests
+ * (see {@link Webb#setCoalesceRequests(boolean)}) pass the chain once for all callers with <code>byte[]</code>
+ * as result type.
+ * Implementations must be thread-safe when the <code>Webb</code> instance is shared between threads.
+ * <br>
+ * Example (add a header to every request):
+ * <pre><code>
+ * webb.addInterceptor(new Interceptor() {
+ *     public &lt;T&gt; Response&lt;T&gt; intercept(Chain&lt;T&gt; chain) {
+ *         return chain.proceed(chain.getRequest().header("X-Request-Id", UUID.randomUUID()));
+ *     }
+ * });
+ * </code></pre>
+ *
+ * @since 1.3.1
+ */
+public interface Interceptor {
+
+    /**
+     * Intercept the execution of a request.
+     *
+     * @param chain gives access to the request and the rest of the chain
+     * @param <T> the type of the response body
+     * @return the response, never <code>null</code>
+     */
+    <T> Response<T> intercept(Chain<T> chain);
+
+    /**
+     * The rest of the interceptor chain as seen by one interceptor.
+     *
+     * @param <T> the type of the response body
+     */
+    interface Chain<T> {
+
+        /**
+         * @return the request to be executed
+         */
+        Request getRequest();
+
+        /**
+         * @return the type of the response body (e.g. <code>String.class</code>, <code>JSONObject.class</code>)
+         */
+        Class<T> getResultType();
+
+        /**
+         * Pass the request to the next interceptor or execute it if this is the end of the chain.
+         * Can be called more than once (the payload is sent again each time).
+         *
+         * @param request the request to execute, typically {@link #getRequest()}
+         * @return the response
+         */
+        Response<T> proceed(Request request);
+
+        /**
+         * Create a response without executing the request (short-circuit). The body is converted to the
+         * result type the same way as a body received from a server.
+         *
+         * @param statusCode the HTTP status code
+         * @param headers the response headers (may be <code>null</code>)
+         * @param body the response body (may be <code>null</code>)
+         * @return the response
+         */
+        Response<T> respond(int statusCode, Map<String, List<String>> headers, byte[] body);
+    }
+}
@@ -0,0 +1,185 @@
+package com.goebl.david;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link RetryManager} which avoids retry storms.
+ * <br>
+ * Compared to the default <code>RetryManager</code> it
+ * <ul>
+ *     <li>
+ *         adds random jitter to the exponential backoff, so clients which failed at the same time
+ *         don't retry in lockstep,
+ *     </li>
+ *     <li>
+ *         honors the <code>Retry-After</code> header of the response (and doesn't retry at all if the
+ *         server asks for a longer pause than the maximum delay),
+ *     </li>
+ *     <li>
+ *         limits the number of retries to a percentage of all requests (retry budget), so a failing
+ *         upstream doesn't receive a multiple of the normal load.
+ *     </li>
+ * </ul>
+ * One instance should be shared by all requests to the same upstream (it's thread-safe).
+ * Configure it before registering it with {@link Webb#setRetryManager(RetryManager)}.
+ *
+ * @since 1.3.1
+ */
+public class JitteredRetryManager extends RetryManager {
+
+    /**
+     * How the random part of the delay is calculated.
+     * See <a href="https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/">
+     *     Exponential Backoff And Jitter</a>.
+     */
+    public enum Jitter {
+        /** no randomness: <code>min(max, base * 2^retry)</code> */
+        NONE,
+        /** <code>random(0, min(max, base * 2^retry))</code> */
+        FULL,
+        /** <code>min(max, random(base, previousDelay * 3))</code> */
+        DECORRELATED
+    }
+
+    /** number of one-second buckets the retry budget looks back */
+    private static final int BUDGET_WINDOW_SECONDS = 10;
+
+    private final Random random = new Random();
+    private final Jitter jitter;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    private double retryRatio = 0.2;
+    private int minRetriesPerSecond = 10;
+
+    // ring buffers for the retry budget, index = second % BUDGET_WINDOW_SECONDS
+    private final AtomicLongArray bucketSecond = new AtomicLongArray(BUDGET_WINDOW_SECONDS);
+    private final AtomicLongArray bucketRequests = new AtomicLongArray(BUDGET_WINDOW_SECONDS);
+    private final AtomicLongArray bucketRetries = new AtomicLongArray(BUDGET_WINDOW_SECONDS);
+
+    /**
+     * Create an instance with full jitter, a base delay of one second and a maximum delay of two minutes.
+     */
+    public JitteredRetryManager() {
+        this(Jitter.FULL, 1000L, 120000L);
+    }
+
+    /**
+     * @param jitter how to calculate the random part of the delay
+     * @param baseDelayMillis the delay of the first retry (without jitter)
+     * @param maxDelayMillis the upper bound of all delays
+     */
+    public JitteredRetryManager(Jitter jitter, long baseDelayMillis, long maxDelayMillis) {
+        if (jitter == null || baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("invalid jitter or delays");
+        }
+        this.jitter = jitter;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Configure the retry budget. Within a sliding window of 10 seconds, at most
+     * <code>minRetriesPerSecond * 10 + retryRatio * requests</code> retries are allowed.
+     * <br>
+     * Default is 20% of the requests plus 10 retries per second.
+     *
+     * @param retryRatio the allowed ratio of retries to requests (e.g. <code>0.2</code> for 20%),
+     *                   negative to disable the budget.
+     * @param minRetriesPerSecond the number of retries which are always allowed (for low traffic)
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public JitteredRetryManager retryBudget(double retryRatio, int minRetriesPerSecond) {
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = Math.max(minRetriesPerSecond, 0);
+        return this;
+    }
+
+    @Override
+    public boolean isRetryUseful(Response response) {
+        if (!super.isRetryUseful(response)) {
+            return false;
+        }
+        // don't wait longer than allowed - and retrying earlier than requested makes no sense
+        return getRetryAfter(response) <= maxDelayMillis;
+    }
+
+    @Override
+    public long getDelay(int retry, Response response) {
+        long delay;
+        switch (jitter) {
+            case FULL:
+                delay = (long) (random.nextDouble() * exponentialDelay(retry));
+                break;
+            case DECORRELATED:
+                // the delay of the previous retry is not known here, but re-running the chain from
+                // the beginning leads to the same distribution
+                delay = baseDelayMillis;
+                for (int i = 0; i <= retry; i++) {
+                    delay = Math.min(maxDelayMillis, randomBetween(baseDelayMillis, delay * 3));
+                }
+                break;
+            default:
+                delay = exponentialDelay(retry);
+        }
+        return Math.max(delay, getRetryAfter(response));
+    }
+
+    @Override
+    public void recordRequest() {
+        if (retryRatio >= 0) {
+            bucket(System.currentTimeMillis() / 1000L, bucketRequests);
+        }
+    }
+
+    @Override
+    public boolean acquireRetryPermit() {
+        if (retryRatio < 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis() / 1000L;
+        long requests = 0;
+        long retries = 0;
+        for (int i = 0; i < BUDGET_WINDOW_SECONDS; i++) {
+            if (now - bucketSecond.get(i) < BUDGET_WINDOW_SECONDS) {
+                requests += bucketRequests.get(i);
+                retries += bucketRetries.get(i);
+            }
+        }
+        if (retries >= (long) minRetriesPerSecond * BUDGET_WINDOW_SECONDS + (long) (retryRatio * requests)) {
+            return false;
+        }
+        bucket(now, bucketRetries);
+        return true;
+    }
+
+    /**
+     * Parses the <code>Retry-After</code> header (seconds or HTTP-date).
+     * @param response the response or <code>null</code>
+     * @return the requested delay in milliseconds or <code>0</code> if not present
+     */
+    protected long getRetryAfter(Response response) {
+        return WebbUtils.getRetryAfter(response);
+    }
+
+    private long exponentialDelay(int retry) {
+        // avoid overflow: 2^30 seconds is far beyond any sensible maxDelay
+        return Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry, 30));
+    }
+
+    private long randomBetween(long min, long max) {
+        return max <= min ? min : min + (long) (random.nextDouble() * (max - min));
+    }
+
+    private void bucket(long second, AtomicLongArray counters) {
+        int index = (int) (second % BUDGET_WINDOW_SECONDS);
+        long bucketStart = bucketSecond.get(index);
+        if (bucketStart != second && bucketSecond.compareAndSet(index, bucketStart, second)) {
+            // first access in a new second: reset the stale bucket (a few concurrent counts may get lost)
+            bucketRequests.set(index, 0);
+            bucketRetries.set(index, 0);
+        }
+        counters.incrementAndGet(index);
+    }
+}
@@ -0,0 +1,222 @@
+package com.goebl.david;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the elements of a JSON array one after the other without keeping the whole array in memory.
+ * <br>
+ * Only the top-level array is scanned incrementally; every element is parsed with <code>org.json</code>
+ * (<code>JSONObject</code>, <code>JSONArray</code>, <code>String</code>, <code>Number</code>,
+ * <code>Boolean</code> or <code>JSONObject.NULL</code>). So memory usage depends on the size of the largest
+ * element, not on the size of the response.
+ * <br>
+ * The stream is closed automatically when the end of the array is reached. If you stop earlier,
+ * you have to call {@link #close()} to release the connection.
+ *
+ * @see Request#asJsonArrayStream()
+ * @since 1.3.1
+ */
+public class JsonArrayStream implements Iterator<Object>, Closeable {
+
+    /**
+     * Receives the elements of a JSON array, see {@link Request#asJsonArrayStream(ElementHandler)}.
+     */
+    public interface ElementHandler {
+        /**
+         * Called for every element of the array.
+         * @param element the parsed element (<code>JSONObject</code>, <code>JSONArray</code>, <code>String</code>,
+         *                <code>Number</code>, <code>Boolean</code> or <code>JSONObject.NULL</code>)
+         * @param index the position of the element in the array
+         */
+        void onElement(Object element, int index);
+    }
+
+    private final Reader reader;
+    private final char[] buffer = new char[4096];
+    private int position;
+    private int limit;
+
+    private final StringBuilder element = new StringBuilder(256);
+    private Object next;
+    private boolean started;
+    private boolean finished;
+    private int count;
+
+    /**
+     * @param inputStream the stream containing a JSON array encoded in UTF-8
+     */
+    public JsonArrayStream(InputStream inputStream) {
+        try {
+            this.reader = new InputStreamReader(inputStream, Const.UTF8);
+        } catch (IOException e) {
+            throw new WebbException(e);
+        }
+    }
+
+    /**
+     * @return the number of elements returned by {@link #next()} so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readElement();
+            } catch (IOException e) {
+                close();
+                throw new WebbException(e);
+            } catch (RuntimeException e) {
+                close();
+                throw e instanceof WebbException ? (WebbException) e : new WebbException(e);
+            }
+        }
+        return next != null;
+    }
+
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object result = next;
+        next = null;
+        ++count;
+        return result;
+    }
+
+    /**
+     * Not supported.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Passes all (remaining) elements to the handler and closes the stream.
+     * @param handler the receiver of the elements
+     */
+    public void forEach(ElementHandler handler) {
+        try {
+            while (hasNext()) {
+                int index = count;
+                handler.onElement(next(), index);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Closes the underlying stream (and connection). Calling it more than once has no effect.
+     */
+    public void close() {
+        finished = true;
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+            // ignored
+        }
+    }
+
+    private Object readElement() throws IOException {
+        int c = skipWhitespace();
+        if (!started) {
+            if (c != '[') {
+                throw new WebbException("response is not a JSON array");
+            }
+            started = true;
+            c = skipWhitespace();
+            if (c == ']') {
+                close();
+                return null;
+            }
+        } else if (c == ']') {
+            close();
+            return null;
+        } else if (c == ',') {
+            c = skipWhitespace();
+        } else {
+            throw new WebbException("malformed JSON array at element " + count);
+        }
+
+        element.setLength(0);
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        boolean complete = false; // a top-level value has been read, only ',' or ']' may follow
+        while (c != -1) {
+            if (!inString && depth == 0) {
+                if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    complete = element.length() > 0;
+                    c = read();
+                    continue;
+                } else if (complete && c != ',' && c != ']') {
+                    throw new WebbException("malformed JSON array at element " + count);
+                }
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    complete = depth == 0;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                ++depth;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    break;
+                }
+                complete = --depth == 0;
+            } else if (c == ',' && depth == 0) {
+                break;
+            }
+            element.append((char) c);
+            c = read();
+        }
+        if (c == -1) {
+            throw new WebbException("unexpected end of JSON array at element " + count);
+        }
+        --position; // ',' or ']' is consumed on the next call
+
+        try {
+            return new JSONTokener(element.toString()).nextValue();
+        } catch (JSONException e) {
+            throw new WebbException(e);
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position >= limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,28 @@
+package com.goebl.david;
+
+/**
+ * Thrown instead of executing a request when a client-side limit for the host is exhausted,
+ * e.g. too many concurrent requests are already running or waiting ({@link ConcurrencyLimiter}) or
+ * the rate limit would force the request to wait too long ({@link RateLimiter}).
+ * <br>
+ * No connection has been opened. It's not recoverable in terms of {@link RetryManager#isRecoverable(WebbException)},
+ * so no retries are attempted.
+ *
+ * @since 1.3.1
+ */
+public class LimitExceededException extends WebbException {
+
+    private final String host;
+
+    public LimitExceededException(String message, String host) {
+        super(message + ": " + host);
+        this.host = host;
+    }
+
+    /**
+     * @return the host (origin, e.g. <code>https://api.example.com</code>) the limit applies to
+     */
+    public String getHost() {
+        return host;
+    }
+}
@@ -0,0 +1,24 @@
+package com.goebl.david;
+
+/**
+ * Receives timing and size information about every request executed by {@link Webb}.
+ * <br>
+ * Register an implementation with {@link Webb#setMetricsListener(MetricsListener)}. If no listener is set
+ * (default), no measurements are taken at all. {@link HistogramMetrics} is a ready-to-use implementation
+ * collecting the data in memory.
+ * <br>
+ * The listener is called on the thread which executed the request (for asynchronous requests on a thread
+ * of the executor) after the last attempt, so implementations must be thread-safe and should return
+ * quickly. Exceptions thrown by the listener are ignored.
+ *
+ * @since 1.3.1
+ */
+public interface MetricsListener {
+
+    /**
+     * Called once per request, after all retries have been executed.
+     *
+     * @param metrics the measurements of the request; don't keep a reference if you don't need it
+     */
+    void onRequest(RequestMetrics metrics);
+}
@@ -0,0 +1,172 @@
+package com.goebl.david;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An {@link Interceptor} which paces requests to stay below the rate limit of an API (token bucket).
+ * <br>
+ * Every request takes one token from the bucket, tokens are refilled with the configured rate up to the
+ * burst size. If no token is available, the request waits until its turn comes (requests are served in
+ * the order they arrived). If the wait would take longer than the maximum waiting time, the request fails
+ * with a {@link LimitExceededException} instead. The same happens if the wait would exceed the deadline of the
+ * request (see {@link Request#deadline(long)}). Asynchronous requests wait on the thread of the executor,
+ * the calling thread is never blocked (with virtual threads waiting is cheap, see
+ * {@link Webb#setExecutor(java.util.concurrent.Executor)}).
+ * <br>
+ * When the server answers <code>429 Too Many Requests</code>, the rate is lowered by 20% (at most once per
+ * second) and no further request is sent before the time given by the <code>Retry-After</code> header. Every
+ * successful request raises the rate by 0.5% of the configured rate until the configured rate is reached
+ * again. This way the client settles just below the real limit of the server instead of oscillating.
+ * <br>
+ * By default there is one bucket for all requests passing this interceptor (i.e. per <code>Webb</code>
+ * instance it's registered with), {@link #perHost()} creates one bucket for each host.
+ * <pre><code>
+ * Webb webb = Webb.builder()
+ *         .interceptor(new RateLimiter(10.0, 5).perHost())
+ *         .build();
+ * </code></pre>
+ * The rate limiter is thread-safe. Configure it before it is used.
+ *
+ * @since 1.3.1
+ */
+public class RateLimiter implements Interceptor {
+
+    private static final double DECREASE_RATIO = 0.8;
+    private static final double INCREASE_STEP = 0.005;
+    private static final long DECREASE_INTERVAL_NANOS = 1000000000L;
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+    private final double permitsPerSecond;
+    private final int burst;
+    private boolean perHost;
+    private long maxWaitMillis = 30000L;
+
+    /**
+     * @param permitsPerSecond the number of requests per second
+     * @param burst the number of requests which may be sent at once after a pause (bucket size)
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0.0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be > 0");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * Use one bucket per host (scheme, host and port) instead of one for all requests.
+     *
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public RateLimiter perHost() {
+        this.perHost = true;
+        return this;
+    }
+
+    /**
+     * Set the maximum time a request waits for its turn (default 30 seconds).
+     *
+     * @param maxWaitMillis the time in milliseconds, <code>0</code> to reject requests instead of waiting
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public RateLimiter maxWait(long maxWaitMillis) {
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxWaitMillis must be >= 0");
+        }
+        this.maxWaitMillis = maxWaitMillis;
+        return this;
+    }
+
+    /**
+     * @param host the origin like <code>https://api.example.com</code> or any URI of the host
+     *             (ignored if there is only one bucket)
+     * @return the current rate in requests per second (lower than configured after <code>429</code> answers)
+     */
+    public double getRate(String host) {
+        Bucket bucket = buckets.get(perHost ? WebbUtils.hostKey(host) : "");
+        return bucket == null ? permitsPerSecond : bucket.getRate();
+    }
+
+    public <T> Response<T> intercept(Chain<T> chain) {
+        Request request = chain.getRequest();
+        String key = perHost ? WebbUtils.hostKey(request.uri) : "";
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            Bucket existing = buckets.putIfAbsent(key, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+
+        long maxWait = Math.max(0L, Math.min(maxWaitMillis, request.remainingMillis()));
+        long waitNanos = bucket.reserve(System.nanoTime(), maxWait * 1000000L);
+        if (waitNanos < 0) {
+            throw new LimitExceededException("rate limit exceeded", WebbUtils.hostKey(request.uri));
+        }
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebbException(e);
+            }
+        }
+
+        Response<T> response = chain.proceed(request);
+        if (response.getStatusCode() == 429) {
+            bucket.tooManyRequests(System.nanoTime(), WebbUtils.getRetryAfter(response));
+        } else if (response.isSuccess()) {
+            bucket.success();
+        }
+        return response;
+    }
+
+    /**
+     * A token bucket. The number of tokens gets negative when requests reserve tokens in advance.
+     */
+    private class Bucket {
+        private double rate = permitsPerSecond;
+        private double tokens = burst;
+        private long lastRefillNanos = System.nanoTime();
+        private long lastDecreaseNanos = lastRefillNanos - DECREASE_INTERVAL_NANOS;
+
+        synchronized double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return the time to wait in nanoseconds or <code>-1</code> if it exceeds the maximum
+         */
+        synchronized long reserve(long now, long maxWaitNanos) {
+            refill(now);
+            long waitNanos = tokens >= 1.0 ? 0L : (long) ((1.0 - tokens) / rate * 1e9);
+            if (waitNanos > maxWaitNanos) {
+                return -1L;
+            }
+            tokens -= 1.0;
+            return waitNanos;
+        }
+
+        synchronized void tooManyRequests(long now, long retryAfterMillis) {
+            refill(now);
+            if (now - lastDecreaseNanos >= DECREASE_INTERVAL_NANOS) {
+                rate = Math.max(permitsPerSecond / 100.0, rate * DECREASE_RATIO);
+                lastDecreaseNanos = now;
+            }
+            // no token (and no burst) is available before Retry-After has passed
+            tokens = Math.min(tokens, 1.0 - (retryAfterMillis / 1000.0) * rate);
+        }
+
+        synchronized void success() {
+            if (rate < permitsPerSecond) {
+                rate = Math.min(permitsPerSecond, rate + permitsPerSecond * INCREASE_STEP);
+            }
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * rate);
+            lastRefillNanos = now;
+        }
+    }
+}
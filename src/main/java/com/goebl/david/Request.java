@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -24,7 +25,7 @@ public class Request {
         GET, POST, PUT, DELETE
     }
 
-    private final Webb webb;
+    final Webb webb;
     final Method method;
     final String uri;
 
@@ -42,6 +43,10 @@ public class Request {
     boolean compress;
     int retryCount;
     boolean waitExponential;
+    long timeoutMillis;
+    String deadlineHeader;
+    // set when the request is executed, only valid if timeoutMillis > 0
+    volatile long deadlineNanos;
 
     Request(Webb webb, Method method, String uri) {
         this.webb = webb;
@@ -157,6 +162,36 @@ public class Request {
         return uri;
     }
 
+    /**
+     * Get the HTTP method of this request.
+     *
+     * @return the method
+     * @since 1.3.1
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Get the headers set on this request (without default and global headers).
+     *
+     * @return the headers (unmodifiable, maybe empty)
+     * @since 1.3.1
+     */
+    public Map<String, Object> getHeaders() {
+        return headers == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Get the payload of this request as set by one of the <code>body</code> methods.
+     *
+     * @return the payload or <code>null</code>
+     * @since 1.3.1
+     */
+    public Object getPayload() {
+        return payload;
+    }
+
     /**
      * Set (or overwrite) an HTTP header value.
      * <br>
@@ -366,6 +401,58 @@ public class Request {
         return this;
     }
 
+    /**
+     * Set a deadline for the whole request: all attempts (see {@link #retry(int, boolean)}) including the
+     * waiting time between them have to be done within the given time.
+     * <br>
+     * The connect and read timeouts of every attempt are shortened to the remaining time, no retry is
+     * started if its delay would exceed the deadline, and an attempt which cannot start in time fails with
+     * a {@link DeadlineExceededException}. The clock starts when the request is executed.
+     *
+     * @param timeoutMillis the time in milliseconds, <code>0</code> for no deadline (default)
+     * @return <code>this</code> for method chaining (fluent API)
+     * @since 1.3.1
+     */
+    public Request deadline(long timeoutMillis) {
+        return deadline(timeoutMillis, null);
+    }
+
+    /**
+     * Like {@link #deadline(long)}, but additionally send the remaining time in milliseconds with every
+     * attempt, so the server can stop working on a request nobody waits for anymore and pass the deadline
+     * on to the services it calls.
+     *
+     * @param timeoutMillis the time in milliseconds, <code>0</code> for no deadline (default)
+     * @param propagationHeader the name of the header, e.g. <code>X-Request-Timeout</code>
+     *                          (<code>null</code> to not send the deadline)
+     * @return <code>this</code> for method chaining (fluent API)
+     * @since 1.3.1
+     */
+    public Request deadline(long timeoutMillis, String propagationHeader) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeoutMillis must be >= 0");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.deadlineHeader = propagationHeader;
+        return this;
+    }
+
+    void startDeadline() {
+        if (timeoutMillis > 0) {
+            deadlineNanos = System.nanoTime() + timeoutMillis * 1000000L;
+        }
+    }
+
+    /**
+     * @return the time left until the deadline in milliseconds, <code>Long.MAX_VALUE</code> without deadline
+     */
+    long remainingMillis() {
+        if (timeoutMillis <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (deadlineNanos - System.nanoTime()) / 1000000L;
+    }
+
     /**
      * Execute the request and expect the result to be convertible to <code>String</code>.
      * @return the created <code>Response</code> object carrying the payload from the server as <code>String</code>
@@ -406,6 +493,36 @@ public class Request {
         return webb.execute(this, InputStream.class);
     }
 
+    /**
+     * Execute the request and read the elements of the JSON array in the response one at a time
+     * (constant memory, even for huge arrays).
+     * <br>
+     * Don't forget to close the body if you don't iterate to the end of the array. In case of an error
+     * (status code not 2xx) the error body is read as usual and there is nothing to close.
+     * @return the created <code>Response</code> object carrying an iterator over the elements as payload
+     * @since 1.3.1
+     */
+    public Response<JsonArrayStream> asJsonArrayStream() {
+        return webb.execute(this, JsonArrayStream.class);
+    }
+
+    /**
+     * Execute the request and pass the elements of the JSON array in the response to the handler
+     * one at a time (constant memory, even for huge arrays).
+     * @param handler receives the elements in the calling thread; the handler is not called in case
+     *                of an error (status code not 2xx).
+     * @return the created <code>Response</code> object (the payload is already consumed and closed,
+     *         {@link JsonArrayStream#getCount()} returns the number of elements).
+     * @since 1.3.1
+     */
+    public Response<JsonArrayStream> asJsonArrayStream(JsonArrayStream.ElementHandler handler) {
+        Response<JsonArrayStream> response = webb.execute(this, JsonArrayStream.class);
+        if (response.getBody() != null) {
+            response.getBody().forEach(handler);
+        }
+        return response;
+    }
+
     /**
      * Execute the request and expect no result payload (only status-code and headers).
      * @return the created <code>Response</code> object where no payload is expected or simply will be ignored.
@@ -414,4 +531,61 @@ public class Request {
         return webb.execute(this, Void.class);
     }
 
+    /**
+     * Execute the request asynchronously (see {@link Webb#setExecutor(java.util.concurrent.Executor)})
+     * and expect the result to be convertible to <code>String</code>.
+     * @return the future <code>Response</code>; cancelling it disconnects the running request.
+     * @since 1.3.1
+     */
+    public ResponseFuture<String> asStringAsync() {
+        return webb.executeAsync(this, String.class);
+    }
+
+    /**
+     * Execute the request asynchronously and expect the result to be convertible to <code>JSONObject</code>.
+     * @return the future <code>Response</code>; cancelling it disconnects the running request.
+     * @since 1.3.1
+     */
+    public ResponseFuture<JSONObject> asJsonObjectAsync() {
+        return webb.executeAsync(this, JSONObject.class);
+    }
+
+    /**
+     * Execute the request asynchronously and expect the result to be convertible to <code>JSONArray</code>.
+     * @return the future <code>Response</code>; cancelling it disconnects the running request.
+     * @since 1.3.1
+     */
+    public ResponseFuture<JSONArray> asJsonArrayAsync() {
+        return webb.executeAsync(this, JSONArray.class);
+    }
+
+    /**
+     * Execute the request asynchronously and expect the result to be convertible to <code>byte[]</code>.
+     * @return the future <code>Response</code>; cancelling it disconnects the running request.
+     * @since 1.3.1
+     */
+    public ResponseFuture<byte[]> asBytesAsync() {
+        return (ResponseFuture<byte[]>) webb.executeAsync(this, Const.BYTE_ARRAY_CLASS);
+    }
+
+    /**
+     * Execute the request asynchronously and expect the result to be convertible to <code>InputStream</code>.
+     * <br>
+     * The future completes as soon as the response header has been received. You have to close the stream.
+     * @return the future <code>Response</code>; cancelling it disconnects the running request.
+     * @since 1.3.1
+     */
+    public ResponseFuture<InputStream> asStreamAsync() {
+        return webb.executeAsync(this, InputStream.class);
+    }
+
+    /**
+     * Execute the request asynchronously and expect no result payload (only status-code and headers).
+     * @return the future <code>Response</code>; cancelling it disconnects the running request.
+     * @since 1.3.1
+     */
+    public ResponseFuture<Void> asVoidAsync() {
+        return webb.executeAsync(this, Void.class);
+    }
+
 }
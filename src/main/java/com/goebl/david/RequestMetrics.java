@@ -0,0 +1,271 @@
+package com.goebl.david;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Measurements of a single request, passed to a {@link MetricsListener}.
+ * <br>
+ * Durations and byte counts are summed up over all attempts if the request has been retried.
+ * The body of streamed responses (<code>asStream()</code>, <code>asJsonArrayStream()</code>) is read after
+ * the request has been reported, so it's not part of the measurements.
+ *
+ * @since 1.3.1
+ */
+public final class RequestMetrics {
+
+    /**
+     * The phases of a request.
+     */
+    public enum Phase {
+        /** Opening and configuring the connection, establishing the TCP (and TLS) connection. */
+        CONNECT,
+        /** Serializing and compressing the payload, sending it to the server. */
+        SEND,
+        /** Waiting for the status line and headers of the response (time to first byte). */
+        WAIT,
+        /** Reading the (maybe compressed) response body from the network. */
+        DOWNLOAD,
+        /** Decompressing the response body (<code>gzip</code> or <code>deflate</code> content-encoding). */
+        DECOMPRESS,
+        /** Converting the response body to the requested type (e.g. <code>String</code>, JSON). */
+        PARSE,
+        /** Wall-clock time of the whole request including all retries and the delays between them. */
+        TOTAL
+    }
+
+    final String method;
+    final String uri;
+    final long[] nanos = new long[Phase.values().length];
+    int statusCode = -1;
+    int retries;
+    boolean coalesced;
+    boolean hedged;
+    long bytesSent;
+    long bytesSentUncompressed;
+    long bytesReceived;
+    long bytesReceivedDecoded;
+    WebbException exception;
+
+    RequestMetrics(Request request) {
+        this.method = request.method.name();
+        this.uri = request.uri;
+    }
+
+    /**
+     * @return the HTTP method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the URI of the request (without query parameters added by <code>param()</code>)
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return the status code of the last attempt or <code>-1</code> if no response has been received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the number of retries (<code>0</code> if the first attempt has been the last one)
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * A request which waited for an identical request of another thread (see
+     * {@link Webb#setCoalesceRequests(boolean)}) didn't use the network: only the time waiting for the other
+     * request (<code>WAIT</code>), the conversion of the body (<code>PARSE</code>) and <code>TOTAL</code> are
+     * measured, the byte counts are <code>0</code>.
+     * @return <code>true</code> if the response of another request has been used
+     */
+    public boolean isCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * A hedged request (see {@link Webb#setHedgePolicy(HedgePolicy)}) is reported once: the measurements are
+     * the ones of the request which won, <code>TOTAL</code> is the time of the whole hedged request.
+     * @return <code>true</code> if the request has been sent a second time
+     */
+    public boolean isHedged() {
+        return hedged;
+    }
+
+    /**
+     * @return the exception which has been thrown or <code>null</code> if a response has been received
+     */
+    public WebbException getException() {
+        return exception;
+    }
+
+    /**
+     * @param phase the phase of the request
+     * @return the duration of the phase in nanoseconds
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @param phase the phase of the request
+     * @return the duration of the phase in milliseconds
+     */
+    public double getMillis(Phase phase) {
+        return nanos[phase.ordinal()] / 1e6;
+    }
+
+    /**
+     * @return the number of bytes of the payload written to the connection (after compression)
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return the number of bytes of the payload before compression
+     */
+    public long getBytesSentUncompressed() {
+        return bytesSentUncompressed;
+    }
+
+    /**
+     * @return the number of bytes of the response body read from the connection (before decompression)
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return the number of bytes of the response body after decompression
+     */
+    public long getBytesReceivedDecoded() {
+        return bytesReceivedDecoded;
+    }
+
+    /**
+     * Add the time elapsed since <code>since</code> to the given phase.
+     * @return the current time in nanoseconds (start of the next phase)
+     */
+    long lap(Phase phase, long since) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - since;
+        return now;
+    }
+
+    /**
+     * Account the time spent reading the response body. <code>decoded</code> is <code>null</code>
+     * if the body was not compressed.
+     */
+    void received(long readNanos, MeteredInputStream wire, MeteredInputStream decoded) {
+        long downloadNanos = wire.nanos;
+        // the header of a compressed stream is read on creation, so the decoded stream may have seen less time
+        long decodedNanos = decoded != null ? Math.max(decoded.nanos, downloadNanos) : downloadNanos;
+        nanos[Phase.DOWNLOAD.ordinal()] += downloadNanos;
+        nanos[Phase.DECOMPRESS.ordinal()] += decodedNanos - downloadNanos;
+        nanos[Phase.PARSE.ordinal()] += Math.max(0L, readNanos - decodedNanos);
+        bytesReceived += wire.count;
+        bytesReceivedDecoded += decoded != null ? decoded.count : wire.count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(method).append(' ').append(uri).append(" -> ").append(statusCode);
+        if (retries > 0) {
+            sb.append(" (").append(retries).append(" retries)");
+        }
+        if (coalesced) {
+            sb.append(" (coalesced)");
+        }
+        if (hedged) {
+            sb.append(" (hedged)");
+        }
+        for (Phase phase : Phase.values()) {
+            sb.append(' ').append(phase.name().toLowerCase(Locale.ENGLISH)).append('=');
+            sb.append(Math.round(getMillis(phase) * 1000) / 1000.0).append("ms");
+        }
+        sb.append(" sent=").append(bytesSent).append('/').append(bytesSentUncompressed);
+        sb.append(" received=").append(bytesReceived).append('/').append(bytesReceivedDecoded);
+        if (exception != null) {
+            sb.append(' ').append(exception);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Counts the bytes read and the time spent in <code>read</code>.
+     */
+    static class MeteredInputStream extends FilterInputStream {
+        long count;
+        long nanos;
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) {
+                ++count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Counts the bytes written.
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
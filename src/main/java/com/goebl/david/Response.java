@@ -1,6 +1,10 @@
 package com.goebl.david;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
 
 /**
  * Holds data about the response message returning from HTTP request.
@@ -14,7 +18,7 @@ public class Response<T> {
     String responseMessage;
     T body;
     Object errorBody;
-    HttpURLConnection connection;
+    Connection connection;
 
     Response(Request request) {
         this.request = request;
@@ -24,6 +28,29 @@ public class Response<T> {
         this.body = (T) body;
     }
 
+    /**
+     * Creates a response for another request from this response with raw (<code>byte[]</code>) payload.
+     * Each call parses the payload again, so the new response doesn't share a (mutable) body.
+     */
+    <U> Response<U> convert(Request request, Class<U> clazz) {
+        Response<U> response = new Response<U>(request);
+        response.statusCode = statusCode;
+        response.responseMessage = responseMessage;
+        response.connection = connection;
+        byte[] bytes = (byte[]) (isSuccess() ? body : errorBody);
+        InputStream is = bytes != null ? new ByteArrayInputStream(bytes) : null;
+        try {
+            if (isSuccess()) {
+                WebbUtils.parseResponseBody(clazz, response, is);
+            } else {
+                WebbUtils.parseErrorResponse(clazz, response, is);
+            }
+        } catch (IOException e) {
+            throw new WebbException(e);
+        }
+        return response;
+    }
+
     /**
      * Access to the <code>Request</code> object (which will not be very useful in most cases).
      * @return the request object which was responsible for creating this response.
@@ -40,6 +67,18 @@ public class Response<T> {
         return body;
     }
 
+    /**
+     * Returns a read-only view of the payload if it has been read as <code>byte[]</code> (see
+     * {@link Request#asBytes()}). The bytes are not copied, so this is a cheap way to hand over the
+     * payload to NIO channels or code which must not modify it.
+     * @return the payload as read-only <code>ByteBuffer</code> or <code>null</code> if the payload
+     *         is not a <code>byte[]</code>.
+     * @since 1.3.1
+     */
+    public ByteBuffer getBodyAsByteBuffer() {
+        return body instanceof byte[] ? ByteBuffer.wrap((byte[]) body).asReadOnlyBuffer() : null;
+    }
+
     /**
      * Get the body which was returned in case of error (HTTP-Code &gt;= 400).
      * <br>
@@ -188,9 +227,26 @@ public class Response<T> {
 
     /**
      * Get the "real" connection, typically to call some getters which are not provided by this Response object.
-     * @return the connection object (many methods throw IllegalStateException depending on the internal state).
+     * @return the connection object (many methods throw IllegalStateException depending on the internal state)
+     *         or <code>null</code> if the request was not executed by {@link HttpUrlConnectionTransport}
+     *         or the response has been served from the {@link HttpCache} without asking the server.
+     * @see #getTransportConnection()
      */
     public HttpURLConnection getConnection() {
+        Connection network = connection instanceof CachingConnection
+                ? ((CachingConnection) connection).getNetworkConnection()
+                : connection;
+        return network instanceof HttpUrlConnectionTransport.UrlConnection
+                ? ((HttpUrlConnectionTransport.UrlConnection) network).connection
+                : null;
+    }
+
+    /**
+     * Get the connection created by the {@link Transport} which executed the request.
+     * @return the connection object of the transport.
+     * @since 1.3.1
+     */
+    public Connection getTransportConnection() {
         return connection;
     }
 
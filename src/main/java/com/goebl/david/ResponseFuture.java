@@ -0,0 +1,164 @@
+package com.goebl.david;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pending result of a request executed asynchronously (see e.g. {@link Request#asStringAsync()}).
+ * <br>
+ * Cancelling the future disconnects the connection of the running request. No locks are held while waiting,
+ * so it is safe to use with any kind of threads.
+ *
+ * @since 1.3.1
+ */
+public class ResponseFuture<T> implements Future<Response<T>> {
+    private static final int RUNNING = 0;
+    private static final int COMPLETED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final Queue<Callback<T>> callbacks = new ConcurrentLinkedQueue<Callback<T>>();
+
+    private volatile Response<T> response;
+    private volatile WebbException exception;
+    private volatile Connection connection;
+    private volatile Thread runner;
+    private volatile Future<?> pendingRetry;
+
+    ResponseFuture() {}
+
+    /**
+     * Register a callback which is called when the request is done. If the request is already done,
+     * the callback is called immediately by the current thread.
+     * <br>
+     * Exceptions thrown by a callback are ignored, so they don't keep the other callbacks from being called.
+     * @param callback the callback
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public ResponseFuture<T> addCallback(Callback<T> callback) {
+        callbacks.add(callback);
+        if (done.getCount() == 0) {
+            runCallbacks();
+        }
+        return this;
+    }
+
+    /**
+     * Attempts to cancel the request. If it is running, the underlying connection is disconnected.
+     * @param mayInterruptIfRunning <code>true</code> to interrupt the thread executing the request
+     *                              (e.g. while waiting for a retry).
+     * @return <code>false</code> if the request was already done
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!finish(CANCELLED, null, new WebbException(new CancellationException()))) {
+            return false;
+        }
+        Connection activeConnection = connection;
+        if (activeConnection != null) {
+            try { activeConnection.disconnect(); } catch (Exception ignored) {}
+        }
+        Future<?> activeRetry = pendingRetry;
+        if (activeRetry != null) {
+            activeRetry.cancel(false);
+        }
+        Thread activeRunner = runner;
+        if (mayInterruptIfRunning && activeRunner != null) {
+            activeRunner.interrupt();
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    public boolean isDone() {
+        return state.get() != RUNNING;
+    }
+
+    /**
+     * Waits for the response.
+     * @return the response
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException with the {@link WebbException} as cause if the request failed
+     * @throws CancellationException if the request was cancelled
+     */
+    public Response<T> get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    public Response<T> get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private Response<T> result() throws ExecutionException {
+        switch (state.get()) {
+            case COMPLETED:
+                return response;
+            case CANCELLED:
+                throw new CancellationException();
+            default:
+                throw new ExecutionException(exception);
+        }
+    }
+
+    boolean complete(Response<T> response) {
+        return finish(COMPLETED, response, null);
+    }
+
+    boolean fail(WebbException exception) {
+        return finish(FAILED, null, exception);
+    }
+
+    void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    void setRunner(Thread runner) {
+        this.runner = runner;
+    }
+
+    void setPendingRetry(Future<?> pendingRetry) {
+        this.pendingRetry = pendingRetry;
+    }
+
+    private boolean finish(int newState, Response<T> response, WebbException exception) {
+        if (!state.compareAndSet(RUNNING, newState)) {
+            return false;
+        }
+        this.response = response;
+        this.exception = exception;
+        done.countDown();
+        runCallbacks();
+        return true;
+    }
+
+    private void runCallbacks() {
+        Callback<T> callback;
+        while ((callback = callbacks.poll()) != null) {
+            try {
+                if (state.get() == COMPLETED) {
+                    callback.onSuccess(response);
+                } else {
+                    callback.onFailure(exception);
+                }
+            } catch (RuntimeException ignored) {
+                // the other callbacks are called anyway
+            }
+        }
+    }
+}
@@ -16,15 +16,18 @@ public class RetryManager {
 
     static final RetryManager DEFAULT = new RetryManager();
 
+    /** subclasses written before 1.3.1 override {@link #wait(int)} instead of {@link #getDelay(int, Response)} */
+    private final boolean delayOverridden = overrides("getDelay", int.class, Response.class);
+
     /**
      * Indicates whether it would possibly make sense to retry the request.
      * @param response the outcome of the request
      * @return <tt>true</tt> only in case of temporary (server-side) errors where retrying the
-     *         request could succeed.
+     *         request could succeed, and in case of <tt>429 Too Many Requests</tt> (since 1.3.1).
      */
     public boolean isRetryUseful(Response response) {
         int statusCode = response.getStatusCode();
-        return statusCode == 503 || statusCode == 504 || statusCode >= 520;
+        return statusCode == 429 || statusCode == 503 || statusCode == 504 || statusCode >= 520;
     }
 
     /**
@@ -52,12 +55,71 @@ public class RetryManager {
         return false;
     }
 
+    /**
+     * Returns the time to wait before the next retry (depends on the current retry sequence).
+     * <br>
+     * This is used for asynchronous requests, which are rescheduled after the delay instead of blocking a
+     * thread, and by {@link #wait(int, Response)} for blocking requests. As long as this method isn't
+     * overridden, blocking requests wait with {@link #wait(int)}, so existing subclasses keep working.
+     * @param retry the retry sequence (starts with 0 for the first retry).
+     * @param response the outcome of the last attempt or <code>null</code> if it failed with an exception.
+     * @return the delay in milliseconds
+     * @since 1.3.1
+     */
+    public long getDelay(int retry, Response response) {
+        return BACKOFF[Math.min(retry, BACKOFF.length - 1)] * 1000L;
+    }
+
+    /**
+     * Called by <code>Webb</code> once for every request (not for retries).
+     * <br>
+     * The default implementation does nothing. Override it together with {@link #acquireRetryPermit()}
+     * to limit retries to a share of all requests (see {@link JitteredRetryManager}).
+     * @since 1.3.1
+     */
+    public void recordRequest() {
+    }
+
+    /**
+     * Called by <code>Webb</code> right before a retry, after the retry has been considered useful.
+     * @return <code>true</code> if the retry may be executed, <code>false</code> to give up and return the
+     *         last response (or throw the last exception). The default implementation always allows retries.
+     * @since 1.3.1
+     */
+    public boolean acquireRetryPermit() {
+        return true;
+    }
+
+    /**
+     * Implementation for the actual wait of blocking requests (depends on the current retry sequence).
+     * <br>
+     * If you override this method, don't wait inside a <code>synchronized</code> block or with
+     * <code>Object.wait()</code>, as this pins virtual threads (see {@link Webb.Builder#virtualThreads()}).
+     * @param retry the retry sequence (starts with 0 for the first retry).
+     * @param response the outcome of the last attempt or <code>null</code> if it failed with an exception.
+     * @since 1.3.1
+     */
+    public void wait(int retry, Response response) {
+        if (!delayOverridden) {
+            wait(retry);
+            return;
+        }
+        sleep(getDelay(retry, response));
+    }
+
     /**
      * Implementation for the actual wait (depends on the current retry sequence).
      * @param retry the retry sequence (starts with 0 for the first retry).
+     * @deprecated override {@link #getDelay(int, Response)} to change the delay or {@link #wait(int, Response)}
+     *             to change how blocking requests wait. Still called by {@link #wait(int, Response)} for
+     *             blocking requests unless {@link #getDelay(int, Response)} is overridden.
      */
+    @Deprecated
     public void wait(int retry) {
-        long sleepMillis = BACKOFF[Math.min(retry, BACKOFF.length - 1)] * 1000L;
+        sleep(getDelay(retry, null));
+    }
+
+    private static void sleep(long sleepMillis) {
         try {
             Thread.sleep(sleepMillis);
         } catch (InterruptedException ie) {
@@ -65,4 +127,12 @@ public class RetryManager {
             throw new WebbException(ie);
         }
     }
+
+    private boolean overrides(String name, Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod(name, parameterTypes).getDeclaringClass() != RetryManager.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
 }
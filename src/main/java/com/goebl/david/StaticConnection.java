@@ -0,0 +1,125 @@
+package com.goebl.david;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A connection which never touches the network, but answers with a given response
+ * (see {@link Interceptor.Chain#respond(int, Map, byte[])}).
+ *
+ * @since 1.3.1
+ */
+class StaticConnection implements Connection {
+    private final CacheEntry response;
+    private final Map<String, List<String>> requestProperties = new LinkedHashMap<String, List<String>>();
+
+    StaticConnection(int statusCode, Map<String, List<String>> headers, byte[] body) {
+        Map<String, List<String>> responseHeaders = headers != null
+                ? Collections.unmodifiableMap(new LinkedHashMap<String, List<String>>(headers))
+                : Collections.<String, List<String>>emptyMap();
+        this.response = new CacheEntry(null, statusCode, null, responseHeaders, null,
+                body != null ? body : new byte[0], System.currentTimeMillis());
+    }
+
+    public void setRequestMethod(String method) {}
+    public void setInstanceFollowRedirects(boolean followRedirects) {}
+    public void setUseCaches(boolean useCaches) {}
+    public void setConnectTimeout(int timeout) {}
+    public void setReadTimeout(int timeout) {}
+    public void setIfModifiedSince(long ifModifiedSince) {}
+    public void setFixedLengthStreamingMode(int contentLength) {}
+    public void setChunkedStreamingMode(int chunkLength) {}
+    public void setDoOutput(boolean doOutput) {}
+
+    public void addRequestProperty(String name, String value) {
+        List<String> values = requestProperties.get(name);
+        if (values == null) {
+            values = new ArrayList<String>(1);
+            requestProperties.put(name, values);
+        }
+        values.add(value);
+    }
+
+    public void setRequestProperty(String name, String value) {
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        requestProperties.put(name, values);
+    }
+
+    public Map<String, List<String>> getRequestProperties() {
+        return Collections.unmodifiableMap(requestProperties);
+    }
+
+    public OutputStream getOutputStream() {
+        return new ByteArrayOutputStream();
+    }
+
+    public void connect() {}
+
+    public int getResponseCode() {
+        return response.statusCode;
+    }
+
+    public String getResponseMessage() {
+        return null;
+    }
+
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(response.body);
+    }
+
+    public InputStream getErrorStream() {
+        // like HttpURLConnection: no stream if there is no body
+        return response.body.length > 0 ? new ByteArrayInputStream(response.body) : null;
+    }
+
+    public String getContentEncoding() {
+        return response.getHeader(Const.HDR_CONTENT_ENCODING);
+    }
+
+    public String getContentType() {
+        return response.getHeader(Const.HDR_CONTENT_TYPE);
+    }
+
+    public long getDate() {
+        return response.getHeaderDate("Date", 0L);
+    }
+
+    public long getExpiration() {
+        return response.getHeaderDate("Expires", 0L);
+    }
+
+    public long getLastModified() {
+        return response.getHeaderDate("Last-Modified", 0L);
+    }
+
+    public String getHeaderField(String name) {
+        return name == null ? "HTTP/1.1 " + response.statusCode : response.getHeader(name);
+    }
+
+    public Map<String, List<String>> getHeaderFields() {
+        return response.headers;
+    }
+
+    public long getHeaderFieldDate(String name, long defaultValue) {
+        return response.getHeaderDate(name, defaultValue);
+    }
+
+    public int getHeaderFieldInt(String name, int defaultValue) {
+        try {
+            String value = response.getHeader(name);
+            return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public void disconnect() {}
+}
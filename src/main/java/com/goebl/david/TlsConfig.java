@@ -0,0 +1,284 @@
+package com.goebl.david;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TLS settings of a {@link Webb} instance (see {@link Webb#setTlsConfig(TlsConfig)}).
+ * <br>
+ * The configuration owns one {@link SSLContext} for all requests, so TLS sessions are cached and the next
+ * connection to the same host can resume the session (abbreviated handshake) instead of doing a full one.
+ * The size and the lifetime of the session cache can be set, protocols and cipher suites can be restricted
+ * (cipher suites are offered in the given order) and ALPN protocols can be announced. Handshakes are counted,
+ * so {@link #getResumptionRate()} shows whether resumption works.
+ * <pre><code>
+ * TlsConfig tls = new TlsConfig()
+ *         .sessionCache(1000, 3600)
+ *         .protocols("TLSv1.3", "TLSv1.2");
+ * Webb webb = Webb.builder().tlsConfig(tls).build();
+ * </code></pre>
+ * ALPN needs Java 9 or later (Android 10), otherwise it's ignored. <code>HttpURLConnection</code> only speaks
+ * HTTP/1.1, so announcing <code>http/1.1</code> is the only sensible choice (some servers require ALPN).
+ * <br>
+ * One instance can be shared by several <code>Webb</code> instances. Configure it before it is used.
+ *
+ * @since 1.3.1
+ */
+public class TlsConfig {
+
+    private static final Method GET_SSL_PARAMETERS = method(SSLSocket.class, "getSSLParameters");
+    private static final Method SET_SSL_PARAMETERS = method(SSLSocket.class, "setSSLParameters",
+            GET_SSL_PARAMETERS != null ? GET_SSL_PARAMETERS.getReturnType() : null);
+    private static final Method SET_APPLICATION_PROTOCOLS = method(
+            GET_SSL_PARAMETERS != null ? GET_SSL_PARAMETERS.getReturnType() : null,
+            "setApplicationProtocols", String[].class);
+
+    private final SSLContext sslContext;
+    private final SSLSocketFactory socketFactory;
+    private String[] protocols;
+    private String[] cipherSuites;
+    private String[] applicationProtocols;
+
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+
+    /**
+     * Create a configuration with a new <code>SSLContext</code> using the default key and trust managers.
+     */
+    public TlsConfig() {
+        this(defaultContext());
+    }
+
+    /**
+     * Create a configuration for an initialized <code>SSLContext</code> (e.g. with your own trust store).
+     * @param sslContext the context
+     */
+    public TlsConfig(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        this.socketFactory = new ConfiguringSocketFactory(sslContext.getSocketFactory());
+    }
+
+    /**
+     * Configure the cache of client sessions.
+     *
+     * @param maxSessions the maximum number of cached sessions, <code>0</code> for no limit
+     * @param timeoutSeconds the time a session can be resumed, <code>0</code> for no limit
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public TlsConfig sessionCache(int maxSessions, int timeoutSeconds) {
+        if (maxSessions < 0 || timeoutSeconds < 0) {
+            throw new IllegalArgumentException("maxSessions and timeoutSeconds must be >= 0");
+        }
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        sessions.setSessionCacheSize(maxSessions);
+        sessions.setSessionTimeout(timeoutSeconds);
+        return this;
+    }
+
+    /**
+     * Enable only the given protocols (if supported), e.g. <code>"TLSv1.3", "TLSv1.2"</code>.
+     * @param protocols the protocols
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public TlsConfig protocols(String... protocols) {
+        this.protocols = protocols.clone();
+        return this;
+    }
+
+    /**
+     * Enable only the given cipher suites (if supported), in the order of preference.
+     * @param cipherSuites the names of the cipher suites
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public TlsConfig cipherSuites(String... cipherSuites) {
+        this.cipherSuites = cipherSuites.clone();
+        return this;
+    }
+
+    /**
+     * Announce the given application protocols with ALPN, e.g. <code>"http/1.1"</code>.
+     * @param applicationProtocols the protocols in the order of preference
+     * @return <code>this</code> for method chaining (fluent API)
+     */
+    public TlsConfig applicationProtocols(String... applicationProtocols) {
+        this.applicationProtocols = applicationProtocols.clone();
+        return this;
+    }
+
+    /**
+     * @return the context owned by this configuration
+     */
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    /**
+     * @return the factory which creates sockets with this configuration
+     */
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    /**
+     * @return the number of completed handshakes (connections which have been kept alive don't need one)
+     */
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    /**
+     * @return the number of handshakes which resumed a cached session
+     */
+    public long getResumedHandshakes() {
+        return resumedHandshakes.get();
+    }
+
+    /**
+     * @return the share of resumed handshakes between <code>0.0</code> and <code>1.0</code>
+     */
+    public double getResumptionRate() {
+        long total = handshakes.get();
+        return total == 0 ? 0.0 : (double) resumedHandshakes.get() / total;
+    }
+
+    /**
+     * A session created before the socket has been resumed, otherwise the handshake created it.
+     */
+    void recordHandshake(long socketCreated, long sessionCreated) {
+        handshakes.incrementAndGet();
+        if (sessionCreated < socketCreated) {
+            resumedHandshakes.incrementAndGet();
+        }
+    }
+
+    Socket configure(Socket socket) {
+        if (!(socket instanceof SSLSocket)) {
+            return socket;
+        }
+        SSLSocket sslSocket = (SSLSocket) socket;
+        if (protocols != null) {
+            sslSocket.setEnabledProtocols(supported(protocols, sslSocket.getSupportedProtocols()));
+        }
+        if (cipherSuites != null) {
+            sslSocket.setEnabledCipherSuites(supported(cipherSuites, sslSocket.getSupportedCipherSuites()));
+        }
+        if (applicationProtocols != null && SET_APPLICATION_PROTOCOLS != null && SET_SSL_PARAMETERS != null) {
+            try {
+                Object parameters = GET_SSL_PARAMETERS.invoke(sslSocket);
+                SET_APPLICATION_PROTOCOLS.invoke(parameters, (Object) applicationProtocols);
+                SET_SSL_PARAMETERS.invoke(sslSocket, parameters);
+            } catch (Exception e) {
+                throw new WebbException("cannot set ALPN protocols", e);
+            }
+        }
+        final long created = System.currentTimeMillis();
+        sslSocket.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+            public void handshakeCompleted(HandshakeCompletedEvent event) {
+                recordHandshake(created, event.getSession().getCreationTime());
+            }
+        });
+        return sslSocket;
+    }
+
+    /**
+     * Keeps the order of <code>wanted</code>, because it expresses the preference.
+     */
+    private static String[] supported(String[] wanted, String[] supported) {
+        List<String> available = Arrays.asList(supported);
+        List<String> result = new ArrayList<String>();
+        for (String name : wanted) {
+            if (available.contains(name)) {
+                result.add(name);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new WebbException("none of these is supported: " + Arrays.toString(wanted));
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static SSLContext defaultContext() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            return context;
+        } catch (Exception e) {
+            throw new WebbException(e);
+        }
+    }
+
+    private static Method method(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        if (clazz == null || (parameterTypes.length > 0 && parameterTypes[0] == null)) {
+            return null;
+        }
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies the configuration to every socket created by the factory of the context.
+     */
+    private class ConfiguringSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory delegate;
+
+        ConfiguringSocketFactory(SSLSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return cipherSuites != null ? cipherSuites.clone() : delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return configure(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return configure(delegate.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return configure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return configure(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return configure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return configure(delegate.createSocket(address, port, localAddress, localPort));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.goebl.david;
+
+import java.io.IOException;
+
+/**
+ * Opens the connections used by {@link Webb} to execute requests.
+ * <br>
+ * The default implementation is {@link HttpUrlConnectionTransport}. Register your own implementation
+ * with {@link Webb#setTransport(Transport)} if you want to use another HTTP engine. Implementations must
+ * be thread-safe when the <code>Webb</code> instance is shared between threads.
+ *
+ * @since 1.3.1
+ */
+public interface Transport {
+
+    /**
+     * Open (but don't connect) a connection for the given URI.
+     *
+     * @param webb the instance executing the request (e.g. for {@link Webb#getProxy()} or SSL settings)
+     * @param uri the absolute URI including the query string
+     * @return a connection ready to be configured
+     * @throws IOException when the URI is malformed or the connection cannot be opened
+     */
+    Connection open(Webb webb, String uri) throws IOException;
+}
@@ -0,0 +1,47 @@
+package com.goebl.david;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+
+/**
+ * Access to virtual threads (Java 21+) without compiling against a recent JDK.
+ */
+class VirtualThreads {
+    private static volatile Executor executor;
+
+    private VirtualThreads() {}
+
+    /**
+     * @return <code>true</code> if the running JVM supports virtual threads
+     */
+    static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The shared executor creating one virtual thread per task. It doesn't hold any resources, so one
+     * instance for the whole JVM is enough.
+     * @return the executor
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads
+     */
+    static Executor executor() {
+        Executor result = executor;
+        if (result == null) {
+            try {
+                Method factoryMethod = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                result = (Executor) factoryMethod.invoke(null);
+            } catch (NoSuchMethodException e) {
+                throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+            } catch (Exception e) {
+                throw new WebbException("cannot create virtual thread executor", e);
+            }
+            executor = result; // benign race: at most a few unused executors
+        }
+        return result;
+    }
+}
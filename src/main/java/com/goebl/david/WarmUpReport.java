@@ -0,0 +1,115 @@
+package com.goebl.david;
+
+/**
+ * The outcome of {@link Webb#warmUp(java.util.Collection, int)}.
+ * <br>
+ * For every URI (in the order of the collection, duplicates removed) it holds the number of opened
+ * connections, the first exception and the time until the last connection was ready.
+ *
+ * @since 1.3.1
+ */
+public class WarmUpReport {
+    final String[] uris;
+    final int connectionsPerHost;
+    final int[] connections;
+    final WebbException[] exceptions;
+    final long[] durationNanos;
+    long elapsedNanos;
+
+    WarmUpReport(String[] uris, int connectionsPerHost) {
+        this.uris = uris;
+        this.connectionsPerHost = connectionsPerHost;
+        connections = new int[uris.length];
+        exceptions = new WebbException[uris.length];
+        durationNanos = new long[uris.length];
+    }
+
+    synchronized void connected(int index, long nanos) {
+        ++connections[index];
+        durationNanos[index] = Math.max(durationNanos[index], nanos);
+    }
+
+    synchronized void failed(int index, WebbException exception, long nanos) {
+        if (exceptions[index] == null) {
+            exceptions[index] = exception;
+        }
+        durationNanos[index] = Math.max(durationNanos[index], nanos);
+    }
+
+    /**
+     * @return the number of URIs
+     */
+    public int size() {
+        return uris.length;
+    }
+
+    /**
+     * @param index the index of the URI
+     * @return the absolute URI which has been warmed up
+     */
+    public String getUri(int index) {
+        return uris[index];
+    }
+
+    /**
+     * @param index the index of the URI
+     * @return the number of connections which have been opened and parked for reuse
+     */
+    public synchronized int getConnections(int index) {
+        return connections[index];
+    }
+
+    /**
+     * @param index the index of the URI
+     * @return the first exception or <code>null</code> if all connections have been opened
+     */
+    public synchronized WebbException getException(int index) {
+        return exceptions[index];
+    }
+
+    /**
+     * @param index the index of the URI
+     * @return the time in milliseconds until all connections to the URI were ready (or failed)
+     */
+    public synchronized long getDurationMillis(int index) {
+        return durationNanos[index] / 1000000L;
+    }
+
+    /**
+     * @return the number of connections which have been opened for all URIs
+     */
+    public synchronized int getConnectionCount() {
+        int count = 0;
+        for (int opened : connections) {
+            count += opened;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of connections which could not be opened
+     */
+    public int getFailureCount() {
+        return uris.length * connectionsPerHost - getConnectionCount();
+    }
+
+    /**
+     * @return <code>true</code> if all connections have been opened
+     */
+    public boolean isSuccess() {
+        return getFailureCount() == 0;
+    }
+
+    /**
+     * @return the wall-clock time in milliseconds for the whole warm-up
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000L;
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + getConnectionCount() + " failures=" + getFailureCount()
+                + " elapsed=" + getElapsedMillis() + "ms";
+    }
+}
@@ -1,23 +1,42 @@
 package com.goebl.david;
 
-import java.io.FilterInputStream;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.Proxy;
-import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -38,31 +57,67 @@ public class Webb {
     public static final String HDR_USER_AGENT = Const.HDR_USER_AGENT;
     public static final String HDR_AUTHORIZATION = "Authorization";
 
-    static final Map<String, Object> globalHeaders = new LinkedHashMap<String, Object>();
-    static String globalBaseUri;
+    // copy-on-write: readers never lock, writers replace the whole (unmodifiable) map
+    static volatile Map<String, Object> globalHeaders = Collections.emptyMap();
+    static volatile String globalBaseUri;
 
-    static Integer connectTimeout = 10000; // 10 seconds
-    static Integer readTimeout = 3 * 60000; // 5 minutes
-    static int jsonIndentFactor = -1;
+    static volatile Integer connectTimeout = 10000; // 10 seconds
+    static volatile Integer readTimeout = 3 * 60000; // 5 minutes
+    static volatile int jsonIndentFactor = -1;
+
+    private static final Interceptor[] NO_INTERCEPTORS = new Interceptor[0];
 
     Boolean followRedirects;
     String baseUri;
     Map<String, Object> defaultHeaders;
     SSLSocketFactory sslSocketFactory;
     HostnameVerifier hostnameVerifier;
+    TlsConfig tlsConfig;
     RetryManager retryManager;
     Proxy proxy;
+    Transport transport;
+    Executor executor;
+    ScheduledExecutorService scheduler;
+    HttpCache cache;
+    MetricsListener metricsListener;
+    HedgePolicy hedgePolicy;
+    final ConnectionStats connectionStats = new ConnectionStats();
+    // copy-on-write like globalHeaders, never null
+    Interceptor[] interceptors = NO_INTERCEPTORS;
+    ConcurrentHashMap<String, InFlight> inFlight;
+
+    // only used by immutable instances (see Builder): snapshot of the global settings
+    boolean immutable;
+    Integer defaultConnectTimeout;
+    Integer defaultReadTimeout;
+    int defaultJsonIndentFactor;
 
     protected Webb() {}
 
     /**
      * Create an instance which can be reused for multiple requests in the same Thread.
+     * <br>
+     * If you want to share one instance between many threads, use {@link #builder()} instead.
      * @return the created instance.
      */
     public static Webb create() {
         return new Webb();
     }
 
+    /**
+     * Create a builder for an immutable and thread-safe <code>Webb</code> instance.
+     * <br>
+     * All settings (including the global settings like {@link #setGlobalHeader(String, Object)} or
+     * {@link #setGlobalBaseUri(String)}) are frozen when {@link Builder#build()} is called, so the
+     * resulting instance can be shared by any number of threads without locking.
+     *
+     * @return a new builder
+     * @since 1.3.1
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     /**
      * Set the value for a named header which is valid for all requests in the running JVM.
      * <br>
@@ -78,10 +133,14 @@ public class Webb {
      * @see com.goebl.david.Request#header(String, Object)
      */
     public static void setGlobalHeader(String name, Object value) {
-        if (value != null) {
-            globalHeaders.put(name, value);
-        } else {
-            globalHeaders.remove(name);
+        synchronized (Webb.class) {
+            Map<String, Object> headers = new LinkedHashMap<String, Object>(globalHeaders);
+            if (value != null) {
+                headers.put(name, value);
+            } else {
+                headers.remove(name);
+            }
+            globalHeaders = Collections.unmodifiableMap(headers);
         }
     }
 
@@ -143,6 +202,7 @@ public class Webb {
      *             Default value comes from HttpURLConnection and should be <code>true</code>.
      */
     public void setFollowRedirects(boolean auto) {
+        checkMutable();
         this.followRedirects = auto;
     }
 
@@ -151,6 +211,7 @@ public class Webb {
      * @param sslSocketFactory the factory to use (see test cases for an example).
      */
     public void setSSLSocketFactory(SSLSocketFactory sslSocketFactory) {
+        checkMutable();
         this.sslSocketFactory = sslSocketFactory;
     }
 
@@ -159,18 +220,221 @@ public class Webb {
      * @param hostnameVerifier the verifier (see test cases for an example).
      */
     public void setHostnameVerifier(HostnameVerifier hostnameVerifier) {
+        checkMutable();
         this.hostnameVerifier = hostnameVerifier;
     }
 
+    /**
+     * Returns the custom {@link javax.net.ssl.SSLSocketFactory} of this instance.
+     * @return the factory or <code>null</code> if not set.
+     */
+    public SSLSocketFactory getSSLSocketFactory() {
+        return sslSocketFactory;
+    }
+
+    /**
+     * Returns the custom {@link javax.net.ssl.HostnameVerifier} of this instance.
+     * @return the verifier or <code>null</code> if not set.
+     */
+    public HostnameVerifier getHostnameVerifier() {
+        return hostnameVerifier;
+    }
+
+    /**
+     * Use an own <code>SSLContext</code> with session cache, protocol and cipher suite settings for all
+     * HTTPS connections (see {@link TlsConfig}). A socket factory set with
+     * {@link #setSSLSocketFactory(SSLSocketFactory)} takes precedence.
+     * @param tlsConfig the configuration or <code>null</code> to use the defaults of the JVM (default).
+     * @since 1.3.1
+     */
+    public void setTlsConfig(TlsConfig tlsConfig) {
+        checkMutable();
+        this.tlsConfig = tlsConfig;
+    }
+
+    /**
+     * @return the TLS configuration or <code>null</code>
+     * @since 1.3.1
+     */
+    public TlsConfig getTlsConfig() {
+        return tlsConfig;
+    }
+
     /**
      * Sets a proxy object to be used for opening the connection.
-     * See {@link URL#openConnection(Proxy)}
+     * See {@link java.net.URL#openConnection(Proxy)}
      * @param proxy the proxy to be used or <tt>null</tt> for no proxy.
      */
     public void setProxy(Proxy proxy) {
+        checkMutable();
         this.proxy = proxy;
     }
 
+    /**
+     * Returns the proxy of this instance.
+     * @return the proxy or <code>null</code> for no proxy.
+     */
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    /**
+     * Registers an alternative {@link com.goebl.david.Transport} (the HTTP engine used to execute requests).
+     * <br>
+     * By default {@link HttpUrlConnectionTransport} is used.
+     * @param transport the transport or <code>null</code> to use the default.
+     * @since 1.3.1
+     */
+    public void setTransport(Transport transport) {
+        checkMutable();
+        this.transport = transport;
+    }
+
+    /**
+     * Set the executor which runs asynchronous requests (see e.g. {@link Request#asStringAsync()}).
+     * <br>
+     * By default a shared pool of daemon threads is used. Each running request occupies a thread of the
+     * executor, so limit the pool size with care.
+     * @param executor the executor or <code>null</code> to use the default.
+     * @since 1.3.1
+     */
+    public void setExecutor(Executor executor) {
+        checkMutable();
+        this.executor = executor;
+    }
+
+    /**
+     * Set the scheduler which delays retries of asynchronous requests.
+     * <br>
+     * While an asynchronous request waits for its next retry (see {@link Request#retry(int, boolean)}),
+     * it doesn't occupy a thread: the retry is scheduled with this scheduler and handed over to the executor
+     * (see {@link #setExecutor(java.util.concurrent.Executor)}) when the delay is over. By default a shared
+     * scheduler with a single daemon thread is used.
+     * @param scheduler the scheduler or <code>null</code> to use the default.
+     * @since 1.3.1
+     */
+    public void setScheduler(ScheduledExecutorService scheduler) {
+        checkMutable();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Set the cache for <code>GET</code> requests (see {@link HttpCache}).
+     * <br>
+     * This is independent of {@link Request#useCaches(boolean)}, which only controls the cache of the platform.
+     * @param cache the cache or <code>null</code> to disable caching (default).
+     * @since 1.3.1
+     */
+    public void setCache(HttpCache cache) {
+        checkMutable();
+        this.cache = cache;
+    }
+
+    /**
+     * @return the cache or <code>null</code>
+     * @since 1.3.1
+     */
+    public HttpCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Set a listener which receives timing and size information about every request
+     * (see {@link MetricsListener} and {@link HistogramMetrics}).
+     * @param metricsListener the listener or <code>null</code> to disable measuring (default).
+     * @since 1.3.1
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        checkMutable();
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * @return the listener for metrics or <code>null</code>
+     * @since 1.3.1
+     */
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Enable hedging of synchronous <code>GET</code> requests (see {@link HedgePolicy}).
+     * <br>
+     * A request taking longer than usual is sent a second time and the first response is used.
+     * Asynchronous requests, coalesced requests and requests with other methods are never hedged.
+     * The requests run on the executor (see {@link #setExecutor(Executor)}), the calling thread waits.
+     * @param hedgePolicy the policy or <code>null</code> to disable hedging (default).
+     * @since 1.3.1
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        checkMutable();
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * @return the policy for hedged requests or <code>null</code>
+     * @since 1.3.1
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * @return the counters of released (kept alive) and disconnected connections of this instance
+     * @since 1.3.1
+     */
+    public ConnectionStats getConnectionStats() {
+        return connectionStats;
+    }
+
+    /**
+     * Add an interceptor to the end of the chain of interceptors (see {@link Interceptor}).
+     * <br>
+     * The interceptor added first is called first, the interceptor added last is called directly before
+     * the connection is opened.
+     * @param interceptor the interceptor
+     * @since 1.3.1
+     */
+    public void addInterceptor(Interceptor interceptor) {
+        checkMutable();
+        if (interceptor == null) {
+            throw new IllegalArgumentException("interceptor must not be null");
+        }
+        Interceptor[] chain = new Interceptor[interceptors.length + 1];
+        System.arraycopy(interceptors, 0, chain, 0, interceptors.length);
+        chain[interceptors.length] = interceptor;
+        interceptors = chain;
+    }
+
+    /**
+     * @return the interceptors in the order they are called (unmodifiable)
+     * @since 1.3.1
+     */
+    public List<Interceptor> getInterceptors() {
+        return Collections.unmodifiableList(Arrays.asList(interceptors));
+    }
+
+    /**
+     * Let concurrent identical <code>GET</code> requests share one call to the server (single-flight).
+     * <br>
+     * Requests are identical if they have the same URI (including query parameters) and headers. The first
+     * request is executed, the others wait for its result. Every caller receives its own <code>Response</code>
+     * object (the body is parsed for each of them), so it's safe to modify it.
+     * <br>
+     * Streaming (<code>asStream()</code>, <code>asJsonArrayStream()</code>) and asynchronous requests are never
+     * coalesced. The settings of the first request (e.g. timeouts, retries) apply to all waiting requests.
+     * <br>
+     * Only the first request passes the interceptors, with <code>byte[]</code> as result type - the body is
+     * converted for every caller afterwards. A {@link MetricsListener} gets one report per caller, the ones of
+     * the waiting requests are marked with {@link RequestMetrics#isCoalesced()}.
+     * @param coalesceRequests <code>true</code> to enable single-flight mode (default is <code>false</code>)
+     * @since 1.3.1
+     */
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        checkMutable();
+        this.inFlight = coalesceRequests ? new ConcurrentHashMap<String, InFlight>() : null;
+    }
+
     /**
      * Set the base URI for all requests created from this instance.
      * <br>
@@ -181,6 +445,7 @@ public class Webb {
      * @see #setGlobalBaseUri(String)
      */
     public void setBaseUri(String baseUri) {
+        checkMutable();
         this.baseUri = baseUri;
     }
 
@@ -209,6 +474,7 @@ public class Webb {
      * @see com.goebl.david.Request#header(String, Object)
      */
     public void setDefaultHeader(String name, Object value) {
+        checkMutable();
         if (defaultHeaders == null) {
             defaultHeaders = new HashMap<String, Object>();
         }
@@ -224,6 +490,7 @@ public class Webb {
      * @param retryManager the new manager for deciding whether it makes sense to retry a request.
      */
     public void setRetryManager(RetryManager retryManager) {
+        checkMutable();
         this.retryManager = retryManager;
     }
 
@@ -267,6 +534,140 @@ public class Webb {
         return new Request(this, Request.Method.DELETE, buildPath(pathOrUri));
     }
 
+    /**
+     * Executes many requests with a bounded number of concurrent requests and waits until all are finished.
+     * <br>
+     * The calling thread executes requests too, the other <code>parallelism - 1</code> workers run on the
+     * executor (see {@link #setExecutor(Executor)}). Exceptions don't stop the execution of the remaining
+     * requests, they are collected in the result. Each request is executed with the settings of
+     * the <code>Webb</code> instance which created it.
+     * <br>
+     * Don't use <code>InputStream</code> as type, as all responses are kept until the method returns.
+     *
+     * @param requests the requests to execute (e.g. many <code>webb.get(...)</code>)
+     * @param clazz the type of the payload (<code>String.class</code>, <code>JSONObject.class</code>, ...)
+     * @param parallelism the maximum number of requests executed at the same time
+     * @param <T> the type of the payload
+     * @return the responses and exceptions in the order of the requests
+     * @since 1.3.1
+     */
+    public <T> BulkResponse<T> executeAll(Collection<Request> requests, Class<T> clazz, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        Request[] array = requests.toArray(new Request[requests.size()]);
+        for (Request request : array) {
+            if (request == null) {
+                throw new IllegalArgumentException("requests must not contain null");
+            }
+        }
+        BulkResponse<T> result = new BulkResponse<T>(array.length);
+        int helpers = Math.min(parallelism, array.length) - 1;
+        BulkExecution<T> bulk = new BulkExecution<T>(array, clazz, result, Math.max(helpers, 0));
+        long start = System.nanoTime();
+
+        Executor myExecutor = executor != null ? executor : DefaultExecutor.INSTANCE;
+        for (int i = 0; i < helpers; ++i) {
+            try {
+                myExecutor.execute(bulk);
+            } catch (RejectedExecutionException e) {
+                bulk.finished.countDown(); // the remaining workers will do the job
+            }
+        }
+        bulk.work();
+        try {
+            bulk.finished.await();
+        } catch (InterruptedException e) {
+            bulk.stopped = true;
+            Thread.currentThread().interrupt();
+            throw new WebbException(e);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Prepares this instance for traffic to the base URI (see {@link #setBaseUri(String)} and
+     * {@link #setGlobalBaseUri(String)}) with one connection, see {@link #warmUp(Collection, int)}.
+     *
+     * @return the opened connections, failures and timings
+     * @throws IllegalStateException if no absolute base URI is set
+     * @since 1.3.1
+     */
+    public WarmUpReport warmUp() {
+        return warmUp(null, 1);
+    }
+
+    /**
+     * Prepares this instance for traffic before the first request is sent, e.g. at the start of a service.
+     * <br>
+     * The host of every URI is resolved with <code>InetAddress</code>, which fills the DNS cache of the JVM
+     * used by the transports (it expires according to <code>networkaddress.cache.ttl</code>).
+     * Then <code>connectionsPerHost</code> connections are opened at the same time on the executor
+     * (see {@link #setExecutor(Executor)}), including the TLS handshake. Only when all of them are connected,
+     * a <code>HEAD</code> request is sent on each, so every connection has its own socket and they are parked
+     * as separate idle connections for reuse by the following requests. The status codes of the responses
+     * are ignored.
+     * <br>
+     * Keep <code>connectionsPerHost</code> within the keep-alive pool of the transport (see
+     * {@link HttpUrlConnectionTransport#configureKeepAlive(int, long)}), other connections are closed.
+     * Failures don't stop the warm-up, they are collected in the report.
+     *
+     * @param uris absolute URIs (e.g. <code>https://api.example.com</code>) or paths relative to the base URI,
+     *             <code>null</code> or empty for the base URI
+     * @param connectionsPerHost the number of connections to open for every URI
+     * @return the opened connections, failures and timings
+     * @throws IllegalStateException if a relative URI is given and no absolute base URI is set
+     * @since 1.3.1
+     */
+    public WarmUpReport warmUp(Collection<String> uris, int connectionsPerHost) {
+        if (connectionsPerHost < 1) {
+            throw new IllegalArgumentException("connectionsPerHost must be at least 1");
+        }
+        List<String> targets = new ArrayList<String>();
+        for (String pathOrUri : uris == null || uris.isEmpty() ? Collections.singletonList("") : uris) {
+            String uri = buildPath(pathOrUri);
+            if (!uri.startsWith("http://") && !uri.startsWith("https://")) {
+                throw new IllegalStateException("no absolute base URI set for '" + pathOrUri + "'");
+            }
+            if (!targets.contains(uri)) {
+                targets.add(uri);
+            }
+        }
+        WarmUpReport report = new WarmUpReport(targets.toArray(new String[targets.size()]), connectionsPerHost);
+        List<WarmUpConnection> connections = new ArrayList<WarmUpConnection>();
+        long start = System.nanoTime();
+
+        Executor myExecutor = executor != null ? executor : DefaultExecutor.INSTANCE;
+        try {
+            for (int index = 0; index < targets.size(); ++index) {
+                String uri = targets.get(index);
+                try {
+                    InetAddress.getAllByName(WebbUtils.hostName(uri));
+                } catch (UnknownHostException e) {
+                    report.failed(index, new WebbException(e), System.nanoTime() - start);
+                    continue;
+                }
+                for (int i = 0; i < connectionsPerHost; ++i) {
+                    connections.add(new WarmUpConnection(this, uri, index, report, start));
+                }
+            }
+            // every connection takes its socket before the first one is given back to the keep-alive pool
+            // (a response without body gives it back right away), so all of them are separate sockets
+            WarmUpConnection.runAll(connections, myExecutor);
+            WarmUpConnection.runAll(connections, myExecutor);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebbException(e);
+        } finally {
+            for (WarmUpConnection connection : connections) {
+                connection.release();
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
     private String buildPath(String pathOrUri) {
         if (pathOrUri == null) {
             throw new IllegalArgumentException("pathOrUri must not be null");
@@ -274,39 +675,77 @@ public class Webb {
         if (pathOrUri.startsWith("http://") || pathOrUri.startsWith("https://")) {
             return pathOrUri;
         }
-        String myBaseUri = baseUri != null ? baseUri : globalBaseUri;
+        String myBaseUri = baseUri != null || immutable ? baseUri : globalBaseUri;
         return myBaseUri == null ? pathOrUri : myBaseUri + pathOrUri;
     }
 
+    private void checkMutable() {
+        if (immutable) {
+            throw new IllegalStateException("instance is immutable (created by Webb.Builder)");
+        }
+    }
+
+    /**
+     * Takes a snapshot of the global settings and makes this instance read-only.
+     */
+    void freeze() {
+        Map<String, Object> headers = new LinkedHashMap<String, Object>(globalHeaders);
+        if (defaultHeaders != null) {
+            headers.putAll(defaultHeaders);
+        }
+        defaultHeaders = Collections.unmodifiableMap(headers);
+        if (baseUri == null) {
+            baseUri = globalBaseUri;
+        }
+        if (retryManager == null) {
+            retryManager = RetryManager.DEFAULT;
+        }
+        immutable = true;
+    }
+
+    <T> ResponseFuture<T> executeAsync(Request request, Class<T> clazz) {
+        request.startDeadline();
+        return submitAsync(request, clazz);
+    }
+
+    private <T> ResponseFuture<T> submitAsync(Request request, Class<T> clazz) {
+        retryManager().recordRequest();
+        return startAsync(request, clazz);
+    }
+
+    /**
+     * Like {@link #submitAsync(Request, Class)}, but the request has been recorded already
+     * (see {@link RetryManager#recordRequest()}).
+     */
+    private <T> ResponseFuture<T> startAsync(Request request, Class<T> clazz) {
+        MetricsListener listener = metricsListener;
+        return startAsync(request, clazz, listener, listener != null ? new RequestMetrics(request) : null);
+    }
+
+    /**
+     * @param listener receives the metrics when the request is done, <code>null</code> if the caller reports them
+     * @param metrics collects the measurements of the request, <code>null</code> if nothing is measured
+     */
+    private <T> ResponseFuture<T> startAsync(Request request, Class<T> clazz, MetricsListener listener,
+                                             RequestMetrics metrics) {
+        ResponseFuture<T> future = new ResponseFuture<T>();
+        new AsyncExecution<T>(request, clazz, future, listener, metrics).submit();
+        return future;
+    }
+
     <T> Response<T> execute(Request request, Class<T> clazz) {
-        Response<T> response = null;
+        return execute(request, clazz, null);
+    }
 
-        if (request.retryCount == 0) {
-            // no retry -> just delegate to inner method
-            response = _execute(request, clazz);
+    <T> Response<T> execute(Request request, Class<T> clazz, ResponseFuture<T> future) {
+        Response<T> response;
+        request.startDeadline();
+        if (inFlight != null && future == null && isCoalescable(request, clazz)) {
+            response = executeCoalesced(request, clazz);
+        } else if (hedgePolicy != null && future == null && request.method == Request.Method.GET) {
+            response = executeHedged(request, clazz, hedgePolicy);
         } else {
-            if (retryManager == null) {
-                retryManager = RetryManager.DEFAULT;
-            }
-            for (int tries = 0; tries <= request.retryCount; ++tries) {
-                try {
-                    response = _execute(request, clazz);
-                    if (tries >= request.retryCount || !retryManager.isRetryUseful(response)) {
-                        break;
-                    }
-                } catch (WebbException we) {
-                    // analyze: is exception recoverable?
-                    if (tries >= request.retryCount || !retryManager.isRecoverable(we)) {
-                        throw we;
-                    }
-                }
-                if (request.waitExponential) {
-                    retryManager.wait(tries);
-                }
-            }
-        }
-        if (response == null) {
-            throw new IllegalStateException(); // should never reach this line
+            response = executeWithRetries(request, clazz, future, isJson(clazz));
         }
         if (request.ensureSuccess) {
             response.ensureSuccess();
@@ -315,116 +754,516 @@ public class Webb {
         return response;
     }
 
-    private <T> Response<T> _execute(Request request, Class<T> clazz) {
-        Response<T> response = new Response<T>(request);
-
-        InputStream is = null;
-        boolean closeStream = true;
-        HttpURLConnection connection = null;
+    private <T> Response<T> executeWithRetries(Request request, Class<T> clazz, ResponseFuture<T> future,
+                                               boolean acceptJson) {
+        Response<T> response = null;
+        RetryManager retryManager = retryManager();
+        retryManager.recordRequest();
+        MetricsListener listener = metricsListener;
+        RequestMetrics metrics = listener != null ? new RequestMetrics(request) : null;
+        long start = metrics != null ? System.nanoTime() : 0L;
 
         try {
-            String uri = request.uri;
-            if (request.method == Request.Method.GET &&
-                    !uri.contains("?") &&
-                    request.params != null &&
-                    !request.params.isEmpty()) {
-                uri += "?" + WebbUtils.queryString(request.params);
-            }
-            URL apiUrl = new URL(uri);
-            if (proxy != null) {
-                connection = (HttpURLConnection) apiUrl.openConnection(proxy);
+            if (request.retryCount == 0) {
+                // no retry -> just delegate to inner method
+                response = attempt(request, clazz, future, acceptJson, metrics);
             } else {
-                connection = (HttpURLConnection) apiUrl.openConnection();
+                for (int tries = 0; tries <= request.retryCount; ++tries) {
+                    response = null;
+                    if (metrics != null) {
+                        metrics.retries = tries;
+                    }
+                    try {
+                        response = attempt(request, clazz, future, acceptJson, metrics);
+                        if (tries >= request.retryCount || !retryManager.isRetryUseful(response)
+                                || !hasTimeForRetry(request, retryManager, tries, response)
+                                || !retryManager.acquireRetryPermit()) {
+                            break;
+                        }
+                    } catch (WebbException we) {
+                        // analyze: is exception recoverable?
+                        if (tries >= request.retryCount || !retryManager.isRecoverable(we) || isCancelled(future)
+                                || !hasTimeForRetry(request, retryManager, tries, null)
+                                || !retryManager.acquireRetryPermit()) {
+                            throw we;
+                        }
+                    }
+                    closeQuietly(response);
+                    if (request.waitExponential) {
+                        retryManager.wait(tries, response);
+                    }
+                }
             }
-
-            prepareSslConnection(connection);
-            connection.setRequestMethod(request.method.name());
-            if (request.followRedirects != null) {
-                connection.setInstanceFollowRedirects(request.followRedirects);
+        } catch (WebbException e) {
+            if (metrics != null) {
+                metrics.exception = e;
             }
-            connection.setUseCaches(request.useCaches);
-            setTimeouts(request, connection);
-            if (request.ifModifiedSince != null) {
-                connection.setIfModifiedSince(request.ifModifiedSince);
+            throw e;
+        } finally {
+            if (metrics != null) {
+                report(listener, metrics, start);
             }
+        }
+        if (response == null) {
+            throw new IllegalStateException(); // should never reach this line
+        }
+        return response;
+    }
 
-            WebbUtils.addRequestProperties(connection, mergeHeaders(request.headers));
-            if (clazz == JSONObject.class || clazz == JSONArray.class) {
-                WebbUtils.ensureRequestProperty(connection, HDR_ACCEPT, APP_JSON);
+    /**
+     * Sends the request asynchronously and waits. If there is no response within the delay of the policy,
+     * a second request is sent and the first successful response wins, the other request is cancelled.
+     * Only the metrics of the winner are reported.
+     */
+    private <T> Response<T> executeHedged(Request request, Class<T> clazz, HedgePolicy policy) {
+        long start = System.nanoTime();
+        policy.recordRequest();
+        // one logical request, even if it is sent twice
+        retryManager().recordRequest();
+        MetricsListener listener = metricsListener;
+        long delayMillis = policy.getDelayMillis();
+        BlockingQueue<ResponseFuture<T>> done = new LinkedBlockingQueue<ResponseFuture<T>>();
+        RequestMetrics primaryMetrics = listener != null ? new RequestMetrics(request) : null;
+        RequestMetrics hedgeMetrics = null;
+        RequestMetrics winnerMetrics = primaryMetrics;
+        ResponseFuture<T> primary = startAsync(request, clazz, null, primaryMetrics);
+        primary.addCallback(new HedgeCallback<T>(primary, done));
+        ResponseFuture<T> hedge = null;
+        try {
+            ResponseFuture<T> first = delayMillis < 0 ? done.take() : done.poll(delayMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                if (policy.acquireHedge()) {
+                    hedgeMetrics = listener != null ? new RequestMetrics(request) : null;
+                    hedge = startAsync(request, clazz, null, hedgeMetrics);
+                    hedge.addCallback(new HedgeCallback<T>(hedge, done));
+                }
+                first = done.take();
             }
-
-            if (request.method != Request.Method.GET && request.method != Request.Method.DELETE) {
-                if (request.streamPayload) {
-                    WebbUtils.setContentTypeAndLengthForStreaming(connection, request, request.compress);
-                    connection.setDoOutput(true);
-                    streamBody(connection, request.payload, request.compress);
-                } else {
-                    byte[] requestBody = WebbUtils.getPayloadAsBytesAndSetContentType(
-                            connection, request, request.compress, jsonIndentFactor);
-
-                    if (requestBody != null) {
-                        connection.setDoOutput(true);
-                        writeBody(connection, requestBody);
-                    }
+            ResponseFuture<T> winner = first;
+            if (hedge != null && hasNoResponse(first)) {
+                // the other one might still succeed
+                ResponseFuture<T> second = done.take();
+                if (!hasNoResponse(second)) {
+                    winner = second;
                 }
-            } else {
-                connection.connect();
             }
-
-            response.connection = connection;
-            response.statusCode = connection.getResponseCode();
-            response.responseMessage = connection.getResponseMessage();
-
-            // get the response body (if any)
-            is = response.isSuccess() ? connection.getInputStream() : connection.getErrorStream();
-            is = WebbUtils.wrapStream(connection.getContentEncoding(), is);
-
-            if (clazz == InputStream.class) {
-                is = new AutoDisconnectInputStream(connection, is);
+            winnerMetrics = winner == primary ? primaryMetrics : hedgeMetrics;
+            ResponseFuture<T> loser = winner == primary ? hedge : primary;
+            if (loser != null && !loser.cancel(true) && !loser.isCancelled()) {
+                try {
+                    closeQuietly(loser.get());
+                } catch (ExecutionException ignored) {
+                    // nothing to close
+                }
             }
-            if (response.isSuccess()) {
-                WebbUtils.parseResponseBody(clazz, response, is);
-            } else {
-                WebbUtils.parseErrorResponse(clazz, response, is);
+            Response<T> response = winner.get();
+            policy.recordLatency(System.nanoTime() - start);
+            return response;
+        } catch (InterruptedException e) {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
             }
-            if (clazz == InputStream.class) {
-                closeStream = false;
+            Thread.currentThread().interrupt();
+            WebbException we = new WebbException(e);
+            if (listener != null) {
+                // the requests might still be running and change their metrics
+                winnerMetrics = new RequestMetrics(request);
+                winnerMetrics.exception = we;
             }
-
-            return response;
-
-        } catch (WebbException e) {
-
-            throw e;
-
-        } catch (Exception e) {
-
-            throw new WebbException(e);
-
+            throw we;
+        } catch (ExecutionException e) {
+            throw (WebbException) e.getCause();
         } finally {
-            if (closeStream) {
-                if (is != null) {
-                    try { is.close(); } catch (Exception ignored) {}
-                }
-                if (connection != null) {
-                    try { connection.disconnect(); } catch (Exception ignored) {}
-                }
+            if (listener != null) {
+                winnerMetrics.hedged = hedge != null;
+                report(listener, winnerMetrics, start);
             }
         }
     }
 
-    private void setTimeouts(Request request, HttpURLConnection connection) {
-        if (request.connectTimeout != null || connectTimeout != null) {
-            connection.setConnectTimeout(
-                    request.connectTimeout != null ? request.connectTimeout : connectTimeout);
+    /**
+     * A failed request without a response (e.g. a connection error) is not a valid answer
+     * as long as the other request is running.
+     */
+    private static boolean hasNoResponse(ResponseFuture<?> future) {
+        try {
+            future.get();
+            return false;
+        } catch (ExecutionException e) {
+            return ((WebbException) e.getCause()).getResponse() == null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static class HedgeCallback<T> implements Callback<T> {
+        private final ResponseFuture<T> future;
+        private final BlockingQueue<ResponseFuture<T>> done;
+
+        HedgeCallback(ResponseFuture<T> future, BlockingQueue<ResponseFuture<T>> done) {
+            this.future = future;
+            this.done = done;
+        }
+
+        public void onSuccess(Response<T> response) {
+            done.offer(future);
+        }
+
+        public void onFailure(WebbException exception) {
+            done.offer(future);
+        }
+    }
+
+    /**
+     * A retry is pointless if the deadline of the request passes while waiting for it.
+     */
+    private static boolean hasTimeForRetry(Request request, RetryManager retryManager, int tries,
+                                           Response<?> response) {
+        if (request.timeoutMillis <= 0) {
+            return true;
+        }
+        long delayMillis = request.waitExponential ? retryManager.getDelay(tries, response) : 0L;
+        return delayMillis < request.remainingMillis();
+    }
+
+    private static void report(MetricsListener listener, RequestMetrics metrics, long start) {
+        metrics.lap(RequestMetrics.Phase.TOTAL, start);
+        try {
+            listener.onRequest(metrics);
+        } catch (RuntimeException ignored) {
+            // a broken listener must not break the request
+        }
+    }
+
+    private static boolean isJson(Class<?> clazz) {
+        return clazz == JSONObject.class || clazz == JSONArray.class || clazz == JsonArrayStream.class;
+    }
+
+    private static boolean isCoalescable(Request request, Class<?> clazz) {
+        return request.method == Request.Method.GET && clazz != InputStream.class && clazz != JsonArrayStream.class;
+    }
+
+    /**
+     * The first thread executes the request and reads the body as bytes, all threads asking for the same
+     * resource in the meantime wait for it. Every thread converts the bytes into its own <code>Response</code>,
+     * so nobody can modify the body of another one.
+     */
+    private <T> Response<T> executeCoalesced(Request request, Class<T> clazz) {
+        boolean acceptJson = isJson(clazz);
+        String key = coalescingKey(request, acceptJson);
+        InFlight call = new InFlight();
+        InFlight existing = inFlight.putIfAbsent(key, call);
+        if (existing == null) {
+            try {
+                @SuppressWarnings("unchecked")
+                Response<byte[]> raw = executeWithRetries(request, Const.BYTE_ARRAY_CLASS, null, acceptJson);
+                call.response = raw;
+            } catch (WebbException e) {
+                call.exception = e;
+            } catch (RuntimeException e) {
+                call.exception = new WebbException(e);
+            } finally {
+                inFlight.remove(key);
+                call.done.countDown();
+            }
+            if (call.exception != null) {
+                throw call.exception;
+            }
+            return call.response.convert(request, clazz);
+        }
+
+        MetricsListener listener = metricsListener;
+        RequestMetrics metrics = listener != null ? new RequestMetrics(request) : null;
+        long start = System.nanoTime();
+        try {
+            try {
+                existing.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebbException(e);
+            }
+            if (existing.exception != null) {
+                // don't share the exception object (stack trace of another thread)
+                throw new WebbException(existing.exception.getMessage(), existing.exception);
+            }
+            long parseStart = metrics != null ? metrics.lap(RequestMetrics.Phase.WAIT, start) : 0L;
+            Response<T> response = existing.response.convert(request, clazz);
+            if (metrics != null) {
+                metrics.lap(RequestMetrics.Phase.PARSE, parseStart);
+                metrics.statusCode = response.getStatusCode();
+            }
+            return response;
+        } catch (WebbException e) {
+            if (metrics != null) {
+                metrics.exception = e;
+            }
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.coalesced = true;
+                report(listener, metrics, start);
+            }
+        }
+    }
+
+    private String coalescingKey(Request request, boolean acceptJson) {
+        StringBuilder key = new StringBuilder(request.uri);
+        if (!request.uri.contains("?") && request.params != null && !request.params.isEmpty()) {
+            key.append('?').append(WebbUtils.queryString(request.params));
+        }
+        key.append('\n').append(acceptJson).append(' ').append(request.retryCount).append(' ')
+                .append(request.ifModifiedSince).append(' ').append(request.followRedirects);
+        Map<String, Object> headers = mergeHeaders(request.headers);
+        if (headers != null) {
+            for (Map.Entry<String, Object> header : new TreeMap<String, Object>(headers).entrySet()) {
+                key.append('\n').append(header.getKey()).append(": ").append(header.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    RetryManager retryManager() {
+        return retryManager != null ? retryManager : RetryManager.DEFAULT;
+    }
+
+    /**
+     * A response which is not returned to the caller (because of a retry) might still hold an open stream.
+     */
+    private static void closeQuietly(Response<?> response) {
+        if (response == null) {
+            return;
+        }
+        Object body = response.body != null ? response.body : response.errorBody;
+        if (body instanceof InputStream) {
+            try { ((InputStream) body).close(); } catch (Exception ignored) {}
+        } else if (body instanceof JsonArrayStream) {
+            ((JsonArrayStream) body).close();
+        }
+    }
+
+    private static boolean isCancelled(ResponseFuture<?> future) {
+        return future != null && future.isCancelled();
+    }
+
+    /**
+     * Execute one attempt of the request, passing it through the interceptors (if any).
+     */
+    private <T> Response<T> attempt(Request request, Class<T> clazz, ResponseFuture<T> future,
+                                    boolean acceptJson, RequestMetrics metrics) {
+        Interceptor[] chain = interceptors;
+        if (chain.length == 0) {
+            return _execute(request, clazz, future, acceptJson, metrics);
+        }
+        Response<T> response;
+        try {
+            response = new InterceptorChain<T>(chain, 0, request, clazz, future, acceptJson, metrics).proceed(request);
+        } catch (WebbException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new WebbException(e);
+        }
+        if (metrics != null) {
+            // the response might not come from the network
+            metrics.statusCode = response.statusCode;
+        }
+        return response;
+    }
+
+    /**
+     * Create a response without a connection to a server (see {@link Interceptor.Chain#respond(int, Map, byte[])}).
+     */
+    private static <T> Response<T> respond(Request request, Class<T> clazz, int statusCode,
+                                           Map<String, List<String>> headers, byte[] body) {
+        Response<T> response = new Response<T>(request);
+        response.connection = new StaticConnection(statusCode, headers, body);
+        response.statusCode = statusCode;
+        try {
+            if (response.isSuccess()) {
+                WebbUtils.parseResponseBody(clazz, response, response.connection.getInputStream());
+            } else {
+                WebbUtils.parseErrorResponse(clazz, response, response.connection.getErrorStream());
+            }
+        } catch (WebbException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new WebbException(e);
+        }
+        return response;
+    }
+
+    private <T> Response<T> _execute(Request request, Class<T> clazz, ResponseFuture<T> future,
+                                     boolean acceptJson, RequestMetrics metrics) {
+        if (isCancelled(future)) {
+            throw new WebbException(new CancellationException());
+        }
+        if (request.remainingMillis() <= 0) {
+            throw new DeadlineExceededException(request.timeoutMillis);
+        }
+        Response<T> response = new Response<T>(request);
+
+        InputStream is = null;
+        boolean closeStream = true;
+        boolean completed = false;
+        Connection connection = null;
+        long lap = metrics != null ? System.nanoTime() : 0L;
+
+        try {
+            String uri = request.uri;
+            if (request.method == Request.Method.GET &&
+                    !uri.contains("?") &&
+                    request.params != null &&
+                    !request.params.isEmpty()) {
+                uri += "?" + WebbUtils.queryString(request.params);
+            }
+            connection = (transport != null ? transport : HttpUrlConnectionTransport.DEFAULT).open(this, uri);
+            if (cache != null) {
+                connection = cache.wrap(connection, uri);
+            }
+            if (future != null) {
+                future.setConnection(connection);
+            }
+
+            connection.setRequestMethod(request.method.name());
+            if (request.followRedirects != null) {
+                connection.setInstanceFollowRedirects(request.followRedirects);
+            }
+            connection.setUseCaches(request.useCaches);
+            setTimeouts(request, connection);
+            if (request.ifModifiedSince != null) {
+                connection.setIfModifiedSince(request.ifModifiedSince);
+            }
+
+            WebbUtils.addRequestProperties(connection, mergeHeaders(request.headers));
+            if (request.deadlineHeader != null && request.timeoutMillis > 0) {
+                connection.setRequestProperty(request.deadlineHeader,
+                        String.valueOf(Math.max(1L, request.remainingMillis())));
+            }
+            if (acceptJson) {
+                WebbUtils.ensureRequestProperty(connection, HDR_ACCEPT, APP_JSON);
+            }
+
+            boolean streamBody = false;
+            byte[] requestBody = null;
+            if (request.method != Request.Method.GET && request.method != Request.Method.DELETE) {
+                if (metrics != null) {
+                    lap = metrics.lap(RequestMetrics.Phase.CONNECT, lap);
+                }
+                if (request.streamPayload) {
+                    WebbUtils.setContentTypeAndLengthForStreaming(connection, request, request.compress);
+                    connection.setDoOutput(true);
+                    streamBody = true;
+                } else {
+                    requestBody = WebbUtils.getPayloadAsBytesAndSetContentType(
+                            connection, request, request.compress,
+                            immutable ? defaultJsonIndentFactor : jsonIndentFactor, metrics);
+
+                    if (requestBody != null) {
+                        connection.setDoOutput(true);
+                    }
+                }
+                if (metrics != null) {
+                    lap = metrics.lap(RequestMetrics.Phase.SEND, lap);
+                }
+            }
+
+            connection.connect();
+            if (metrics != null) {
+                lap = metrics.lap(RequestMetrics.Phase.CONNECT, lap);
+            }
+            if (streamBody) {
+                streamBody(connection, request.payload, request.compress, metrics);
+            } else if (requestBody != null) {
+                writeBody(connection, requestBody);
+            }
+            if (metrics != null) {
+                lap = metrics.lap(RequestMetrics.Phase.SEND, lap);
+            }
+
+            response.connection = connection;
+            response.statusCode = connection.getResponseCode();
+            response.responseMessage = connection.getResponseMessage();
+            if (metrics != null) {
+                lap = metrics.lap(RequestMetrics.Phase.WAIT, lap);
+                metrics.statusCode = response.statusCode;
+            }
+
+            // get the response body (if any)
+            is = response.isSuccess() ? connection.getInputStream() : connection.getErrorStream();
+            RequestMetrics.MeteredInputStream wire = null;
+            RequestMetrics.MeteredInputStream decoded = null;
+            if (metrics != null && is != null) {
+                is = wire = new RequestMetrics.MeteredInputStream(is);
+            }
+            String contentEncoding = connection.getContentEncoding();
+            is = WebbUtils.wrapStream(contentEncoding, is);
+            if (wire != null && is != wire) {
+                is = decoded = new RequestMetrics.MeteredInputStream(is);
+            }
+
+            // JSON arrays are only streamed in case of success, error responses are read as usual
+            boolean streaming = clazz == InputStream.class
+                    || (clazz == JsonArrayStream.class && response.isSuccess() && is != null);
+            if (streaming) {
+                is = new ReleasingInputStream(connection, is, connectionStats);
+            }
+            if (response.isSuccess()) {
+                WebbUtils.parseResponseBody(clazz, response, is);
+            } else {
+                WebbUtils.parseErrorResponse(clazz, response, is);
+            }
+            if (streaming) {
+                closeStream = false;
+            }
+            if (wire != null) {
+                metrics.received(System.nanoTime() - lap, wire, decoded);
+            }
+            completed = true;
+
+            return response;
+
+        } catch (WebbException e) {
+
+            throw e;
+
+        } catch (Exception e) {
+
+            throw new WebbException(e);
+
+        } finally {
+            if (closeStream) {
+                // don't disconnect, the connection can be reused if the body has been read completely
+                connectionStats.release(connection, is, completed);
+            }
+        }
+    }
+
+    private void setTimeouts(Request request, Connection connection) {
+        Integer connectTimeout = immutable ? defaultConnectTimeout : Webb.connectTimeout;
+        Integer readTimeout = immutable ? defaultReadTimeout : Webb.readTimeout;
+        if (request.connectTimeout != null) {
+            connectTimeout = request.connectTimeout;
+        }
+        if (request.readTimeout != null) {
+            readTimeout = request.readTimeout;
+        }
+        if (request.timeoutMillis > 0) {
+            // shorten the timeouts of this attempt to the time left until the deadline
+            int remaining = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, request.remainingMillis()));
+            connectTimeout = connectTimeout == null || connectTimeout <= 0
+                    ? remaining : Math.min(connectTimeout, remaining);
+            readTimeout = readTimeout == null || readTimeout <= 0 ? remaining : Math.min(readTimeout, remaining);
+        }
+        if (connectTimeout != null) {
+            connection.setConnectTimeout(connectTimeout);
         }
-        if (request.readTimeout != null || readTimeout != null) {
-            connection.setReadTimeout(
-                    request.readTimeout != null ? request.readTimeout : readTimeout);
+        if (readTimeout != null) {
+            connection.setReadTimeout(readTimeout);
         }
     }
 
-    private void writeBody(HttpURLConnection connection, byte[] body) throws IOException {
+    private void writeBody(Connection connection, byte[] body) throws IOException {
         // Android StrictMode might complain about not closing the connection:
         // "E/StrictMode﹕ A resource was acquired at attached stack trace but never released"
         // It seems like some kind of bug in special devices (e.g. 4.0.4/Sony) but does not
@@ -443,7 +1282,8 @@ public class Webb {
         }
     }
 
-    private void streamBody(HttpURLConnection connection, Object body, boolean compress) throws IOException {
+    private void streamBody(Connection connection, Object body, boolean compress, RequestMetrics metrics)
+            throws IOException {
         InputStream is;
         boolean closeStream;
 
@@ -458,10 +1298,18 @@ public class Webb {
         // "E/StrictMode﹕ A resource was acquired at attached stack trace but never released"
         // see comments about this problem in #writeBody()
         OutputStream os = null;
+        RequestMetrics.CountingOutputStream wire = null;
+        RequestMetrics.CountingOutputStream raw = null;
         try {
             os = connection.getOutputStream();
+            if (metrics != null) {
+                os = wire = new RequestMetrics.CountingOutputStream(os);
+            }
             if (compress) {
-                os = new GZIPOutputStream(os);
+                os = new GZIPOutputStream(os, Const.GZIP_BUFFER_SIZE);
+                if (metrics != null) {
+                    os = raw = new RequestMetrics.CountingOutputStream(os);
+                }
             }
             WebbUtils.copyStream(is, os);
             os.flush();
@@ -472,22 +1320,24 @@ public class Webb {
             if (is != null && closeStream) {
                 try { is.close(); } catch (Exception ignored) {}
             }
-        }
-    }
-
-    private void prepareSslConnection(HttpURLConnection connection) {
-        if ((hostnameVerifier != null || sslSocketFactory != null) && connection instanceof HttpsURLConnection) {
-            HttpsURLConnection sslConnection = (HttpsURLConnection) connection;
-            if (hostnameVerifier != null) {
-                sslConnection.setHostnameVerifier(hostnameVerifier);
-            }
-            if (sslSocketFactory != null) {
-                sslConnection.setSSLSocketFactory(sslSocketFactory);
+            if (wire != null) {
+                metrics.bytesSent += wire.count;
+                metrics.bytesSentUncompressed += raw != null ? raw.count : wire.count;
             }
         }
     }
 
     Map<String, Object> mergeHeaders(Map<String, Object> requestHeaders) {
+        if (immutable) {
+            // global headers are already merged into (read-only) defaultHeaders
+            if (requestHeaders == null) {
+                return defaultHeaders;
+            }
+            Map<String, Object> headers = new LinkedHashMap<String, Object>(defaultHeaders);
+            headers.putAll(requestHeaders);
+            return headers;
+        }
+        Map<String, Object> globalHeaders = Webb.globalHeaders;
         Map<String, Object> headers = null;
         if (!globalHeaders.isEmpty()) {
             headers = new LinkedHashMap<String, Object>();
@@ -510,35 +1360,620 @@ public class Webb {
     }
 
     /**
-     * Disconnect the underlying <code>HttpURLConnection</code> on close.
+     * Builder for immutable <code>Webb</code> instances which can be shared between threads.
+     * <br>
+     * Settings not made on the builder are taken from the global settings at the time {@link #build()}
+     * is called. Later changes to global settings don't affect the built instance.
+     *
+     * @since 1.3.1
+     */
+    public static class Builder {
+        private Webb webb;
+        private Integer connectTimeout;
+        private Integer readTimeout;
+        private Integer jsonIndentFactor;
+
+        protected Builder() {
+            webb = new Webb();
+        }
+
+        /**
+         * See {@link Webb#setBaseUri(String)}.
+         * @param baseUri the prefix for all URIs of new Requests.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder baseUri(String baseUri) {
+            instance().setBaseUri(baseUri);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setDefaultHeader(String, Object)}.
+         * @param name name of the header
+         * @param value value of the header. If <code>null</code> the header value is cleared.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder defaultHeader(String name, Object value) {
+            instance().setDefaultHeader(name, value);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setFollowRedirects(boolean)}.
+         * @param auto <code>true</code> to automatically follow redirects (HTTP status code 3xx).
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder followRedirects(boolean auto) {
+            instance().setFollowRedirects(auto);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setSSLSocketFactory(javax.net.ssl.SSLSocketFactory)}.
+         * @param sslSocketFactory the factory to use.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder sslSocketFactory(SSLSocketFactory sslSocketFactory) {
+            instance().setSSLSocketFactory(sslSocketFactory);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setTlsConfig(TlsConfig)}.
+         * @param tlsConfig the TLS configuration.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder tlsConfig(TlsConfig tlsConfig) {
+            instance().setTlsConfig(tlsConfig);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setHostnameVerifier(javax.net.ssl.HostnameVerifier)}.
+         * @param hostnameVerifier the verifier.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder hostnameVerifier(HostnameVerifier hostnameVerifier) {
+            instance().setHostnameVerifier(hostnameVerifier);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setProxy(java.net.Proxy)}.
+         * @param proxy the proxy to be used or <tt>null</tt> for no proxy.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder proxy(Proxy proxy) {
+            instance().setProxy(proxy);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setRetryManager(RetryManager)}.
+         * <br>
+         * As the built instance is shared between threads, the <code>RetryManager</code> must be thread-safe too.
+         * @param retryManager the manager for deciding whether it makes sense to retry a request.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder retryManager(RetryManager retryManager) {
+            instance().setRetryManager(retryManager);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setTransport(Transport)}.
+         * @param transport the HTTP engine used to execute requests.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder transport(Transport transport) {
+            instance().setTransport(transport);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setExecutor(java.util.concurrent.Executor)}.
+         * @param executor the executor which runs asynchronous requests.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder executor(Executor executor) {
+            instance().setExecutor(executor);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setScheduler(java.util.concurrent.ScheduledExecutorService)}.
+         * @param scheduler the scheduler which delays retries of asynchronous requests.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            instance().setScheduler(scheduler);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setCache(HttpCache)}.
+         * @param cache the cache for <code>GET</code> requests.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder cache(HttpCache cache) {
+            instance().setCache(cache);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setMetricsListener(MetricsListener)}.
+         * @param metricsListener the listener for metrics of all requests.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder metricsListener(MetricsListener metricsListener) {
+            instance().setMetricsListener(metricsListener);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setHedgePolicy(HedgePolicy)}.
+         * @param hedgePolicy the policy for hedging <code>GET</code> requests.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder hedgePolicy(HedgePolicy hedgePolicy) {
+            instance().setHedgePolicy(hedgePolicy);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#addInterceptor(Interceptor)}.
+         * @param interceptor the interceptor to add to the end of the chain.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder interceptor(Interceptor interceptor) {
+            instance().addInterceptor(interceptor);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setCoalesceRequests(boolean)}.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder coalesceRequests() {
+            instance().setCoalesceRequests(true);
+            return this;
+        }
+
+        /**
+         * Run asynchronous requests on virtual threads (requires Java 21 or later).
+         * <br>
+         * Every request started with one of the <code>asXyzAsync()</code> methods gets its own virtual thread.
+         * Waiting for the network or for a retry doesn't block a platform thread, so tens of thousands of
+         * requests can be in flight at the same time. Blocking calls like {@link Request#asString()} run on
+         * the calling thread as before - they benefit from this too if the caller is a virtual thread.
+         *
+         * @return <code>this</code> for method chaining (fluent API)
+         * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+         */
+        public Builder virtualThreads() {
+            instance().setExecutor(VirtualThreads.executor());
+            return this;
+        }
+
+        /**
+         * Set the timeout in milliseconds for connecting the server (default: see
+         * {@link Webb#setConnectTimeout(int)}).
+         * @param connectTimeout the timeout or <code>&lt;= 0</code> for no timeout.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder connectTimeout(int connectTimeout) {
+            this.connectTimeout = Math.max(connectTimeout, 0);
+            return this;
+        }
+
+        /**
+         * Set the timeout in milliseconds for getting response from the server (default: see
+         * {@link Webb#setReadTimeout(int)}).
+         * @param readTimeout the timeout or <code>&lt;= 0</code> for no timeout.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder readTimeout(int readTimeout) {
+            this.readTimeout = Math.max(readTimeout, 0);
+            return this;
+        }
+
+        /**
+         * See {@link Webb#setJsonIndentFactor(int)}.
+         * @param indentFactor the number of spaces to indent, <code>-1</code> for no indentation.
+         * @return <code>this</code> for method chaining (fluent API)
+         */
+        public Builder jsonIndentFactor(int indentFactor) {
+            this.jsonIndentFactor = indentFactor;
+            return this;
+        }
+
+        /**
+         * Create the immutable instance. The builder cannot be used anymore after calling this method.
+         * @return the immutable and thread-safe instance.
+         */
+        public Webb build() {
+            Webb result = instance();
+            result.defaultConnectTimeout = connectTimeout != null ? connectTimeout : Webb.connectTimeout;
+            result.defaultReadTimeout = readTimeout != null ? readTimeout : Webb.readTimeout;
+            result.defaultJsonIndentFactor = jsonIndentFactor != null ? jsonIndentFactor : Webb.jsonIndentFactor;
+            result.freeze();
+            webb = null;
+            return result;
+        }
+
+        private Webb instance() {
+            if (webb == null) {
+                throw new IllegalStateException("build() has already been called");
+            }
+            return webb;
+        }
+    }
+
+    /**
+     * One asynchronous request: every attempt runs on the executor, waiting for a retry happens in the scheduler.
+     */
+    private class AsyncExecution<T> implements Runnable {
+        private final Request request;
+        private final Class<T> clazz;
+        private final ResponseFuture<T> future;
+        private final MetricsListener listener;
+        private final RequestMetrics metrics;
+        private final long start;
+        private int tries;
+        private boolean reported;
+
+        AsyncExecution(Request request, Class<T> clazz, ResponseFuture<T> future, MetricsListener listener,
+                       RequestMetrics metrics) {
+            this.request = request;
+            this.clazz = clazz;
+            this.future = future;
+            this.listener = listener;
+            this.metrics = metrics;
+            this.start = metrics != null ? System.nanoTime() : 0L;
+        }
+
+        void submit() {
+            try {
+                (executor != null ? executor : DefaultExecutor.INSTANCE).execute(this);
+            } catch (RejectedExecutionException e) {
+                fail(new WebbException(e));
+            }
+        }
+
+        private void fail(WebbException e) {
+            report(e);
+            future.fail(e);
+        }
+
+        private void report(WebbException e) {
+            if (metrics != null && !reported) {
+                reported = true;
+                metrics.exception = e;
+                if (listener != null) {
+                    Webb.report(listener, metrics, start);
+                }
+            }
+        }
+
+        public void run() {
+            if (future.isDone()) {
+                return; // cancelled before it was started
+            }
+            future.setRunner(Thread.currentThread());
+            try {
+                Response<T> response = null;
+                WebbException failure = null;
+                try {
+                    response = attempt(request, clazz, future, isJson(clazz), metrics);
+                } catch (WebbException we) {
+                    failure = we;
+                }
+                if (tries < request.retryCount && !future.isDone()) {
+                    RetryManager retryManager = retryManager();
+                    if ((failure == null ? retryManager.isRetryUseful(response) : retryManager.isRecoverable(failure))
+                            && hasTimeForRetry(request, retryManager, tries, response)
+                            && retryManager.acquireRetryPermit()) {
+                        closeQuietly(response);
+                        scheduleRetry(request.waitExponential ? retryManager.getDelay(tries, response) : 0L);
+                        return;
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                report(null);
+                if (request.ensureSuccess) {
+                    response.ensureSuccess();
+                }
+                future.complete(response);
+            } catch (WebbException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new WebbException(e));
+            } finally {
+                future.setRunner(null);
+            }
+        }
+
+        private void scheduleRetry(long delayMillis) {
+            ++tries;
+            if (metrics != null) {
+                metrics.retries = tries;
+            }
+            if (delayMillis <= 0) {
+                submit();
+                return;
+            }
+            try {
+                future.setPendingRetry((scheduler != null ? scheduler : DefaultScheduler.INSTANCE).schedule(
+                        new Runnable() {
+                            public void run() {
+                                future.setPendingRetry(null);
+                                if (!future.isDone()) {
+                                    submit();
+                                }
+                            }
+                        }, delayMillis, TimeUnit.MILLISECONDS));
+            } catch (RejectedExecutionException e) {
+                fail(new WebbException(e));
+            }
+        }
+    }
+
+    /**
+     * Passes the request to the next interceptor, the last one executes it (see {@link Interceptor}).
+     */
+    private class InterceptorChain<T> implements Interceptor.Chain<T> {
+        private final Interceptor[] interceptors;
+        private final int index;
+        private final Request request;
+        private final Class<T> clazz;
+        private final ResponseFuture<T> future;
+        private final boolean acceptJson;
+        private final RequestMetrics metrics;
+
+        InterceptorChain(Interceptor[] interceptors, int index, Request request, Class<T> clazz,
+                         ResponseFuture<T> future, boolean acceptJson, RequestMetrics metrics) {
+            this.interceptors = interceptors;
+            this.index = index;
+            this.request = request;
+            this.clazz = clazz;
+            this.future = future;
+            this.acceptJson = acceptJson;
+            this.metrics = metrics;
+        }
+
+        public Request getRequest() {
+            return request;
+        }
+
+        public Class<T> getResultType() {
+            return clazz;
+        }
+
+        public Response<T> proceed(Request request) {
+            if (index == interceptors.length) {
+                return _execute(request, clazz, future, acceptJson, metrics);
+            }
+            Interceptor interceptor = interceptors[index];
+            Response<T> response = interceptor.intercept(new InterceptorChain<T>(
+                    interceptors, index + 1, request, clazz, future, acceptJson, metrics));
+            if (response == null) {
+                throw new WebbException("interceptor returned null: " + interceptor.getClass().getName());
+            }
+            return response;
+        }
+
+        public Response<T> respond(int statusCode, Map<String, List<String>> headers, byte[] body) {
+            return Webb.respond(request, clazz, statusCode, headers, body);
+        }
+    }
+
+    /**
+     * A coalesced request in progress, see {@link #setCoalesceRequests(boolean)}.
      */
-    private static class AutoDisconnectInputStream extends FilterInputStream {
+    private static class InFlight {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Response<byte[]> response;
+        volatile WebbException exception;
+    }
+
+    /**
+     * Opens one connection for {@link #warmUp(Collection, int)} and keeps it until it is released.
+     * The first run connects, the second one sends the request and reads the response.
+     */
+    private static class WarmUpConnection implements Runnable {
+        private final Webb webb;
+        private final String uri;
+        private final int index;
+        private final WarmUpReport report;
+        private final long start;
+        private CountDownLatch finished;
+        private Connection connection;
+        private InputStream is;
+        private boolean failed;
+        private boolean completed;
+        private boolean running;
+        private boolean released;
+
+        WarmUpConnection(Webb webb, String uri, int index, WarmUpReport report, long start) {
+            this.webb = webb;
+            this.uri = uri;
+            this.index = index;
+            this.report = report;
+            this.start = start;
+        }
 
         /**
-         * The underlying <code>HttpURLConnection</code>.
+         * Runs all connections on the executor and waits until all are finished. Running inline when the
+         * executor is busy is fine, as no connection is given back before all of them have been run.
          */
-        private final HttpURLConnection connection;
+        static void runAll(List<WarmUpConnection> connections, Executor executor) throws InterruptedException {
+            CountDownLatch finished = new CountDownLatch(connections.size());
+            for (WarmUpConnection connection : connections) {
+                synchronized (connection) {
+                    connection.finished = finished;
+                    connection.running = true;
+                }
+                try {
+                    executor.execute(connection);
+                } catch (RejectedExecutionException e) {
+                    connection.run();
+                }
+            }
+            finished.await();
+        }
+
+        public void run() {
+            try {
+                if (failed) {
+                    return; // opening the connection failed in the first run
+                }
+                if (connection == null) {
+                    Transport transport = webb.transport != null ? webb.transport : HttpUrlConnectionTransport.DEFAULT;
+                    connection = transport.open(webb, uri);
+                    connection.setRequestMethod("HEAD");
+                    webb.setTimeouts(new Request(webb, Request.Method.GET, uri), connection);
+                    WebbUtils.addRequestProperties(connection, webb.mergeHeaders(null));
+                    connection.connect();
+                } else {
+                    is = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+                    completed = true;
+                    report.connected(index, System.nanoTime() - start);
+                }
+            } catch (IOException e) {
+                fail(new WebbException(e));
+            } catch (WebbException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new WebbException(e));
+            } finally {
+                boolean release;
+                CountDownLatch latch;
+                synchronized (this) {
+                    running = false;
+                    release = released;
+                    latch = finished;
+                }
+                if (release) {
+                    webb.connectionStats.release(connection, is, completed);
+                }
+                latch.countDown();
+            }
+        }
+
+        private void fail(WebbException e) {
+            failed = true;
+            report.failed(index, e, System.nanoTime() - start);
+        }
 
         /**
-         * Creates an <code>AutoDisconnectInputStream</code>
-         * by assigning the  argument <code>in</code>
-         * to the field <code>this.in</code> so as
-         * to remember it for later use.
-         * @param connection the underlying connection to disconnect on close.
-         * @param in the underlying input stream, or <code>null</code> if
-         * this instance is to be created without an underlying stream.
+         * Releases the connection for reuse, or lets the running task release it when it's finished.
          */
-        protected AutoDisconnectInputStream(final HttpURLConnection connection, final InputStream in) {
+        void release() {
+            synchronized (this) {
+                released = true;
+                if (running) {
+                    return;
+                }
+            }
+            webb.connectionStats.release(connection, is, completed);
+        }
+    }
+
+    /**
+     * Workers of {@link #executeAll(Collection, Class, int)} take the next request until all are done.
+     */
+    private static class BulkExecution<T> implements Runnable {
+        private final Request[] requests;
+        private final Class<T> clazz;
+        private final BulkResponse<T> result;
+        private final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch finished;
+        volatile boolean stopped;
+
+        BulkExecution(Request[] requests, Class<T> clazz, BulkResponse<T> result, int helpers) {
+            this.requests = requests;
+            this.clazz = clazz;
+            this.result = result;
+            this.finished = new CountDownLatch(helpers);
+        }
+
+        public void run() {
+            try {
+                work();
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        void work() {
+            int index;
+            while (!stopped && (index = next.getAndIncrement()) < requests.length) {
+                Request request = requests[index];
+                long start = System.nanoTime();
+                try {
+                    result.responses[index] = request.webb.execute(request, clazz);
+                } catch (WebbException e) {
+                    result.exceptions[index] = e;
+                } catch (RuntimeException e) {
+                    result.exceptions[index] = new WebbException(e);
+                }
+                result.durationNanos[index] = System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Lazily created pool for asynchronous requests when no executor is set.
+     */
+    private static class DefaultExecutor {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new DaemonThreadFactory("webb-async-"));
+    }
+
+    /**
+     * Lazily created scheduler for retries of asynchronous requests when no scheduler is set.
+     * The thread only hands over to the executor, so one is enough.
+     */
+    private static class DefaultScheduler {
+        static final ScheduledExecutorService INSTANCE =
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("webb-scheduler-"));
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Release the underlying <code>Connection</code> on close (see {@link ConnectionStats}).
+     */
+    private static class ReleasingInputStream extends FilterInputStream {
+        private final Connection connection;
+        private final ConnectionStats stats;
+        private boolean closed;
+
+        ReleasingInputStream(Connection connection, InputStream in, ConnectionStats stats) {
             super(in);
             this.connection = connection;
+            this.stats = stats;
         }
 
         @Override
         public void close() throws IOException {
-            try {
-                super.close();
-            } finally {
-                connection.disconnect();
+            if (!closed) {
+                closed = true;
+                stats.release(connection, in, true);
             }
         }
     }
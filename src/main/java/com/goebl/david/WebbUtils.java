@@ -10,7 +10,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -119,12 +118,82 @@ public class WebbUtils {
      * @throws IOException when read or write operation fails
      */
     public static byte[] readBytes(InputStream is) throws IOException {
+        return readBytes(is, -1);
+    }
+
+    /**
+     * Read an <code>InputStream</code> into <code>byte[]</code> until EOF.
+     * <br>
+     * If the expected length is correct, exactly one array is allocated. A wrong hint is no problem, only slower.
+     *
+     * @param is the stream to read the bytes from
+     * @param expectedLength the expected number of bytes (e.g. <code>Content-Length</code>) or <code>-1</code>
+     * @return all read bytes as an array
+     * @throws IOException when read or write operation fails
+     */
+    static byte[] readBytes(InputStream is, int expectedLength) throws IOException {
         if (is == null) {
             return null;
         }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        copyStream(is, baos);
-        return baos.toByteArray();
+        if (expectedLength > 0) {
+            byte[] bytes = new byte[Math.min(expectedLength, Const.MAX_PRESIZE)];
+            int length = readFully(is, bytes, 0);
+            if (length == bytes.length && length < expectedLength) {
+                // large body: the first part arrived as announced, so trust the rest of the length
+                byte[] all = new byte[expectedLength];
+                System.arraycopy(bytes, 0, all, 0, length);
+                bytes = all;
+                length = readFully(is, bytes, length);
+            }
+            if (length < bytes.length) {
+                return copyOf(bytes, length);
+            }
+            int next = is.read();
+            if (next == -1) {
+                return bytes;
+            }
+            // the hint was too small - continue with a growing buffer
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length * 2);
+            baos.write(bytes);
+            baos.write(next);
+            copyStream(is, baos);
+            return baos.toByteArray();
+        }
+
+        byte[] buffer = BufferPool.acquire();
+        try {
+            int length = readFully(is, buffer, 0);
+            if (length < buffer.length) {
+                // common case: small response fits into the first buffer
+                return copyOf(buffer, length);
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(buffer.length * 4);
+            baos.write(buffer, 0, length);
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, count);
+            }
+            return baos.toByteArray();
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    private static int readFully(InputStream is, byte[] bytes, int offset) throws IOException {
+        int count;
+        while (offset < bytes.length && (count = is.read(bytes, offset, bytes.length - offset)) != -1) {
+            offset += count;
+        }
+        return offset;
+    }
+
+    private static byte[] copyOf(byte[] bytes, int length) {
+        if (length == 0) {
+            return Const.EMPTY_BYTE_ARRAY;
+        }
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, 0, copy, 0, length);
+        return copy;
     }
 
     /**
@@ -137,10 +206,14 @@ public class WebbUtils {
      * @throws IOException when read or write operation fails
      */
     public static void copyStream(InputStream input, OutputStream output) throws IOException {
-        byte[] buffer = new byte[1024];
-        int count;
-        while ((count = input.read(buffer)) != -1) {
-            output.write(buffer, 0, count);
+        byte[] buffer = BufferPool.acquire();
+        try {
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            BufferPool.release(buffer);
         }
     }
 
@@ -161,6 +234,51 @@ public class WebbUtils {
         return format;
     }
 
+    /**
+     * Extract the origin of an absolute URI (scheme, host and port, lower case),
+     * e.g. <code>https://api.example.com:8443</code>. Used as key for per-host state.
+     * User info, path, query and fragment are not part of the key.
+     *
+     * @param uri the absolute URI
+     * @return the origin or the URI itself if it has no scheme
+     */
+    static String hostKey(String uri) {
+        int start = uri.indexOf("://");
+        if (start < 0) {
+            return uri;
+        }
+        start += 3;
+        int end = uri.length();
+        for (int i = start; i < end; ++i) {
+            char c = uri.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        int at = uri.lastIndexOf('@', end - 1);
+        String host = at >= start ? uri.substring(at + 1, end) : uri.substring(start, end);
+        return (uri.substring(0, start) + host).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Extract the host name of an absolute URI without port and brackets of IPv6 literals.
+     *
+     * @param uri the absolute URI
+     * @return the host name in lower case
+     */
+    static String hostName(String uri) {
+        String origin = hostKey(uri);
+        int start = origin.indexOf("://");
+        String host = start < 0 ? origin : origin.substring(start + 3);
+        if (host.startsWith("[")) {
+            int end = host.indexOf(']');
+            return end > 0 ? host.substring(1, end) : host;
+        }
+        int colon = host.lastIndexOf(':');
+        return colon >= 0 ? host.substring(0, colon) : host;
+    }
+
     static String urlEncode(String value) {
         try {
             return URLEncoder.encode(value, "UTF-8");
@@ -169,7 +287,7 @@ public class WebbUtils {
         }
     }
 
-    static void addRequestProperties(HttpURLConnection connection, Map<String, Object> map) {
+    static void addRequestProperties(Connection connection, Map<String, Object> map) {
         if (map == null || map.isEmpty()) {
             return;
         }
@@ -178,7 +296,7 @@ public class WebbUtils {
         }
     }
 
-    static void addRequestProperty(HttpURLConnection connection, String name, Object value) {
+    static void addRequestProperty(Connection connection, String name, Object value) {
         if (name == null || name.length() == 0 || value == null) {
             throw new IllegalArgumentException("name and value must not be empty");
         }
@@ -195,18 +313,28 @@ public class WebbUtils {
         connection.addRequestProperty(name, valueAsString);
     }
 
-    static void ensureRequestProperty(HttpURLConnection connection, String name, Object value) {
+    static void ensureRequestProperty(Connection connection, String name, Object value) {
         if (!connection.getRequestProperties().containsKey(name)) {
             addRequestProperty(connection, name, value);
         }
     }
 
     static byte[] getPayloadAsBytesAndSetContentType(
-            HttpURLConnection connection,
+            Connection connection,
             Request request,
             boolean compress,
             int jsonIndentFactor) throws JSONException, UnsupportedEncodingException {
 
+        return getPayloadAsBytesAndSetContentType(connection, request, compress, jsonIndentFactor, null);
+    }
+
+    static byte[] getPayloadAsBytesAndSetContentType(
+            Connection connection,
+            Request request,
+            boolean compress,
+            int jsonIndentFactor,
+            RequestMetrics metrics) throws JSONException, UnsupportedEncodingException {
+
         byte[] requestBody = null;
         String bodyStr = null;
 
@@ -239,6 +367,9 @@ public class WebbUtils {
         if (requestBody == null) {
             throw new IllegalStateException();
         }
+        if (metrics != null) {
+            metrics.bytesSentUncompressed += requestBody.length;
+        }
 
         // only compress if the new body is smaller than uncompressed body
         if (compress && requestBody.length > Const.MIN_COMPRESSED_ADVANTAGE) {
@@ -250,12 +381,15 @@ public class WebbUtils {
         }
 
         connection.setFixedLengthStreamingMode(requestBody.length);
+        if (metrics != null) {
+            metrics.bytesSent += requestBody.length;
+        }
 
         return requestBody;
     }
 
     static void setContentTypeAndLengthForStreaming(
-            HttpURLConnection connection,
+            Connection connection,
             Request request,
             boolean compress) {
 
@@ -287,8 +421,9 @@ public class WebbUtils {
     static byte[] gzip(byte[] input) {
         GZIPOutputStream gzipOS = null;
         try {
-            ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
-            gzipOS = new GZIPOutputStream(byteArrayOS);
+            // we only use the result if it's smaller than the input, so it will hardly ever grow
+            ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream(input.length);
+            gzipOS = new GZIPOutputStream(byteArrayOS, Const.GZIP_BUFFER_SIZE);
             gzipOS.write(input);
             gzipOS.flush();
             gzipOS.close();
@@ -303,6 +438,43 @@ public class WebbUtils {
         }
     }
 
+    /**
+     * @return the length of the (decoded) response body or <code>-1</code> if unknown
+     */
+    static int getContentLength(Response<?> response) {
+        Connection connection = response.connection;
+        if (connection == null) {
+            return -1;
+        }
+        String contentEncoding = connection.getContentEncoding();
+        if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding)) {
+            return -1; // Content-Length is the compressed size
+        }
+        return connection.getHeaderFieldInt(Const.HDR_CONTENT_LENGTH, -1);
+    }
+
+    /**
+     * Parse the <code>Retry-After</code> header (delay in seconds or HTTP-date).
+     *
+     * @param response the response (may be <code>null</code>)
+     * @return the delay in milliseconds, <code>0</code> if the header is missing or invalid
+     */
+    static long getRetryAfter(Response<?> response) {
+        if (response == null || response.connection == null) {
+            return 0L;
+        }
+        String retryAfter = response.getHeaderField(Const.HDR_RETRY_AFTER);
+        if (retryAfter == null) {
+            return 0L;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(retryAfter.trim()) * 1000L);
+        } catch (NumberFormatException e) {
+            long date = response.getHeaderFieldDate(Const.HDR_RETRY_AFTER, 0L);
+            return date > 0 ? Math.max(0L, date - System.currentTimeMillis()) : 0L;
+        }
+    }
+
     static InputStream wrapStream(String contentEncoding, InputStream inputStream) throws IOException {
         if (contentEncoding == null || "identity".equalsIgnoreCase(contentEncoding)) {
             return inputStream;
@@ -324,9 +496,12 @@ public class WebbUtils {
         } else if (clazz == InputStream.class) {
             response.setBody(responseBodyStream);
             return;
+        } else if (clazz == JsonArrayStream.class) {
+            response.setBody(new JsonArrayStream(responseBodyStream));
+            return;
         }
 
-        byte[] responseBody = WebbUtils.readBytes(responseBodyStream);
+        byte[] responseBody = WebbUtils.readBytes(responseBodyStream, getContentLength(response));
         // we are ignoring headers describing the content type of the response, instead
         // try to force the content based on the type the client is expecting it (clazz)
         if (clazz == String.class) {
@@ -350,7 +525,7 @@ public class WebbUtils {
             return;
         }
 
-        byte[] responseBody = WebbUtils.readBytes(responseBodyStream);
+        byte[] responseBody = WebbUtils.readBytes(responseBodyStream, getContentLength(response));
         String contentType = response.connection.getContentType();
         if (contentType == null || contentType.startsWith(Const.APP_BINARY) || clazz == Const.BYTE_ARRAY_CLASS) {
             response.errorBody = responseBody;
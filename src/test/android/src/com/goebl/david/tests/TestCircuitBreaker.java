@@ -0,0 +1,7 @@
+package com.goebl.david.tests;
+
+/**
+ * Just a reference to a test.
+ */
+public class TestCircuitBreaker extends com.goebl.david.TestCircuitBreaker {
+}
@@ -0,0 +1,7 @@
+package com.goebl.david.tests;
+
+/**
+ * Just a reference to a test.
+ */
+public class TestConcurrencyLimiter extends com.goebl.david.TestConcurrencyLimiter {
+}
@@ -0,0 +1,7 @@
+package com.goebl.david.tests;
+
+/**
+ * Just a reference to a test.
+ */
+public class TestJitteredRetryManager extends com.goebl.david.TestJitteredRetryManager {
+}
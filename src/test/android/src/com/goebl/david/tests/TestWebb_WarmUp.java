@@ -0,0 +1,7 @@
+package com.goebl.david.tests;
+
+/**
+ * Just a reference to a test.
+ */
+public class TestWebb_WarmUp extends com.goebl.david.TestWebb_WarmUp {
+}
@@ -41,6 +41,9 @@ module.exports = function registerRoutes(app) {
 
         if (currentRetry < retryCount) {
             console.log('503 -> ' + currentRetry + ' of ' + retryCount);
+            if (req.query.retryAfter) {
+                res.set('Retry-After', req.query.retryAfter);
+            }
             res.send(503);
         } else {
             res.send(200, 'Now it works');
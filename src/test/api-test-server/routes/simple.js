@@ -28,6 +28,14 @@ module.exports = function registerRoutes(app) {
         res.send(204);
     });
 
+    app.get('/json-array', function (req, res) {
+        var i, n = Number(req.param('n')), out = [];
+        for (i = 0; i < n; ++i) {
+            out.push({id: i, s: 'a,]}[{"b'});
+        }
+        res.json(out);
+    });
+
     app.get('/no-content', function (req, res) {
         res.send(204);
     });
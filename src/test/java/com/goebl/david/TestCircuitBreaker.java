@@ -0,0 +1,222 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TestCircuitBreaker extends TestCase {
+
+    private static final String HOST = "http://breaker.test";
+
+    private TestHttpCache.StubServer server;
+    private CircuitBreaker breaker;
+    private Webb webb;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new TestHttpCache.StubServer();
+        breaker = new CircuitBreaker().failureRate(0.5, 4, 4).openDuration(200L, 1);
+        webb = Webb.create();
+        webb.setBaseUri(HOST);
+        webb.setTransport(server);
+        webb.addInterceptor(breaker);
+    }
+
+    public void testOpensOnServerErrors() throws Exception {
+        server.statusCode = 200;
+        webb.get("/a").asString();
+        webb.get("/b").asString();
+        server.statusCode = 503;
+        webb.get("/c").asString();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(HOST));
+        webb.get("/d").asString();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HOST + "/any/path"));
+        assertEquals(4, server.requestCount);
+
+        try {
+            webb.get("/e").asString();
+            fail();
+        } catch (CircuitOpenException expected) {
+            assertEquals(HOST, expected.getHost());
+            assertTrue(expected.getRemainingMillis() > 0);
+        }
+        assertEquals(4, server.requestCount);
+    }
+
+    public void testClientErrorsDontCount() throws Exception {
+        server.statusCode = 404;
+        for (int i = 0; i < 10; i++) {
+            webb.get("/missing").asString();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(HOST));
+    }
+
+    public void testConnectFailuresCount() throws Exception {
+        webb.setTransport(new Transport() {
+            public Connection open(Webb webb, String uri) throws IOException {
+                throw new ConnectException("Connection refused");
+            }
+        });
+        for (int i = 0; i < 4; i++) {
+            try {
+                webb.get("/down").asString();
+                fail();
+            } catch (WebbException expected) {
+                assertTrue(expected.getCause() instanceof ConnectException);
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HOST));
+    }
+
+    public void testNoRetriesWhileOpen() throws Exception {
+        breaker.failureRate(0.5, 2, 2);
+        server.statusCode = 503;
+        try {
+            webb.get("/unavailable").retry(3, false).ensureSuccess().asString();
+            fail();
+        } catch (CircuitOpenException expected) {
+            // the first 2 attempts open the circuit, the 3rd fails fast and stops the retries
+            assertEquals(2, server.requestCount);
+        }
+    }
+
+    public void testHalfOpenAndClose() throws Exception {
+        server.statusCode = 503;
+        for (int i = 0; i < 4; i++) {
+            webb.get("/x").asString();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HOST));
+
+        Thread.sleep(250L);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(HOST));
+
+        // failed trial opens again
+        webb.get("/x").asString();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HOST));
+        assertEquals(5, server.requestCount);
+
+        Thread.sleep(250L);
+        server.statusCode = 200;
+        assertEquals(200, webb.get("/x").asString().getStatusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(HOST));
+
+        // the window has been reset: one failure doesn't open the circuit
+        server.statusCode = 503;
+        webb.get("/x").asString();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(HOST));
+    }
+
+    public void testOnlyTrialRequestsCountWhenHalfOpen() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch releaseStraggler = new CountDownLatch(1);
+        final CountDownLatch releaseTrial = new CountDownLatch(1);
+        webb.setTransport(new TestHttpCache.StubServer() {
+            @Override
+            public Connection open(Webb webb, String uri) {
+                final CountDownLatch release = uri.endsWith("/straggler") ? releaseStraggler
+                        : uri.endsWith("/trial") ? releaseTrial : null;
+                return new TestHttpCache.StubConnection(server) {
+                    private boolean waited;
+
+                    @Override
+                    public void connect() {
+                        if (release != null && !waited) {
+                            waited = true;
+                            started.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        super.connect();
+                    }
+                };
+            }
+        });
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            // started while the circuit is closed
+            Future<?> straggler = threads.submit(request("/straggler"));
+            while (started.getCount() == 2) {
+                Thread.sleep(5L);
+            }
+            server.statusCode = 503;
+            for (int i = 0; i < 4; i++) {
+                webb.get("/x").asString();
+            }
+            Thread.sleep(250L);
+            Future<?> trial = threads.submit(request("/trial"));
+            started.await();
+
+            server.statusCode = 200;
+            releaseStraggler.countDown();
+            straggler.get(5, TimeUnit.SECONDS);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(HOST));
+            try {
+                webb.get("/x").asString();
+                fail();
+            } catch (CircuitOpenException expected) {
+                // the trial request is still running
+            }
+
+            server.statusCode = 503;
+            releaseTrial.countDown();
+            trial.get(5, TimeUnit.SECONDS);
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HOST));
+        } finally {
+            releaseStraggler.countDown();
+            releaseTrial.countDown();
+            threads.shutdownNow();
+        }
+    }
+
+    private Runnable request(final String path) {
+        return new Runnable() {
+            public void run() {
+                webb.get(path).asString();
+            }
+        };
+    }
+
+    public void testHostsAreIndependent() throws Exception {
+        server.statusCode = 503;
+        for (int i = 0; i < 4; i++) {
+            webb.get("/x").asString();
+        }
+        server.statusCode = 200;
+        assertEquals(200, webb.get("http://other.test/x").asString().getStatusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("http://other.test"));
+
+        breaker.reset();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(HOST));
+    }
+
+    public void testHostKey() throws Exception {
+        assertEquals("https://api.example.com:8443", WebbUtils.hostKey("HTTPS://user:pw@API.example.com:8443/a/b?c=d"));
+        assertEquals("http://example.com", WebbUtils.hostKey("http://example.com"));
+        assertEquals("http://example.com", WebbUtils.hostKey("http://example.com?q=@x"));
+        assertEquals("http://example.com", WebbUtils.hostKey("http://example.com#frag"));
+    }
+
+    public void testInvalidConfiguration() throws Exception {
+        try {
+            new CircuitBreaker().failureRate(0.0, 10, 5);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        try {
+            new CircuitBreaker().failureRate(0.5, 10, 20);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+}
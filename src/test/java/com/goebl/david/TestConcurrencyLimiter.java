@@ -0,0 +1,235 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConcurrencyLimiter extends TestCase {
+
+    private static final String HOST = "http://limiter.test";
+
+    private ConcurrencyServer server;
+    private ExecutorService threads;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new ConcurrencyServer();
+        threads = Executors.newFixedThreadPool(8);
+    }
+
+    public void tearDown() throws Exception {
+        threads.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testFixedLimit() throws Exception {
+        server.delayMillis = 100;
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        final Webb webb = createWebb(limiter);
+
+        List<Future<Response<String>>> results = new ArrayList<Future<Response<String>>>();
+        for (int i = 0; i < 6; i++) {
+            results.add(threads.submit(new Callable<Response<String>>() {
+                public Response<String> call() throws Exception {
+                    return webb.get("/slow").asString();
+                }
+            }));
+        }
+        Thread.sleep(50);
+        assertEquals(2, limiter.getInFlight(HOST));
+        assertEquals(4, limiter.getQueued(HOST));
+
+        for (Future<Response<String>> result : results) {
+            assertEquals(200, result.get().getStatusCode());
+        }
+        assertEquals(6, server.requestCount);
+        assertEquals(2, server.maxConcurrent.get());
+        assertEquals(0, limiter.getInFlight(HOST));
+        assertEquals(0, limiter.getQueued(HOST));
+    }
+
+    public void testRejectWithoutQueue() throws Exception {
+        server.delayMillis = 200;
+        final Webb webb = createWebb(new ConcurrencyLimiter(1).queue(0, 0));
+
+        Future<Response<String>> running = threads.submit(new Callable<Response<String>>() {
+            public Response<String> call() throws Exception {
+                return webb.get("/slow").asString();
+            }
+        });
+        Thread.sleep(50);
+        try {
+            webb.get("/rejected").asString();
+            fail();
+        } catch (LimitExceededException expected) {
+            assertEquals(HOST, expected.getHost());
+        }
+        // other hosts are not affected
+        assertEquals(200, webb.get("http://other.test/").asString().getStatusCode());
+        assertEquals(200, running.get().getStatusCode());
+        assertEquals(2, server.requestCount);
+    }
+
+    public void testWaitTimeout() throws Exception {
+        server.delayMillis = 300;
+        final Webb webb = createWebb(new ConcurrencyLimiter(1).queue(10, 50));
+
+        Future<Response<String>> running = threads.submit(new Callable<Response<String>>() {
+            public Response<String> call() throws Exception {
+                return webb.get("/slow").asString();
+            }
+        });
+        Thread.sleep(50);
+        long start = System.currentTimeMillis();
+        try {
+            webb.get("/waiting").asString();
+            fail();
+        } catch (LimitExceededException expected) {
+            assertTrue(System.currentTimeMillis() - start < 250);
+        }
+        running.get();
+    }
+
+    public void testAdaptiveDecreasesOnOverload() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10).adaptive(2, 20, 2.0);
+        Webb webb = createWebb(limiter);
+        server.statusCode = 503;
+
+        for (int i = 0; i < 10; i++) {
+            webb.get("/overloaded").asString();
+        }
+
+        assertTrue(limiter.getLimit(HOST) < 5);
+        for (int i = 0; i < 20; i++) {
+            webb.get("/overloaded").asString();
+        }
+        assertEquals(2, limiter.getLimit(HOST));
+    }
+
+    public void testAdaptiveIncreases() throws Exception {
+        server.delayMillis = 20;
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2).adaptive(1, 4, 3.0);
+        final Webb webb = createWebb(limiter);
+
+        List<Future<Response<String>>> results = new ArrayList<Future<Response<String>>>();
+        for (int i = 0; i < 40; i++) {
+            results.add(threads.submit(new Callable<Response<String>>() {
+                public Response<String> call() throws Exception {
+                    return webb.get("/fast").asString();
+                }
+            }));
+        }
+        for (Future<Response<String>> result : results) {
+            result.get();
+        }
+
+        // the limit only grows while it is used
+        assertTrue(limiter.getLimit(HOST) >= 3);
+        assertTrue(server.maxConcurrent.get() >= 3);
+    }
+
+    public void testAsync() throws Exception {
+        server.delayMillis = 100;
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1).queue(0, 0);
+        Webb webb = createWebb(limiter);
+
+        ResponseFuture<String> first = webb.get("/async").asStringAsync();
+        Thread.sleep(30);
+        ResponseFuture<String> second = webb.get("/async").asStringAsync();
+
+        assertEquals(200, first.get().getStatusCode());
+        try {
+            second.get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof LimitExceededException);
+        }
+    }
+
+    public void testQueuedVirtualThreads() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            return;
+        }
+        server.delayMillis = 10;
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1).queue(1000, 30000);
+        Webb webb = Webb.builder().baseUri(HOST).transport(server).interceptor(limiter).virtualThreads().build();
+
+        // more queued requests than carrier threads
+        int count = Runtime.getRuntime().availableProcessors() * 4;
+        List<ResponseFuture<String>> futures = new ArrayList<ResponseFuture<String>>();
+        for (int i = 0; i < count; i++) {
+            futures.add(webb.get("/virtual").asStringAsync());
+        }
+        Thread.sleep(30);
+        final CountDownLatch other = new CountDownLatch(1);
+        VirtualThreads.executor().execute(new Runnable() {
+            public void run() {
+                other.countDown();
+            }
+        });
+
+        assertTrue("other virtual threads must still run", other.await(1, TimeUnit.SECONDS));
+        for (ResponseFuture<String> future : futures) {
+            assertEquals(200, future.get(30, TimeUnit.SECONDS).getStatusCode());
+        }
+        assertEquals(count, server.requestCount);
+        assertEquals(1, server.maxConcurrent.get());
+    }
+
+    public void testInvalidConfiguration() throws Exception {
+        try {
+            new ConcurrencyLimiter(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        try {
+            new ConcurrencyLimiter(5).adaptive(10, 5, 2.0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    private Webb createWebb(ConcurrencyLimiter limiter) {
+        return Webb.builder().baseUri(HOST).transport(server).interceptor(limiter).build();
+    }
+
+    static class ConcurrencyServer extends TestHttpCache.StubServer {
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        @Override
+        public Connection open(Webb webb, String uri) {
+            return new TestHttpCache.StubConnection(this) {
+                private boolean counted;
+
+                @Override
+                public void connect() {
+                    if (counted) {
+                        return;
+                    }
+                    counted = true;
+                    int now = concurrent.incrementAndGet();
+                    while (now > maxConcurrent.get()) {
+                        maxConcurrent.compareAndSet(maxConcurrent.get(), now);
+                    }
+                    try {
+                        super.connect();
+                    } finally {
+                        concurrent.decrementAndGet();
+                    }
+                }
+            };
+        }
+    }
+}
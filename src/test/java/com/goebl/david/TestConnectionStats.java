@@ -0,0 +1,138 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConnectionStats extends TestCase {
+
+    private PoolServer server;
+    private Webb webb;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new PoolServer();
+        webb = Webb.builder().baseUri("http://pool.test").transport(server).build();
+    }
+
+    public void testReleasedAfterSuccess() throws Exception {
+        webb.get("/a").asString();
+        webb.get("/b").asBytes();
+
+        assertEquals(2, webb.getConnectionStats().getReleased());
+        assertEquals(0, webb.getConnectionStats().getDiscarded());
+        assertEquals(0, server.disconnects.get());
+    }
+
+    public void testErrorResponseIsReleased() throws Exception {
+        server.statusCode = 503;
+        server.errorBody = "temporarily unavailable";
+
+        Response<Void> response = webb.get("/error").asVoid();
+
+        assertEquals(503, response.getStatusCode());
+        assertEquals(1, webb.getConnectionStats().getReleased());
+        assertEquals(0, server.disconnects.get());
+    }
+
+    public void testUnreadBodyIsDrained() throws Exception {
+        server.bodySize = 100;
+
+        webb.get("/ignored").asVoid();
+
+        assertEquals(1, webb.getConnectionStats().getReleased());
+        assertEquals(100, webb.getConnectionStats().getDrainedBytes());
+        assertEquals(0, server.disconnects.get());
+    }
+
+    public void testFullyReadStreamIsReleased() throws Exception {
+        server.bodySize = 1000;
+
+        InputStream is = webb.get("/stream").asStream().getBody();
+        WebbUtils.readBytes(is);
+        is.close();
+        is.close();
+
+        assertEquals(1, webb.getConnectionStats().getReleased());
+        assertEquals(0, server.disconnects.get());
+    }
+
+    public void testPartiallyReadStreamIsDiscarded() throws Exception {
+        server.bodySize = 2 * ConnectionStats.DRAIN_LIMIT;
+
+        InputStream is = webb.get("/huge").asStream().getBody();
+        assertEquals('b', is.read());
+        is.close();
+
+        assertEquals(0, webb.getConnectionStats().getReleased());
+        assertEquals(1, webb.getConnectionStats().getDiscarded());
+        assertEquals(1, server.disconnects.get());
+    }
+
+    public void testFailureDisconnects() throws Exception {
+        try {
+            webb.get("/not-json").asJsonObject();
+            fail();
+        } catch (WebbException expected) {
+            // ok
+        }
+
+        assertEquals(1, webb.getConnectionStats().getDiscarded());
+        assertEquals(1, server.disconnects.get());
+
+        webb.getConnectionStats().reset();
+        assertEquals("released=0 discarded=0 drained=0", webb.getConnectionStats().toString());
+    }
+
+    public void testConfigureKeepAlive() throws Exception {
+        String[] names = {"http.keepAlive", "http.maxConnections", "http.keepAlive.time.server",
+                "http.keepAlive.time.proxy", "http.keepAliveDuration"};
+        String[] saved = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            saved[i] = System.getProperty(names[i]);
+        }
+        try {
+            HttpUrlConnectionTransport.configureKeepAlive(20, 30500);
+
+            assertEquals("20", System.getProperty("http.maxConnections"));
+            assertEquals("31", System.getProperty("http.keepAlive.time.server"));
+            assertEquals("30500", System.getProperty("http.keepAliveDuration"));
+        } finally {
+            for (int i = 0; i < names.length; i++) {
+                if (saved[i] == null) {
+                    System.clearProperty(names[i]);
+                } else {
+                    System.setProperty(names[i], saved[i]);
+                }
+            }
+        }
+        try {
+            HttpUrlConnectionTransport.configureKeepAlive(0, 1000);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    static class PoolServer extends TestHttpCache.StubServer {
+        final AtomicInteger disconnects = new AtomicInteger();
+        String errorBody;
+
+        @Override
+        public Connection open(Webb webb, String uri) {
+            return new TestHttpCache.StubConnection(this) {
+                @Override
+                public InputStream getErrorStream() {
+                    return errorBody == null ? null : new ByteArrayInputStream(errorBody.getBytes());
+                }
+
+                @Override
+                public void disconnect() {
+                    disconnects.incrementAndGet();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestHedgePolicy extends TestCase {
+
+    private static final String HOST = "http://hedge.test";
+
+    private HedgeServer server;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new HedgeServer();
+    }
+
+    public void testNoHedgingWithoutStatistics() throws Exception {
+        HedgePolicy policy = new HedgePolicy(95.0, 10, 1.0);
+        Webb webb = createWebb(policy);
+        server.slowRequests.set(1);
+        server.slowMillis = 200;
+
+        assertEquals(-1L, policy.getDelayMillis());
+        assertEquals(200, webb.get("/slow").asString().getStatusCode());
+        assertEquals(1, server.requestCount);
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    public void testSlowRequestIsHedged() throws Exception {
+        HedgePolicy policy = new HedgePolicy(95.0, 50, 1.0);
+        Webb webb = createWebb(policy);
+        warmUp(webb, policy);
+        server.slowRequests.set(1);
+        server.slowMillis = 5000;
+
+        long start = System.currentTimeMillis();
+        Response<String> response = webb.get("/tail").asString();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue("elapsed " + elapsed, elapsed >= 50 && elapsed < 2000);
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(HedgePolicy.MIN_SAMPLES + 1, policy.getRequestCount());
+        // the slow request has been cancelled
+        Thread.sleep(100);
+        assertEquals(1, server.cancelled.get());
+    }
+
+    public void testReportedOnce() throws Exception {
+        final List<RequestMetrics> reports = new ArrayList<RequestMetrics>();
+        HedgePolicy policy = new HedgePolicy(95.0, 50, 1.0);
+        Webb webb = Webb.builder().baseUri(HOST).transport(server).hedgePolicy(policy)
+                .metricsListener(new MetricsListener() {
+                    public void onRequest(RequestMetrics metrics) {
+                        synchronized (reports) {
+                            reports.add(metrics);
+                        }
+                    }
+                })
+                .build();
+        warmUp(webb, policy);
+        assertEquals(HedgePolicy.MIN_SAMPLES, reports.size());
+        assertFalse(reports.get(0).isHedged());
+        server.slowRequests.set(1);
+        server.slowMillis = 500;
+
+        webb.get("/tail").asString();
+        // the cancelled request must not be reported later
+        Thread.sleep(600);
+
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(HedgePolicy.MIN_SAMPLES + 1, reports.size());
+        RequestMetrics metrics = reports.get(HedgePolicy.MIN_SAMPLES);
+        assertTrue(metrics.isHedged());
+        assertEquals(200, metrics.getStatusCode());
+        assertNull(metrics.getException());
+        assertTrue(metrics.getMillis(RequestMetrics.Phase.TOTAL) >= 45.0);
+        assertTrue(metrics.toString().contains("(hedged)"));
+    }
+
+    public void testBudget() throws Exception {
+        HedgePolicy policy = new HedgePolicy(95.0, 20, 0.06);
+        Webb webb = createWebb(policy);
+        warmUp(webb, policy);
+        server.slowMillis = 300;
+
+        server.slowRequests.set(1);
+        webb.get("/hedged").asString();
+        server.slowRequests.set(1);
+        long start = System.currentTimeMillis();
+        webb.get("/not-hedged").asString();
+
+        // the budget (6% of the requests) is used up
+        assertTrue(System.currentTimeMillis() - start >= 290);
+        assertEquals(1, policy.getHedgeCount());
+    }
+
+    public void testHedgeIsNotCountedForRetryBudget() throws Exception {
+        final AtomicInteger recorded = new AtomicInteger();
+        HedgePolicy policy = new HedgePolicy(95.0, 50, 1.0);
+        Webb webb = Webb.builder().baseUri(HOST).transport(server).hedgePolicy(policy)
+                .retryManager(new JitteredRetryManager() {
+                    @Override
+                    public void recordRequest() {
+                        recorded.incrementAndGet();
+                        super.recordRequest();
+                    }
+                })
+                .build();
+        warmUp(webb, policy);
+        server.slowRequests.set(1);
+        server.slowMillis = 5000;
+
+        webb.get("/tail").asString();
+
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(HedgePolicy.MIN_SAMPLES + 1, recorded.get());
+    }
+
+    public void testPostIsNotHedged() throws Exception {
+        HedgePolicy policy = new HedgePolicy(95.0, 10, 1.0);
+        Webb webb = createWebb(policy);
+        warmUp(webb, policy);
+        int requests = server.requestCount;
+        server.slowRequests.set(1);
+        server.slowMillis = 200;
+
+        webb.post("/slow").asString();
+
+        assertEquals(requests + 1, server.requestCount);
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    public void testDelay() throws Exception {
+        HedgePolicy policy = new HedgePolicy(90.0, 5, 0.0);
+        for (int i = 0; i < 90; i++) {
+            policy.recordLatency(10 * 1000000L);
+        }
+        for (int i = 0; i < 10; i++) {
+            policy.recordLatency(500 * 1000000L);
+        }
+
+        long delay = policy.getDelayMillis();
+        assertTrue("delay " + delay, delay >= 10 && delay < 15);
+        assertFalse(policy.acquireHedge());
+    }
+
+    public void testInvalidConfiguration() throws Exception {
+        try {
+            new HedgePolicy(100.0, 10, 0.05);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        try {
+            new HedgePolicy(95.0, 10, -1.0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    private void warmUp(Webb webb, HedgePolicy policy) {
+        for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+            webb.get("/warm-up").asString();
+        }
+        assertTrue(policy.getDelayMillis() > 0);
+    }
+
+    private Webb createWebb(HedgePolicy policy) {
+        return Webb.builder().baseUri(HOST).transport(server).hedgePolicy(policy).build();
+    }
+
+    /**
+     * Answers the next <code>slowRequests</code> requests after <code>slowMillis</code>.
+     */
+    static class HedgeServer extends TestHttpCache.StubServer {
+        final AtomicInteger slowRequests = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+        long slowMillis;
+
+        @Override
+        public Connection open(Webb webb, String uri) {
+            final boolean slow = slowRequests.getAndDecrement() > 0;
+            return new TestHttpCache.StubConnection(this) {
+                private boolean waited;
+
+                @Override
+                public void connect() {
+                    if (slow && !waited) {
+                        waited = true;
+                        try {
+                            Thread.sleep(slowMillis);
+                        } catch (InterruptedException e) {
+                            cancelled.incrementAndGet();
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    super.connect();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.goebl.david;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs against a local HTTP/1.1 server (the transport falls back to HTTP/1.1), skipped before Java 11.
+ */
+public class TestHttp2Transport extends TestCase {
+
+    private HttpServer server;
+    private Webb webb;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        if (!Http2Transport.isSupported()) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] requestBody = WebbUtils.readBytes(exchange.getRequestBody());
+                String path = exchange.getRequestURI().getPath();
+                int status = path.startsWith("/missing") ? 404 : 200;
+                String body = path.startsWith("/echo")
+                        ? exchange.getRequestMethod() + " " + new String(requestBody, "UTF-8")
+                        : path.startsWith("/missing") ? "not found" : "hello";
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                if (exchange.getRequestHeaders().containsKey("X-Test")) {
+                    exchange.getResponseHeaders().add("X-Test", exchange.getRequestHeaders().getFirst("X-Test"));
+                }
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(bytes);
+                os.close();
+            }
+        });
+        server.start();
+        webb = Webb.builder()
+                .baseUri("http://127.0.0.1:" + server.getAddress().getPort())
+                .transport(new Http2Transport())
+                .build();
+    }
+
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.stop(0);
+        }
+        super.tearDown();
+    }
+
+    public void testUnsupported() throws Exception {
+        if (Http2Transport.isSupported()) {
+            return;
+        }
+        try {
+            new Http2Transport();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+            // ok
+        }
+    }
+
+    public void testGet() throws Exception {
+        if (webb == null) {
+            return;
+        }
+        Response<String> response = webb.get("/hello").header("X-Test", "abc").asString();
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("hello", response.getBody());
+        assertEquals("abc", response.getHeaderField("x-test"));
+        assertEquals("text/plain", response.getContentType());
+        // the local server doesn't speak HTTP/2
+        assertEquals("HTTP/1.1 200", response.getHeaderField(null));
+    }
+
+    public void testPost() throws Exception {
+        if (webb == null) {
+            return;
+        }
+        Response<String> response = webb.post("/echo").body("some data").asString();
+
+        assertEquals("POST some data", response.getBody());
+    }
+
+    public void testErrorResponse() throws Exception {
+        if (webb == null) {
+            return;
+        }
+        Response<String> response = webb.get("/missing").asString();
+
+        assertEquals(404, response.getStatusCode());
+        assertEquals("not found", response.getErrorBody());
+    }
+
+    public void testConcurrentRequests() throws Exception {
+        if (webb == null) {
+            return;
+        }
+        List<ResponseFuture<String>> futures = new ArrayList<ResponseFuture<String>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(webb.get("/hello").asStringAsync());
+        }
+        for (ResponseFuture<String> future : futures) {
+            assertEquals("hello", future.get().getBody());
+        }
+    }
+}
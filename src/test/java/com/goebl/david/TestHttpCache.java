@@ -0,0 +1,434 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class TestHttpCache extends TestCase {
+
+    private Webb webb;
+    private StubServer server;
+    private HttpCache cache;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new StubServer();
+        cache = new HttpCache(1024 * 1024);
+        webb = Webb.create();
+        webb.setBaseUri("http://cache.test");
+        webb.setTransport(server);
+        webb.setCache(cache);
+    }
+
+    public void testFreshResponseFromCache() throws Exception {
+        server.headers.put("Cache-Control", "max-age=60");
+
+        assertEquals("body-1", webb.get("/r").asString().getBody());
+        Response<String> response = webb.get("/r").asString();
+
+        assertEquals(1, server.requestCount);
+        assertEquals(200, response.getStatusCode());
+        assertEquals("body-1", response.getBody());
+        assertEquals("text/plain", response.getContentType());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testQueryIsPartOfKey() throws Exception {
+        server.headers.put("Cache-Control", "max-age=60");
+
+        webb.get("/r").param("a", 1).asString();
+        webb.get("/r").param("a", 2).asString();
+        webb.get("/r").param("a", 1).asString();
+
+        assertEquals(2, server.requestCount);
+    }
+
+    public void testRevalidateWithETag() throws Exception {
+        server.headers.put("ETag", "\"v1\"");
+
+        assertEquals("body-1", webb.get("/r").asString().getBody());
+        Response<String> response = webb.get("/r").asString();
+
+        assertEquals(2, server.requestCount);
+        assertEquals("\"v1\"", server.lastIfNoneMatch);
+        assertEquals(200, response.getStatusCode());
+        assertEquals("body-1", response.getBody());
+        assertEquals(1, cache.getRevalidationCount());
+
+        server.headers.put("ETag", "\"v2\"");
+        assertEquals("body-3", webb.get("/r").asString().getBody());
+        assertEquals("body-3", webb.get("/r").asString().getBody());
+    }
+
+    public void testRevalidateWithLastModified() throws Exception {
+        String lastModified = WebbUtils.getRfc1123DateFormat().format(new Date(1400000000000L));
+        server.headers.put("Last-Modified", lastModified);
+
+        webb.get("/r").asString();
+        Response<String> response = webb.get("/r").asString();
+
+        assertEquals(lastModified, server.lastIfModifiedSince);
+        assertEquals("body-1", response.getBody());
+        assertEquals(1400000000000L, response.getLastModified());
+    }
+
+    public void testExpires() throws Exception {
+        long now = System.currentTimeMillis();
+        server.headers.put("Date", WebbUtils.getRfc1123DateFormat().format(new Date(now)));
+        server.headers.put("Expires", WebbUtils.getRfc1123DateFormat().format(new Date(now + 60000L)));
+
+        webb.get("/r").asString();
+        webb.get("/r").asString();
+        assertEquals(1, server.requestCount);
+
+        server.headers.put("Expires", "0");
+        webb.get("/other").asString();
+        webb.get("/other").asString();
+        assertEquals(3, server.requestCount);
+    }
+
+    public void testNotCacheable() throws Exception {
+        server.headers.put("Cache-Control", "no-store, max-age=60");
+        webb.get("/r").asString();
+        webb.get("/r").asString();
+        assertEquals(2, server.requestCount);
+
+        server.headers.put("Cache-Control", "max-age=60");
+        server.statusCode = 404;
+        webb.get("/missing").asString();
+        webb.get("/missing").asString();
+        assertEquals(4, server.requestCount);
+        assertEquals(0, cache.getMemoryEntryCount());
+    }
+
+    public void testNoCacheRequest() throws Exception {
+        server.headers.put("Cache-Control", "max-age=60");
+        server.headers.put("ETag", "\"v1\"");
+
+        webb.get("/r").asString();
+        Response<String> response = webb.get("/r").header("Cache-Control", "no-cache").asString();
+
+        assertEquals(2, server.requestCount);
+        assertEquals("body-1", response.getBody());
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    public void testMaxAgeZeroRequest() throws Exception {
+        server.headers.put("Cache-Control", "max-age=60");
+        server.headers.put("ETag", "\"v1\"");
+
+        webb.get("/r").asString();
+        webb.get("/r").header("Cache-Control", "max-age=0").asString();
+
+        assertEquals(2, server.requestCount);
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    public void testAuthorizedRequestsAreNotShared() throws Exception {
+        server.headers.put("Cache-Control", "max-age=60");
+
+        webb.get("/r").asString();
+        Response<String> response = webb.get("/r").header("Authorization", "Bearer alice").asString();
+        assertEquals("body-2", response.getBody());
+        response = webb.get("/r").header("Authorization", "Bearer bob").asString();
+        assertEquals("body-3", response.getBody());
+        assertEquals(3, server.requestCount);
+
+        webb.get("/private").header("Authorization", "Bearer alice").asString();
+        response = webb.get("/private").header("Authorization", "Bearer bob").asString();
+        assertEquals("body-5", response.getBody());
+        assertEquals(5, server.requestCount);
+
+        server.headers.put("Cache-Control", "public, max-age=60");
+        webb.get("/public").header("Authorization", "Bearer alice").asString();
+        response = webb.get("/public").header("Authorization", "Bearer bob").asString();
+        assertEquals("body-6", response.getBody());
+        assertEquals(6, server.requestCount);
+    }
+
+    public void testCallerConditionalBypassesCache() throws Exception {
+        server.headers.put("ETag", "\"v1\"");
+        webb.get("/r").asString();
+
+        Response<String> response = webb.get("/r").header("If-None-Match", "\"v1\"").asString();
+
+        assertEquals(304, response.getStatusCode());
+        assertEquals(0, cache.getRevalidationCount());
+    }
+
+    public void testVary() throws Exception {
+        server.headers.put("Cache-Control", "max-age=60");
+        server.headers.put("Vary", "Accept-Language");
+
+        webb.get("/r").header("Accept-Language", "de").asString();
+        webb.get("/r").header("Accept-Language", "de").asString();
+        assertEquals(1, server.requestCount);
+
+        assertEquals("body-2", webb.get("/r").header("Accept-Language", "en").asString().getBody());
+        assertEquals(2, server.requestCount);
+
+        server.headers.put("Vary", "*");
+        webb.get("/star").asString();
+        webb.get("/star").asString();
+        assertEquals(4, server.requestCount);
+    }
+
+    public void testUnsafeMethodInvalidates() throws Exception {
+        server.headers.put("Cache-Control", "max-age=60");
+
+        webb.get("/r").asString();
+        webb.post("/r").body("x").asString();
+        webb.get("/r").asString();
+
+        assertEquals(3, server.requestCount);
+    }
+
+    public void testLruEviction() throws Exception {
+        cache = new HttpCache(20000);
+        webb.setCache(cache);
+        server.headers.put("Cache-Control", "max-age=60");
+        server.bodySize = 3000;
+
+        for (int i = 0; i < 10; i++) {
+            webb.get("/r" + i).asString();
+        }
+        webb.get("/r9").asString();
+        assertEquals(10, server.requestCount);
+        webb.get("/r0").asString();
+        assertEquals("eldest entry has been evicted", 11, server.requestCount);
+        assertTrue(cache.getMemorySize() <= 20000);
+    }
+
+    public void testTooLargeForCache() throws Exception {
+        cache = new HttpCache(4000);
+        webb.setCache(cache);
+        server.headers.put("Cache-Control", "max-age=60");
+        server.bodySize = 3000;
+
+        assertEquals(3000, webb.get("/r").asBytes().getBody().length);
+        assertEquals(3000, webb.get("/r").asBytes().getBody().length);
+        assertEquals(2, server.requestCount);
+    }
+
+    public void testDiskTier() throws Exception {
+        String tmpDir = System.getProperty("CACHE_DIR"); // set on Android
+        File dir = new File(tmpDir != null ? tmpDir : System.getProperty("java.io.tmpdir"),
+                "webb-cache-" + System.nanoTime());
+        try {
+            cache = new HttpCache(1024 * 1024, dir, 10000);
+            webb.setCache(cache);
+            server.headers.put("Cache-Control", "max-age=60");
+            server.bodySize = 1000;
+
+            webb.get("/r").asString();
+            assertTrue(cache.getDiskSize() > 1000);
+
+            // a new cache (e.g. after restart) finds the entry on disk
+            cache = new HttpCache(1024 * 1024, dir, 10000);
+            webb.setCache(cache);
+            Response<String> response = webb.get("/r").asString();
+            assertEquals(1, server.requestCount);
+            assertEquals(1000, response.getBody().length());
+            assertEquals(1, cache.getMemoryEntryCount());
+
+            for (int i = 0; i < 20; i++) {
+                webb.get("/r" + i).asString();
+            }
+            assertTrue(cache.getDiskSize() <= 10000);
+
+            cache.clear();
+            assertEquals(0, cache.getDiskSize());
+            assertEquals(0, cache.getMemoryEntryCount());
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    public void testConnectionOfNetworkResponse() throws Exception {
+        webb.setTransport(new Transport() {
+            public Connection open(Webb webb, String uri) throws IOException {
+                return new HttpUrlConnectionTransport.UrlConnection(new FakeHttpUrlConnection(new URL(uri)));
+            }
+        });
+
+        Response<String> response = webb.get("/r").asString();
+        assertEquals("hello", response.getBody());
+        assertTrue(response.getConnection() instanceof FakeHttpUrlConnection);
+
+        response = webb.get("/r").asString();
+        assertEquals("hello", response.getBody());
+        assertEquals(1, cache.getHitCount());
+        assertNull(response.getConnection());
+    }
+
+    /**
+     * Simulates a server which answers conditional requests.
+     */
+    static class StubServer implements Transport {
+        int requestCount;
+        int statusCode = 200;
+        int bodySize;
+        long delayMillis;
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        String lastIfNoneMatch;
+        String lastIfModifiedSince;
+
+        public Connection open(Webb webb, String uri) {
+            return new StubConnection(this);
+        }
+
+        Map<String, List<String>> responseHeaders(String body) {
+            Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                result.put(header.getKey(), Arrays.asList(header.getValue()));
+            }
+            result.put("Content-Type", Arrays.asList("text/plain"));
+            if (body != null) {
+                result.put("Content-Length", Arrays.asList(String.valueOf(body.length())));
+            }
+            return result;
+        }
+    }
+
+    static class StubConnection implements Connection {
+        private final StubServer server;
+        private final Map<String, List<String>> requestProperties = new LinkedHashMap<String, List<String>>();
+        private String method = "GET";
+        private boolean connected;
+        private int statusCode;
+        private String body;
+        private Map<String, List<String>> responseHeaders;
+
+        StubConnection(StubServer server) {
+            this.server = server;
+        }
+
+        public void setRequestMethod(String method) { this.method = method; }
+        public void setInstanceFollowRedirects(boolean followRedirects) {}
+        public void setUseCaches(boolean useCaches) {}
+        public void setConnectTimeout(int timeout) {}
+        public void setReadTimeout(int timeout) {}
+        public void setIfModifiedSince(long ifModifiedSince) {}
+        public void addRequestProperty(String name, String value) { setRequestProperty(name, value); }
+        public void setRequestProperty(String name, String value) {
+            requestProperties.put(name, new ArrayList<String>(Arrays.asList(value)));
+        }
+        public Map<String, List<String>> getRequestProperties() { return requestProperties; }
+        public void setFixedLengthStreamingMode(int contentLength) {}
+        public void setChunkedStreamingMode(int chunkLength) {}
+        public void setDoOutput(boolean doOutput) {}
+        public OutputStream getOutputStream() { return new ByteArrayOutputStream(); }
+
+        public void connect() {
+            if (connected) {
+                return;
+            }
+            connected = true;
+            synchronized (server) {
+                ++server.requestCount;
+            }
+            if (server.delayMillis > 0) {
+                try {
+                    Thread.sleep(server.delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            server.lastIfNoneMatch = CacheEntry.getHeader(requestProperties, "If-None-Match");
+            server.lastIfModifiedSince = CacheEntry.getHeader(requestProperties, "If-Modified-Since");
+            String etag = server.headers.get("ETag");
+            String lastModified = server.headers.get("Last-Modified");
+            if ((etag != null && etag.equals(server.lastIfNoneMatch))
+                    || (lastModified != null && lastModified.equals(server.lastIfModifiedSince))) {
+                statusCode = 304;
+            } else {
+                statusCode = server.statusCode;
+                StringBuilder sb = new StringBuilder("body-" + server.requestCount);
+                while (sb.length() < server.bodySize) {
+                    sb.append('.');
+                }
+                body = sb.toString();
+            }
+            responseHeaders = server.responseHeaders(body);
+        }
+
+        public int getResponseCode() { connect(); return statusCode; }
+        public String getResponseMessage() { connect(); return statusCode == 200 ? "OK" : "Other"; }
+        public InputStream getInputStream() throws IOException {
+            connect();
+            if (statusCode >= 400) {
+                throw new IOException("error");
+            }
+            return new ByteArrayInputStream(body == null ? new byte[0] : body.getBytes("UTF-8"));
+        }
+        public InputStream getErrorStream() { return null; }
+        public String getContentEncoding() { return null; }
+        public String getContentType() { return getHeaderField("Content-Type"); }
+        public long getDate() { return 0; }
+        public long getExpiration() { return 0; }
+        public long getLastModified() { return 0; }
+        public String getHeaderField(String name) { return CacheEntry.getHeader(responseHeaders, name); }
+        public Map<String, List<String>> getHeaderFields() { return responseHeaders; }
+        public long getHeaderFieldDate(String name, long defaultValue) { return defaultValue; }
+        public int getHeaderFieldInt(String name, int defaultValue) {
+            String value = getHeaderField(name);
+            return value == null ? defaultValue : Integer.parseInt(value);
+        }
+        public void disconnect() {}
+    }
+
+    /**
+     * Answers with a cacheable response without opening a socket.
+     */
+    static class FakeHttpUrlConnection extends HttpURLConnection {
+        private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(
+                String.CASE_INSENSITIVE_ORDER);
+
+        FakeHttpUrlConnection(URL url) {
+            super(url);
+            headers.put("Cache-Control", Arrays.asList("max-age=60"));
+            headers.put("Content-Type", Arrays.asList("text/plain"));
+        }
+
+        @Override
+        public void connect() { connected = true; }
+        @Override
+        public void disconnect() {}
+        @Override
+        public boolean usingProxy() { return false; }
+        @Override
+        public int getResponseCode() { return 200; }
+        @Override
+        public String getResponseMessage() { return "OK"; }
+        @Override
+        public InputStream getInputStream() { return new ByteArrayInputStream("hello".getBytes()); }
+        @Override
+        public String getHeaderField(String name) {
+            List<String> values = headers.get(name);
+            return values != null ? values.get(0) : null;
+        }
+        @Override
+        public Map<String, List<String>> getHeaderFields() { return headers; }
+    }
+}
@@ -0,0 +1,164 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+public class TestJitteredRetryManager extends TestCase {
+
+    public void testNoJitter() throws Exception {
+        JitteredRetryManager retryManager =
+                new JitteredRetryManager(JitteredRetryManager.Jitter.NONE, 100L, 1000L);
+
+        assertEquals(100L, retryManager.getDelay(0, null));
+        assertEquals(200L, retryManager.getDelay(1, null));
+        assertEquals(800L, retryManager.getDelay(3, null));
+        assertEquals(1000L, retryManager.getDelay(4, null));
+        assertEquals(1000L, retryManager.getDelay(100, null));
+    }
+
+    public void testFullJitter() throws Exception {
+        JitteredRetryManager retryManager =
+                new JitteredRetryManager(JitteredRetryManager.Jitter.FULL, 100L, 1000L);
+
+        boolean different = false;
+        long first = retryManager.getDelay(3, null);
+        for (int i = 0; i < 100; i++) {
+            long delay = retryManager.getDelay(3, null);
+            assertTrue(delay >= 0 && delay <= 800L);
+            different |= delay != first;
+        }
+        assertTrue("delays should be random", different);
+    }
+
+    public void testDecorrelatedJitter() throws Exception {
+        JitteredRetryManager retryManager =
+                new JitteredRetryManager(JitteredRetryManager.Jitter.DECORRELATED, 100L, 1000L);
+
+        for (int retry = 0; retry < 10; retry++) {
+            long delay = retryManager.getDelay(retry, null);
+            assertTrue(delay >= 100L && delay <= 1000L);
+        }
+    }
+
+    public void testRetryAfterSeconds() throws Exception {
+        JitteredRetryManager retryManager =
+                new JitteredRetryManager(JitteredRetryManager.Jitter.NONE, 100L, 10000L);
+
+        Response response = response(503, "7");
+        assertTrue(retryManager.isRetryUseful(response));
+        assertEquals(7000L, retryManager.getDelay(0, response));
+
+        response = response(503, "20");
+        assertFalse("server wants a longer pause than allowed", retryManager.isRetryUseful(response));
+    }
+
+    public void testRetryAfterDate() throws Exception {
+        JitteredRetryManager retryManager =
+                new JitteredRetryManager(JitteredRetryManager.Jitter.NONE, 100L, 10000L);
+
+        Response response = response(503, "Fri, 31 Dec 1999 23:59:59 GMT", System.currentTimeMillis() + 5000L);
+        long delay = retryManager.getDelay(0, response);
+        assertTrue(delay > 4000L && delay <= 5000L);
+
+        response = response(503, "garbage");
+        assertEquals(100L, retryManager.getDelay(0, response));
+    }
+
+    public void testRetryNotUseful() throws Exception {
+        JitteredRetryManager retryManager = new JitteredRetryManager();
+        assertFalse(retryManager.isRetryUseful(response(400, null)));
+        assertTrue(retryManager.isRetryUseful(response(503, null)));
+    }
+
+    public void testRetryBudget() throws Exception {
+        JitteredRetryManager retryManager = new JitteredRetryManager().retryBudget(0.5, 0);
+
+        assertFalse(retryManager.acquireRetryPermit());
+        for (int i = 0; i < 10; i++) {
+            retryManager.recordRequest();
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(retryManager.acquireRetryPermit());
+        }
+        assertFalse(retryManager.acquireRetryPermit());
+    }
+
+    public void testRetryBudgetMinimum() throws Exception {
+        JitteredRetryManager retryManager = new JitteredRetryManager().retryBudget(0.0, 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(retryManager.acquireRetryPermit());
+        }
+        assertFalse(retryManager.acquireRetryPermit());
+    }
+
+    public void testRetryBudgetDisabled() throws Exception {
+        JitteredRetryManager retryManager = new JitteredRetryManager().retryBudget(-1.0, 0);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(retryManager.acquireRetryPermit());
+        }
+    }
+
+    public void testInvalidArguments() throws Exception {
+        try {
+            new JitteredRetryManager(JitteredRetryManager.Jitter.FULL, 1000L, 100L);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // good!
+        }
+    }
+
+    public void testLegacyWaitIsStillCalled() throws Exception {
+        final int[] waited = {-1};
+        RetryManager legacy = new RetryManager() {
+            @Override
+            public void wait(int retry) {
+                waited[0] = retry;
+            }
+        };
+
+        legacy.wait(3, null);
+
+        assertEquals(3, waited[0]);
+    }
+
+    public void testLegacyWaitIsSkippedWithDelay() throws Exception {
+        final int[] waited = {-1};
+        RetryManager retryManager = new RetryManager() {
+            @Override
+            public long getDelay(int retry, Response response) {
+                return 1L;
+            }
+
+            @Override
+            public void wait(int retry) {
+                waited[0] = retry;
+            }
+        };
+
+        retryManager.wait(3, null);
+
+        assertEquals(-1, waited[0]);
+    }
+
+    private Response response(int statusCode, String retryAfter) {
+        return response(statusCode, retryAfter, 0L);
+    }
+
+    private Response response(int statusCode, final String retryAfter, final long retryAfterDate) {
+        Response response = new Response(null);
+        response.statusCode = statusCode;
+        response.connection = new TestHttpCache.StubConnection(new TestHttpCache.StubServer()) {
+            @Override
+            public String getHeaderField(String name) {
+                return "Retry-After".equals(name) ? retryAfter : null;
+            }
+
+            @Override
+            public long getHeaderFieldDate(String name, long defaultValue) {
+                return "Retry-After".equals(name) && retryAfterDate != 0L ? retryAfterDate : defaultValue;
+            }
+        };
+        return response;
+    }
+}
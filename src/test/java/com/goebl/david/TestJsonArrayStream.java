@@ -0,0 +1,91 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.util.NoSuchElementException;
+
+public class TestJsonArrayStream extends TestCase {
+
+    public void testElementTypes() throws Exception {
+        JsonArrayStream stream = stream(" [ {\"a\": [1, 2]}, [3, {\"b\": \"]\"}], \"x\\\",y\", 4.5, true, null ] ");
+
+        assertEquals(2, ((JSONObject) stream.next()).getJSONArray("a").length());
+        assertEquals("]", ((JSONArray) stream.next()).getJSONObject(1).getString("b"));
+        assertEquals("x\",y", stream.next());
+        assertEquals(4.5, ((Number) stream.next()).doubleValue());
+        assertEquals(Boolean.TRUE, stream.next());
+        assertEquals(JSONObject.NULL, stream.next());
+        assertFalse(stream.hasNext());
+        assertEquals(6, stream.getCount());
+        try {
+            stream.next();
+            fail("expected NoSuchElementException");
+        } catch (NoSuchElementException expected) {
+            // good!
+        }
+    }
+
+    public void testEmptyArray() throws Exception {
+        assertFalse(stream("[]").hasNext());
+        assertFalse(stream(" [\n] ").hasNext());
+    }
+
+    public void testUtf8AcrossBuffer() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i > 0 ? "," : "").append("\"\u00e4\u20ac").append(i).append('"');
+        }
+        json.append(']');
+        JsonArrayStream stream = stream(json.toString());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals("\u00e4\u20ac" + i, stream.next());
+        }
+        assertFalse(stream.hasNext());
+    }
+
+    public void testForEach() throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        stream("[1, 2, 3]").forEach(new JsonArrayStream.ElementHandler() {
+            public void onElement(Object element, int index) {
+                sb.append(index).append('=').append(element).append(' ');
+            }
+        });
+        assertEquals("0=1 1=2 2=3 ", sb.toString());
+    }
+
+    public void testNoArray() throws Exception {
+        assertMalformed("{\"a\": 1}");
+        assertMalformed("");
+    }
+
+    public void testMalformed() throws Exception {
+        assertMalformed("[1,,2]");
+        assertMalformed("[{\"a\": 1}");
+        assertMalformed("[1 2]");
+        assertMalformed("[{}{}]");
+        assertMalformed("[\"a\"\"b\"]");
+    }
+
+    private void assertMalformed(String json) {
+        JsonArrayStream stream = stream(json);
+        try {
+            while (stream.hasNext()) {
+                stream.next();
+            }
+            fail("expected WebbException for " + json);
+        } catch (WebbException expected) {
+            // good!
+        }
+    }
+
+    private static JsonArrayStream stream(String json) {
+        try {
+            return new JsonArrayStream(new ByteArrayInputStream(json.getBytes("UTF-8")));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.ExecutionException;
+
+public class TestRateLimiter extends TestCase {
+
+    private static final String HOST = "http://rate.test";
+
+    private TestHttpCache.StubServer server;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new TestHttpCache.StubServer();
+    }
+
+    public void testPacing() throws Exception {
+        Webb webb = createWebb(new RateLimiter(20.0, 1));
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            webb.get("/paced").asString();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        // first request immediately, then one every 50ms
+        assertTrue("elapsed " + elapsed, elapsed >= 190);
+        assertTrue("elapsed " + elapsed, elapsed < 1000);
+        assertEquals(5, server.requestCount);
+    }
+
+    public void testBurst() throws Exception {
+        Webb webb = createWebb(new RateLimiter(1.0, 5));
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            webb.get("/burst").asString();
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 500);
+    }
+
+    public void testRejectWhenWaitTooLong() throws Exception {
+        Webb webb = createWebb(new RateLimiter(1.0, 1).maxWait(100));
+
+        webb.get("/first").asString();
+        try {
+            webb.get("/second").asString();
+            fail();
+        } catch (LimitExceededException expected) {
+            assertEquals(HOST, expected.getHost());
+        }
+        assertEquals(1, server.requestCount);
+    }
+
+    public void testPerHost() throws Exception {
+        RateLimiter limiter = new RateLimiter(1.0, 1).perHost().maxWait(0);
+        Webb webb = createWebb(limiter);
+
+        webb.get("/a").asString();
+        webb.get("http://other.test/a").asString();
+        try {
+            webb.get("/b").asString();
+            fail();
+        } catch (LimitExceededException expected) {
+            // ok
+        }
+        assertEquals(2, server.requestCount);
+    }
+
+    public void testTooManyRequests() throws Exception {
+        RateLimiter limiter = new RateLimiter(50.0, 10);
+        Webb webb = createWebb(limiter);
+        server.statusCode = 429;
+        server.headers.put("Retry-After", "1");
+
+        long start = System.currentTimeMillis();
+        assertEquals(429, webb.get("/limited").asString().getStatusCode());
+        assertEquals(40.0, limiter.getRate(HOST), 0.001);
+
+        server.statusCode = 200;
+        server.headers.clear();
+        assertEquals(200, webb.get("/limited").asString().getStatusCode());
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("elapsed " + elapsed, elapsed >= 950);
+
+        // the rate recovers slowly
+        assertEquals(40.25, limiter.getRate(HOST), 0.001);
+    }
+
+    public void testTooManyRequestsIsRetried() throws Exception {
+        assertTrue(new RetryManager().isRetryUseful(response(429)));
+        assertFalse(new RetryManager().isRetryUseful(response(400)));
+    }
+
+    public void testAsync() throws Exception {
+        Webb webb = createWebb(new RateLimiter(1.0, 1).maxWait(0));
+
+        assertEquals(200, webb.get("/a").asStringAsync().get().getStatusCode());
+        try {
+            webb.get("/b").asStringAsync().get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof LimitExceededException);
+        }
+    }
+
+    private Response<Void> response(int statusCode) {
+        Response<Void> response = new Response<Void>(null);
+        response.statusCode = statusCode;
+        return response;
+    }
+
+    private Webb createWebb(RateLimiter limiter) {
+        return Webb.builder().baseUri(HOST).transport(server).interceptor(limiter).build();
+    }
+}
@@ -0,0 +1,73 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.util.Arrays;
+
+public class TestTlsConfig extends TestCase {
+
+    public void testSocketIsConfigured() throws Exception {
+        TlsConfig tls = new TlsConfig().protocols("TLSv1.2", "SSLv1-not-existing");
+        String[] supported = ((SSLSocket) tls.getSocketFactory().createSocket()).getSupportedCipherSuites();
+        String[] preferred = {supported[1], supported[0]};
+        tls.cipherSuites(preferred);
+
+        SSLSocket socket = (SSLSocket) tls.getSocketFactory().createSocket();
+
+        assertEquals(Arrays.asList("TLSv1.2"), Arrays.asList(socket.getEnabledProtocols()));
+        assertEquals(Arrays.asList(preferred), Arrays.asList(socket.getEnabledCipherSuites()));
+        assertEquals(Arrays.asList(preferred), Arrays.asList(tls.getSocketFactory().getDefaultCipherSuites()));
+        socket.close();
+    }
+
+    public void testNothingSupported() throws Exception {
+        TlsConfig tls = new TlsConfig().protocols("SSLv1-not-existing");
+        try {
+            tls.getSocketFactory().createSocket();
+            fail();
+        } catch (WebbException expected) {
+            // ok
+        }
+    }
+
+    public void testApplicationProtocols() throws Exception {
+        TlsConfig tls = new TlsConfig().applicationProtocols("http/1.1");
+
+        // ignored before Java 9
+        tls.getSocketFactory().createSocket().close();
+    }
+
+    public void testSessionCache() throws Exception {
+        TlsConfig tls = new TlsConfig().sessionCache(100, 600);
+
+        SSLSessionContext sessions = tls.getSSLContext().getClientSessionContext();
+        assertEquals(100, sessions.getSessionCacheSize());
+        assertEquals(600, sessions.getSessionTimeout());
+    }
+
+    public void testResumptionRate() throws Exception {
+        TlsConfig tls = new TlsConfig();
+        assertEquals(0.0, tls.getResumptionRate(), 0.001);
+
+        tls.recordHandshake(1000L, 1000L);
+        tls.recordHandshake(2000L, 1000L);
+
+        assertEquals(2, tls.getHandshakes());
+        assertEquals(1, tls.getResumedHandshakes());
+        assertEquals(0.5, tls.getResumptionRate(), 0.001);
+    }
+
+    public void testUsedForHttps() throws Exception {
+        TlsConfig tls = new TlsConfig();
+        Webb webb = Webb.builder().tlsConfig(tls).build();
+        assertSame(tls, webb.getTlsConfig());
+
+        HttpUrlConnectionTransport.UrlConnection connection = (HttpUrlConnectionTransport.UrlConnection)
+                HttpUrlConnectionTransport.DEFAULT.open(webb, "https://example.com/");
+
+        assertSame(tls.getSocketFactory(), ((HttpsURLConnection) connection.connection).getSSLSocketFactory());
+    }
+}
@@ -2,6 +2,7 @@ package com.goebl.david;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -33,6 +34,23 @@ public class TestWebb extends AbstractTestWebb {
         assertSame(request, response.getRequest());
     }
 
+    public void testCustomTransport() throws Exception {
+        final int[] openCount = new int[1];
+        webb.setTransport(new Transport() {
+            public Connection open(Webb webb, String uri) throws IOException {
+                ++openCount[0];
+                return HttpUrlConnectionTransport.DEFAULT.open(webb, uri);
+            }
+        });
+
+        Response<String> response = webb.get("/ping").asString();
+
+        assertEquals(1, openCount[0]);
+        assertEquals("pong", response.getBody());
+        assertNotNull(response.getTransportConnection());
+        assertEquals(response.getStatusCode(), response.getTransportConnection().getResponseCode());
+    }
+
     public void testIgnoreBaseUri() throws Exception {
         webb.get("http://www.goebl.com/robots.txt").ensureSuccess().asVoid();
     }
@@ -96,6 +114,47 @@ public class TestWebb extends AbstractTestWebb {
         assertEquals(COMPLEX_UTF8, result.getString("p2"));
     }
 
+    public void testJsonArrayStream() throws Exception {
+        Response<JsonArrayStream> response = webb
+                .get("/json-array")
+                .param("n", 1000)
+                .asJsonArrayStream();
+
+        assertEquals(200, response.getStatusCode());
+        JsonArrayStream stream = response.getBody();
+        int expectedId = 0;
+        while (stream.hasNext()) {
+            JSONObject element = (JSONObject) stream.next();
+            assertEquals(expectedId++, element.getInt("id"));
+            assertEquals("a,]}[{\"b", element.getString("s"));
+        }
+        assertEquals(1000, stream.getCount());
+    }
+
+    public void testJsonArrayStreamHandler() throws Exception {
+        final int[] sum = new int[1];
+        Response<JsonArrayStream> response = webb
+                .get("/json-array")
+                .param("n", 100)
+                .asJsonArrayStream(new JsonArrayStream.ElementHandler() {
+                    public void onElement(Object element, int index) {
+                        sum[0] += index;
+                    }
+                });
+
+        assertEquals(100, response.getBody().getCount());
+        assertEquals(99 * 100 / 2, sum[0]);
+    }
+
+    public void testJsonArrayStreamError() throws Exception {
+        Response<JsonArrayStream> response = webb
+                .get("/error/400/no-content")
+                .asJsonArrayStream();
+
+        assertEquals(400, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
     public void testSimplePutJson() throws Exception {
         JSONObject payload = new JSONObject();
         payload.put("p1", SIMPLE_ASCII);
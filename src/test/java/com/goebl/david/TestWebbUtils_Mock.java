@@ -1,7 +1,6 @@
 package com.goebl.david;
 
 import java.io.ByteArrayInputStream;
-import java.net.HttpURLConnection;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -36,7 +35,7 @@ public class TestWebbUtils_Mock extends TestCase {
         calendar.setTime(now);
         String dateStr = WebbUtils.getRfc1123DateFormat().format(now);
 
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
 
         Map<String, Object> map = new HashMap<String, Object>();
         map.put("date", now);
@@ -53,13 +52,13 @@ public class TestWebbUtils_Mock extends TestCase {
     }
 
     public void testAddRequestProperties_Empty() throws Exception {
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         doThrow(new RuntimeException()).when(connection).addRequestProperty(anyString(), anyString());
         WebbUtils.addRequestProperties(connection, null);
     }
 
     public void testAddRequestProperty() throws Exception {
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
 
         WebbUtils.addRequestProperty(connection, "name1", "value1");
         WebbUtils.addRequestProperty(connection, "name2", "value2");
@@ -69,7 +68,7 @@ public class TestWebbUtils_Mock extends TestCase {
 
     public void testEnsureRequestProperty() throws Exception {
         Map<String,List<String>> headers = new HashMap<String, List<String>>();
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         when(connection.getRequestProperties()).thenReturn(headers);
 
         WebbUtils.ensureRequestProperty(connection, "name", "value");
@@ -84,7 +83,7 @@ public class TestWebbUtils_Mock extends TestCase {
         request.params.put("abc", 123);
         request.params.put("email", "abc@def.com");
 
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         byte[] payload = WebbUtils.getPayloadAsBytesAndSetContentType(connection, request, false, -1);
 
         assertArrayEquals("abc=123&email=abc%40def.com".getBytes("UTF-8"), payload);
@@ -96,7 +95,7 @@ public class TestWebbUtils_Mock extends TestCase {
         Request request = new Request(webb, null, null);
         request.payload = null;
 
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         byte[] payload = WebbUtils.getPayloadAsBytesAndSetContentType(connection, request, false, -1);
 
         assertNull(payload);
@@ -116,7 +115,7 @@ public class TestWebbUtils_Mock extends TestCase {
 
         byte[] expected = json.toString().getBytes("UTF-8");
 
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         byte[] payload = WebbUtils.getPayloadAsBytesAndSetContentType(connection, request, false, -1);
 
         assertArrayEquals(expected, payload);
@@ -135,7 +134,7 @@ public class TestWebbUtils_Mock extends TestCase {
         request.payload = json;
         byte[] expected = json.toString().getBytes("UTF-8");
 
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         byte[] payload = WebbUtils.getPayloadAsBytesAndSetContentType(connection, request, false, -1);
 
         assertArrayEquals(expected, payload);
@@ -149,7 +148,7 @@ public class TestWebbUtils_Mock extends TestCase {
         request.payload = strPayload;
         byte[] expected = strPayload.getBytes("UTF-8");
 
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         byte[] payload = WebbUtils.getPayloadAsBytesAndSetContentType(connection, request, false, -1);
 
         assertArrayEquals(expected, payload);
@@ -163,7 +162,7 @@ public class TestWebbUtils_Mock extends TestCase {
         request.payload = strPayload.getBytes("UTF-8");
         byte[] expected = strPayload.getBytes("UTF-8");
 
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         byte[] payload = WebbUtils.getPayloadAsBytesAndSetContentType(connection, request, false, -1);
 
         assertArrayEquals(expected, payload);
@@ -197,7 +196,7 @@ public class TestWebbUtils_Mock extends TestCase {
 
     public void testParseErrorBody() throws Exception {
         Response response = mock(Response.class);
-        HttpURLConnection connection = mock(HttpURLConnection.class);
+        Connection connection = mock(Connection.class);
         response.connection = connection;
 
         String expected = "München 1 Maß 10 €";
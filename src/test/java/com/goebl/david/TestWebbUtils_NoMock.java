@@ -124,6 +124,45 @@ public class TestWebbUtils_NoMock extends TestCase {
         assertNull("return null when is=null", WebbUtils.readBytes(null));
     }
 
+    public void testReadBytesWithExpectedLength() throws Exception {
+        byte[] input = new byte[BufferPool.BUFFER_SIZE * 3 + 17];
+        for (int i = 0; i < input.length; ++i) {
+            input[i] = (byte) i;
+        }
+
+        assertArrayEquals(input, WebbUtils.readBytes(new ByteArrayInputStream(input), input.length));
+        assertArrayEquals(input, WebbUtils.readBytes(new ByteArrayInputStream(input), input.length + 5));
+        assertArrayEquals(input, WebbUtils.readBytes(new ByteArrayInputStream(input), 100));
+        assertArrayEquals(input, WebbUtils.readBytes(new ByteArrayInputStream(input), -1));
+        assertEquals(0, WebbUtils.readBytes(new ByteArrayInputStream(new byte[0]), 0).length);
+    }
+
+    public void testBodyAsByteBuffer() throws Exception {
+        Response<byte[]> response = new Response<byte[]>(null);
+        assertNull(response.getBodyAsByteBuffer());
+
+        byte[] body = { 1, 2, 3 };
+        response.setBody(body);
+        assertEquals(3, response.getBodyAsByteBuffer().remaining());
+        assertEquals(2, response.getBodyAsByteBuffer().get(1));
+        assertTrue(response.getBodyAsByteBuffer().isReadOnly());
+
+        Response<String> stringResponse = new Response<String>(null);
+        stringResponse.setBody("abc");
+        assertNull(stringResponse.getBodyAsByteBuffer());
+    }
+
+    public void testBufferPool() throws Exception {
+        byte[] buffer = BufferPool.acquire();
+        assertEquals(BufferPool.BUFFER_SIZE, buffer.length);
+        BufferPool.release(buffer);
+        byte[] other = BufferPool.acquire();
+        assertEquals(BufferPool.BUFFER_SIZE, other.length);
+        assertNotSame(other, BufferPool.acquire());
+        BufferPool.release(new byte[10]); // ignored
+        BufferPool.release(null); // ignored
+    }
+
     public void testAddRequestProperty_valueNull() throws Exception {
         try {
             WebbUtils.addRequestProperty(null, "name1", null);
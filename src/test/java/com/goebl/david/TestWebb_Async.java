@@ -0,0 +1,136 @@
+package com.goebl.david;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestWebb_Async extends AbstractTestWebb {
+
+    public void testAsString() throws Exception {
+        ResponseFuture<String> future = webb.get("/ping").asStringAsync();
+
+        Response<String> response = future.get(5, TimeUnit.SECONDS);
+        assertTrue(future.isDone());
+        assertTrue(response.isSuccess());
+        assertEquals("pong", response.getBody());
+    }
+
+    public void testAsJsonObject() throws Exception {
+        Response<JSONObject> response = webb
+                .get("/simple.json")
+                .param("p1", SIMPLE_ASCII)
+                .asJsonObjectAsync()
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(SIMPLE_ASCII, response.getBody().getString("p1"));
+    }
+
+    public void testCallback() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+
+        webb.get("/ping").asStringAsync().addCallback(new Callback<String>() {
+            public void onSuccess(Response<String> response) {
+                result.set(response.getBody());
+                latch.countDown();
+            }
+
+            public void onFailure(WebbException exception) {
+                result.set(exception);
+                latch.countDown();
+            }
+        }).addCallback(new Callback<String>() {
+            public void onSuccess(Response<String> response) {
+                latch.countDown();
+            }
+
+            public void onFailure(WebbException exception) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("pong", result.get());
+    }
+
+    public void testThrowingCallback() throws Exception {
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        ResponseFuture<String> future = new ResponseFuture<String>();
+
+        future.addCallback(new Callback<String>() {
+            public void onSuccess(Response<String> response) {
+                throw new IllegalStateException("first callback");
+            }
+
+            public void onFailure(WebbException exception) {
+                throw new IllegalStateException("first callback");
+            }
+        }).addCallback(new Callback<String>() {
+            public void onSuccess(Response<String> response) {
+                result.set(response);
+            }
+
+            public void onFailure(WebbException exception) {
+                result.set(exception);
+            }
+        });
+        Response<String> response = new Response<String>(null);
+        assertTrue(future.complete(response));
+
+        assertSame(response, result.get());
+        assertSame(response, future.get());
+    }
+
+    public void testFailure() throws Exception {
+        ResponseFuture<String> future = webb.get("/error/400/no-content").ensureSuccess().asStringAsync();
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof WebbException);
+            assertEquals(400, ((WebbException) expected.getCause()).getResponse().getStatusCode());
+        }
+    }
+
+    public void testCancel() throws Exception {
+        // the REST api delivers after 500 millis
+        ResponseFuture<String> future = webb.get("/read-timeout").asStringAsync();
+        Thread.sleep(100);
+
+        assertTrue(future.cancel(true));
+        assertTrue(future.isCancelled());
+        assertFalse(future.cancel(true));
+        try {
+            future.get();
+            fail("expected CancellationException");
+        } catch (CancellationException expected) {
+            // good!
+        }
+    }
+
+    public void testVirtualThreads() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            try {
+                Webb.builder().virtualThreads();
+                fail("expected UnsupportedOperationException");
+            } catch (UnsupportedOperationException expected) {
+                // good!
+            }
+            return;
+        }
+
+        Webb virtualWebb = Webb.builder().baseUri(webb.getBaseUri()).virtualThreads().build();
+        ResponseFuture<String> futures[] = new ResponseFuture[20];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = virtualWebb.get("/ping").asStringAsync();
+        }
+        for (ResponseFuture<String> future : futures) {
+            assertEquals("pong", future.get(5, TimeUnit.SECONDS).getBody());
+        }
+    }
+
+}
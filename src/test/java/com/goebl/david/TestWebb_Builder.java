@@ -0,0 +1,84 @@
+package com.goebl.david;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestWebb_Builder extends AbstractTestWebb {
+
+    public void testImmutable() throws Exception {
+        Webb immutableWebb = Webb.builder()
+                .baseUri(webb.getBaseUri())
+                .defaultHeader("x-test-string", SIMPLE_ASCII)
+                .build();
+
+        try {
+            immutableWebb.setBaseUri("http://example.com");
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // good!
+        }
+        try {
+            immutableWebb.setDefaultHeader("x-test-int", 4711);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // good!
+        }
+    }
+
+    public void testBuildOnlyOnce() throws Exception {
+        Webb.Builder builder = Webb.builder();
+        builder.build();
+        try {
+            builder.baseUri("http://example.com");
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // good!
+        }
+    }
+
+    public void testGlobalSettingsAreFrozen() throws Exception {
+        Webb.setGlobalHeader("x-test-frozen", "before");
+        try {
+            Webb immutableWebb = Webb.builder().build();
+            Webb.setGlobalHeader("x-test-frozen", "after");
+
+            assertEquals("before", immutableWebb.mergeHeaders(null).get("x-test-frozen"));
+            assertEquals("after", Webb.create().mergeHeaders(null).get("x-test-frozen"));
+        } finally {
+            Webb.setGlobalHeader("x-test-frozen", null);
+        }
+    }
+
+    public void testSharedBetweenThreads() throws Exception {
+        final Webb sharedWebb = Webb.builder()
+                .baseUri(webb.getBaseUri())
+                .readTimeout(5000)
+                .build();
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            String result = sharedWebb.get("/ping").ensureSuccess().asString().getBody();
+                            assertEquals("pong", result);
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue("errors in threads: " + errors, errors.isEmpty());
+    }
+
+}
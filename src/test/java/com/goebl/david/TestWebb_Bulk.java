@@ -0,0 +1,80 @@
+package com.goebl.david;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestWebb_Bulk extends AbstractTestWebb {
+
+    public void testExecuteAll() throws Exception {
+        List<Request> requests = new ArrayList<Request>();
+        for (int i = 0; i < 50; i++) {
+            requests.add(webb.get("/simple.json").param("p1", "v" + i));
+        }
+        requests.add(webb.get("/error/400/no-content").ensureSuccess());
+
+        BulkResponse<JSONObject> result = webb.executeAll(requests, JSONObject.class, 4);
+
+        assertEquals(51, result.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(result.isSuccess(i));
+            assertNull(result.getException(i));
+            assertEquals("v" + i, result.getResponse(i).getBody().getString("p1"));
+        }
+        assertFalse(result.isSuccess(50));
+        assertNull(result.getResponse(50));
+        assertEquals(400, result.getException(50).getResponse().getStatusCode());
+
+        assertEquals(50, result.getSuccessCount());
+        assertEquals(1, result.getFailureCount());
+        assertEquals(51, result.getResponses().size());
+        assertTrue(result.getMaxMillis() <= result.getElapsedMillis());
+        assertTrue(result.getThroughput() > 0);
+    }
+
+    public void testExecuteAllBoundedWorkers() throws Exception {
+        final AtomicInteger submitted = new AtomicInteger();
+        final Executor delegate = webb.executor;
+        webb.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                if (submitted.incrementAndGet() > 1) {
+                    throw new RejectedExecutionException("only one helper for this test");
+                }
+                new Thread(command).start();
+            }
+        });
+        try {
+            List<Request> requests = new ArrayList<Request>();
+            for (int i = 0; i < 20; i++) {
+                requests.add(webb.get("/ping"));
+            }
+            BulkResponse<String> result = webb.executeAll(requests, String.class, 8);
+
+            assertEquals("caller thread + 7 helpers", 7, submitted.get());
+            assertEquals(20, result.getSuccessCount());
+        } finally {
+            webb.setExecutor(delegate);
+        }
+    }
+
+    public void testExecuteAllEmpty() throws Exception {
+        List<Request> requests = Collections.emptyList();
+        BulkResponse<String> result = webb.executeAll(requests, String.class, 4);
+        assertEquals(0, result.size());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    public void testExecuteAllArguments() throws Exception {
+        try {
+            webb.executeAll(Collections.singletonList(webb.get("/ping")), String.class, 0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // good!
+        }
+    }
+}
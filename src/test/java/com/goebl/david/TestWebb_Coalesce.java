@@ -0,0 +1,203 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestWebb_Coalesce extends TestCase {
+
+    private Webb webb;
+    private TestHttpCache.StubServer server;
+    private ExecutorService threads;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new TestHttpCache.StubServer();
+        server.delayMillis = 300;
+        webb = Webb.builder()
+                .baseUri("http://coalesce.test")
+                .transport(server)
+                .coalesceRequests()
+                .build();
+        threads = Executors.newFixedThreadPool(8);
+    }
+
+    public void tearDown() throws Exception {
+        threads.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testConcurrentRequestsShareOneCall() throws Exception {
+        List<Future<Response<String>>> results = new ArrayList<Future<Response<String>>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(threads.submit(new Callable<Response<String>>() {
+                public Response<String> call() throws Exception {
+                    return webb.get("/config").asString();
+                }
+            }));
+        }
+        for (Future<Response<String>> result : results) {
+            assertEquals("body-1", result.get().getBody());
+            assertEquals(200, result.get().getStatusCode());
+        }
+        assertEquals(1, server.requestCount);
+
+        // not in flight anymore
+        webb.get("/config").asString();
+        assertEquals(2, server.requestCount);
+    }
+
+    public void testEveryCallerGetsOwnBody() throws Exception {
+        final List<Future<Response<byte[]>>> results = new ArrayList<Future<Response<byte[]>>>();
+        for (int i = 0; i < 4; i++) {
+            results.add(threads.submit(new Callable<Response<byte[]>>() {
+                public Response<byte[]> call() throws Exception {
+                    return webb.get("/config").asBytes();
+                }
+            }));
+        }
+        byte[] first = results.get(0).get().getBody();
+        for (int i = 1; i < results.size(); i++) {
+            byte[] other = results.get(i).get().getBody();
+            assertNotSame(first, other);
+            assertEquals(new String(first, "UTF-8"), new String(other, "UTF-8"));
+        }
+        assertEquals(1, server.requestCount);
+    }
+
+    public void testDifferentRequestsAreNotCoalesced() throws Exception {
+        Future<Response<String>> a = threads.submit(new Callable<Response<String>>() {
+            public Response<String> call() throws Exception {
+                return webb.get("/config").param("v", 1).asString();
+            }
+        });
+        Future<Response<String>> b = threads.submit(new Callable<Response<String>>() {
+            public Response<String> call() throws Exception {
+                return webb.get("/config").param("v", 2).asString();
+            }
+        });
+        Future<Response<String>> c = threads.submit(new Callable<Response<String>>() {
+            public Response<String> call() throws Exception {
+                return webb.get("/config").param("v", 1).header("X-Other", "x").asString();
+            }
+        });
+        a.get();
+        b.get();
+        c.get();
+        assertEquals(3, server.requestCount);
+    }
+
+    public void testJsonAndErrors() throws Exception {
+        server.headers.put("X-Test", "1");
+        server.statusCode = 503;
+        List<Future<Response<JSONObject>>> results = new ArrayList<Future<Response<JSONObject>>>();
+        for (int i = 0; i < 4; i++) {
+            results.add(threads.submit(new Callable<Response<JSONObject>>() {
+                public Response<JSONObject> call() throws Exception {
+                    return webb.get("/config").asJsonObject();
+                }
+            }));
+        }
+        for (Future<Response<JSONObject>> result : results) {
+            Response<JSONObject> response = result.get();
+            assertEquals(503, response.getStatusCode());
+            assertEquals("1", response.getHeaderField("X-Test"));
+            assertNull(response.getBody());
+        }
+        assertEquals(1, server.requestCount);
+    }
+
+    public void testEveryCallerIsMeasured() throws Exception {
+        final List<RequestMetrics> reports = new ArrayList<RequestMetrics>();
+        final Webb measured = Webb.builder()
+                .baseUri("http://coalesce.test")
+                .transport(server)
+                .coalesceRequests()
+                .metricsListener(new MetricsListener() {
+                    public void onRequest(RequestMetrics metrics) {
+                        synchronized (reports) {
+                            reports.add(metrics);
+                        }
+                    }
+                })
+                .build();
+        List<Future<Response<String>>> results = new ArrayList<Future<Response<String>>>();
+        for (int i = 0; i < 4; i++) {
+            results.add(threads.submit(new Callable<Response<String>>() {
+                public Response<String> call() throws Exception {
+                    return measured.get("/config").asString();
+                }
+            }));
+        }
+        for (Future<Response<String>> result : results) {
+            result.get();
+        }
+
+        assertEquals(1, server.requestCount);
+        assertEquals(4, reports.size());
+        int coalesced = 0;
+        for (RequestMetrics metrics : reports) {
+            assertEquals(200, metrics.getStatusCode());
+            if (metrics.isCoalesced()) {
+                ++coalesced;
+                assertEquals(0L, metrics.getBytesReceived());
+                assertTrue(metrics.getMillis(RequestMetrics.Phase.WAIT) > 0.0);
+                assertTrue(metrics.toString().contains("(coalesced)"));
+            }
+        }
+        assertEquals(3, coalesced);
+    }
+
+    public void testInterceptorsSeeOneRawRequest() throws Exception {
+        final List<Class<?>> resultTypes = new ArrayList<Class<?>>();
+        final Webb intercepted = Webb.builder()
+                .baseUri("http://coalesce.test")
+                .transport(server)
+                .coalesceRequests()
+                .interceptor(new Interceptor() {
+                    public <T> Response<T> intercept(Chain<T> chain) {
+                        synchronized (resultTypes) {
+                            resultTypes.add(chain.getResultType());
+                        }
+                        return chain.proceed(chain.getRequest());
+                    }
+                })
+                .build();
+        List<Future<Response<String>>> results = new ArrayList<Future<Response<String>>>();
+        for (int i = 0; i < 3; i++) {
+            results.add(threads.submit(new Callable<Response<String>>() {
+                public Response<String> call() throws Exception {
+                    return intercepted.get("/config").asString();
+                }
+            }));
+        }
+        for (Future<Response<String>> result : results) {
+            result.get();
+        }
+
+        assertEquals(1, server.requestCount);
+        assertEquals(1, resultTypes.size());
+        assertEquals(byte[].class, resultTypes.get(0));
+    }
+
+    public void testDisabledByDefault() throws Exception {
+        final Webb plain = Webb.create();
+        plain.setTransport(server);
+        plain.setBaseUri("http://coalesce.test");
+
+        Future<Response<String>> a = threads.submit(new Callable<Response<String>>() {
+            public Response<String> call() throws Exception {
+                return plain.get("/a").asString();
+            }
+        });
+        plain.get("/a").asString();
+        a.get();
+        assertEquals(2, server.requestCount);
+    }
+}
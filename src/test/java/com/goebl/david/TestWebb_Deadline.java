@@ -0,0 +1,162 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.ExecutionException;
+
+public class TestWebb_Deadline extends TestCase {
+
+    private static final String HOST = "http://deadline.test";
+
+    private DeadlineServer server;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new DeadlineServer();
+    }
+
+    public void testTimeoutsAreShortened() throws Exception {
+        Webb webb = createWebb(RetryManager.DEFAULT);
+
+        webb.get("/short").deadline(500).asString();
+
+        assertTrue("connect " + server.connectTimeout, server.connectTimeout > 0 && server.connectTimeout <= 500);
+        assertTrue("read " + server.readTimeout, server.readTimeout > 0 && server.readTimeout <= 500);
+    }
+
+    public void testTimeoutsWithoutDeadline() throws Exception {
+        Webb webb = createWebb(RetryManager.DEFAULT);
+
+        webb.get("/long").asString();
+
+        assertEquals(10000, server.connectTimeout);
+        assertEquals(60000, server.readTimeout);
+        assertNull(server.deadlineHeader);
+    }
+
+    public void testPropagationHeader() throws Exception {
+        Webb webb = createWebb(RetryManager.DEFAULT);
+
+        webb.get("/propagate").deadline(2000, "X-Request-Timeout").asString();
+
+        long remaining = Long.parseLong(server.deadlineHeader);
+        assertTrue("remaining " + remaining, remaining > 1000 && remaining <= 2000);
+    }
+
+    public void testRetriesStopAtDeadline() throws Exception {
+        Webb webb = createWebb(new FixedDelayRetryManager(200));
+        server.statusCode = 503;
+
+        long start = System.currentTimeMillis();
+        Response<String> response = webb.get("/unavailable").retry(10, true).deadline(500).asString();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(503, response.getStatusCode());
+        // attempts at 0, 200 and 400ms, the next one would be too late
+        assertEquals(3, server.requestCount);
+        assertTrue("elapsed " + elapsed, elapsed < 500);
+    }
+
+    public void testAsyncRetriesStopAtDeadline() throws Exception {
+        Webb webb = createWebb(new FixedDelayRetryManager(200));
+        server.statusCode = 503;
+
+        Response<String> response = webb.get("/unavailable").retry(10, true).deadline(500).asStringAsync().get();
+
+        assertEquals(503, response.getStatusCode());
+        assertEquals(3, server.requestCount);
+    }
+
+    public void testDeadlineExceeded() throws Exception {
+        Webb webb = Webb.create();
+        webb.setBaseUri(HOST);
+        webb.setTransport(server);
+        webb.addInterceptor(new Interceptor() {
+            public <T> Response<T> intercept(Chain<T> chain) {
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    throw new WebbException(e);
+                }
+                return chain.proceed(chain.getRequest());
+            }
+        });
+
+        try {
+            webb.get("/late").deadline(100).asString();
+            fail();
+        } catch (DeadlineExceededException expected) {
+            assertEquals(100, expected.getTimeoutMillis());
+        }
+        try {
+            webb.get("/late").deadline(100).asStringAsync().get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof DeadlineExceededException);
+        }
+        assertEquals(0, server.requestCount);
+    }
+
+    public void testLimiterDoesNotWaitBeyondDeadline() throws Exception {
+        Webb webb = Webb.create();
+        webb.setBaseUri(HOST);
+        webb.setTransport(server);
+        webb.addInterceptor(new RateLimiter(1.0, 1));
+
+        webb.get("/first").asString();
+        long start = System.currentTimeMillis();
+        try {
+            webb.get("/second").deadline(100).asString();
+            fail();
+        } catch (LimitExceededException expected) {
+            assertTrue(System.currentTimeMillis() - start < 100);
+        }
+    }
+
+    private Webb createWebb(RetryManager retryManager) {
+        return Webb.builder().baseUri(HOST).transport(server).retryManager(retryManager)
+                .connectTimeout(10000).readTimeout(60000).build();
+    }
+
+    static class FixedDelayRetryManager extends RetryManager {
+        private final long delayMillis;
+
+        FixedDelayRetryManager(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public long getDelay(int retry, Response response) {
+            return delayMillis;
+        }
+    }
+
+    static class DeadlineServer extends TestHttpCache.StubServer {
+        volatile int connectTimeout;
+        volatile int readTimeout;
+        volatile String deadlineHeader;
+
+        @Override
+        public Connection open(Webb webb, String uri) {
+            return new TestHttpCache.StubConnection(this) {
+                @Override
+                public void setConnectTimeout(int timeout) {
+                    connectTimeout = timeout;
+                }
+
+                @Override
+                public void setReadTimeout(int timeout) {
+                    readTimeout = timeout;
+                }
+
+                @Override
+                public void setRequestProperty(String name, String value) {
+                    if ("X-Request-Timeout".equals(name)) {
+                        deadlineHeader = value;
+                    }
+                    super.setRequestProperty(name, value);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestWebb_Interceptor extends TestCase {
+
+    private RecordingServer server;
+    private Webb webb;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new RecordingServer();
+        webb = Webb.create();
+        webb.setBaseUri("http://interceptor.test");
+        webb.setTransport(server);
+    }
+
+    public void testOrder() throws Exception {
+        final List<String> calls = new ArrayList<String>();
+        webb.addInterceptor(new NamedInterceptor("first", calls));
+        webb.addInterceptor(new NamedInterceptor("second", calls));
+
+        assertEquals(200, webb.get("/order").asString().getStatusCode());
+
+        assertEquals(Arrays.asList("first>", "second>", "second<", "first<"), calls);
+        assertEquals(2, webb.getInterceptors().size());
+        try {
+            webb.getInterceptors().clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+            // ok
+        }
+    }
+
+    public void testModifyRequest() throws Exception {
+        webb.addInterceptor(new Interceptor() {
+            public <T> Response<T> intercept(Chain<T> chain) {
+                assertEquals(Request.Method.GET, chain.getRequest().getMethod());
+                assertEquals(String.class, chain.getResultType());
+                return chain.proceed(chain.getRequest().header(Webb.HDR_AUTHORIZATION, "Bearer abc"));
+            }
+        });
+
+        webb.get("/secure").asString();
+
+        assertEquals("Bearer abc", CacheEntry.getHeader(server.lastRequestProperties, Webb.HDR_AUTHORIZATION));
+    }
+
+    public void testProceedTwice() throws Exception {
+        server.statusCode = 401;
+        webb.addInterceptor(new Interceptor() {
+            public <T> Response<T> intercept(Chain<T> chain) {
+                Response<T> response = chain.proceed(chain.getRequest());
+                if (response.getStatusCode() == 401) {
+                    server.statusCode = 200; // the token has been refreshed
+                    response = chain.proceed(chain.getRequest().header(Webb.HDR_AUTHORIZATION, "Bearer new"));
+                }
+                return response;
+            }
+        });
+
+        Response<String> response = webb.get("/secure").asString();
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals(2, server.requestCount);
+        assertEquals("Bearer new", CacheEntry.getHeader(server.lastRequestProperties, Webb.HDR_AUTHORIZATION));
+    }
+
+    public void testShortCircuit() throws Exception {
+        webb.addInterceptor(new Interceptor() {
+            public <T> Response<T> intercept(Chain<T> chain) {
+                Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+                headers.put("Content-Type", Collections.singletonList(Webb.APP_JSON));
+                headers.put("X-Served-By", Collections.singletonList("interceptor"));
+                return chain.respond(200, headers, "{\"cached\": true}".getBytes());
+            }
+        });
+
+        Response<JSONObject> response = webb.get("/cached").asJsonObject();
+
+        assertEquals(0, server.requestCount);
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getBody().getBoolean("cached"));
+        assertEquals(Webb.APP_JSON, response.getContentType());
+        assertEquals("interceptor", response.getHeaderField("x-served-by"));
+    }
+
+    public void testShortCircuitError() throws Exception {
+        webb.addInterceptor(new Interceptor() {
+            public <T> Response<T> intercept(Chain<T> chain) {
+                return chain.respond(404, null, "nope".getBytes());
+            }
+        });
+
+        Response<String> response = webb.get("/missing").asString();
+
+        assertEquals(0, server.requestCount);
+        assertEquals(404, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals("nope", new String((byte[]) response.getErrorBody()));
+        try {
+            webb.get("/missing").ensureSuccess().asString();
+            fail();
+        } catch (WebbException expected) {
+            assertEquals(404, expected.getResponse().getStatusCode());
+        }
+    }
+
+    public void testExceptions() throws Exception {
+        final RuntimeException failure = new IllegalStateException("circuit open");
+        webb.addInterceptor(new Interceptor() {
+            public <T> Response<T> intercept(Chain<T> chain) {
+                throw failure;
+            }
+        });
+
+        try {
+            webb.get("/broken").asString();
+            fail();
+        } catch (WebbException expected) {
+            assertSame(failure, expected.getCause());
+        }
+        assertEquals(0, server.requestCount);
+    }
+
+    public void testNullResponse() throws Exception {
+        webb.addInterceptor(new Interceptor() {
+            public <T> Response<T> intercept(Chain<T> chain) {
+                return null;
+            }
+        });
+
+        try {
+            webb.get("/null").asString();
+            fail();
+        } catch (WebbException expected) {
+            assertTrue(expected.getMessage().contains("returned null"));
+        }
+    }
+
+    public void testRetriesPassInterceptors() throws Exception {
+        final List<String> calls = new ArrayList<String>();
+        webb.addInterceptor(new NamedInterceptor("retry", calls));
+        server.statusCode = 503;
+
+        webb.get("/unavailable").retry(2, false).asString();
+
+        assertEquals(3, server.requestCount);
+        assertEquals(6, calls.size());
+    }
+
+    public void testAsyncAndBuilder() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        Webb immutable = Webb.builder()
+                .transport(server)
+                .interceptor(new NamedInterceptor("async", calls))
+                .build();
+
+        assertEquals(200, immutable.get("http://interceptor.test/async").asStringAsync().get().getStatusCode());
+        assertEquals(Arrays.asList("async>", "async<"), calls);
+        try {
+            immutable.addInterceptor(new NamedInterceptor("late", calls));
+            fail();
+        } catch (IllegalStateException expected) {
+            // ok
+        }
+    }
+
+    static class NamedInterceptor implements Interceptor {
+        private final String name;
+        private final List<String> calls;
+
+        NamedInterceptor(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        public <T> Response<T> intercept(Chain<T> chain) {
+            calls.add(name + ">");
+            try {
+                return chain.proceed(chain.getRequest());
+            } finally {
+                calls.add(name + "<");
+            }
+        }
+    }
+
+    static class RecordingServer extends TestHttpCache.StubServer {
+        volatile Map<String, List<String>> lastRequestProperties;
+
+        @Override
+        public Connection open(Webb webb, String uri) {
+            return new TestHttpCache.StubConnection(this) {
+                @Override
+                public void connect() {
+                    lastRequestProperties = getRequestProperties();
+                    super.connect();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestWebb_Metrics extends TestCase {
+
+    private TestHttpCache.StubServer server;
+    private List<RequestMetrics> recorded;
+    private Webb webb;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new TestHttpCache.StubServer();
+        recorded = Collections.synchronizedList(new ArrayList<RequestMetrics>());
+        webb = Webb.create();
+        webb.setBaseUri("http://metrics.test");
+        webb.setTransport(server);
+        webb.setMetricsListener(new MetricsListener() {
+            public void onRequest(RequestMetrics metrics) {
+                recorded.add(metrics);
+            }
+        });
+    }
+
+    public void testNoListenerByDefault() throws Exception {
+        assertNull(Webb.create().getMetricsListener());
+    }
+
+    public void testBuilder() throws Exception {
+        HistogramMetrics histogram = new HistogramMetrics();
+        Webb immutable = Webb.builder().transport(server).metricsListener(histogram).build();
+
+        assertSame(histogram, immutable.getMetricsListener());
+        immutable.get("http://metrics.test/data").asString();
+        assertEquals(1, histogram.getCount());
+    }
+
+    public void testGet() throws Exception {
+        server.delayMillis = 50;
+        server.bodySize = 1000;
+
+        Response<String> response = webb.get("/data").asString();
+
+        assertEquals(1, recorded.size());
+        RequestMetrics metrics = recorded.get(0);
+        assertEquals("GET", metrics.getMethod());
+        assertEquals("/data", metrics.getUri().substring(metrics.getUri().lastIndexOf('/')));
+        assertEquals(200, metrics.getStatusCode());
+        assertEquals(0, metrics.getRetries());
+        assertNull(metrics.getException());
+        assertEquals(0L, metrics.getBytesSent());
+        assertEquals(response.getBody().length(), metrics.getBytesReceived());
+        assertEquals(metrics.getBytesReceived(), metrics.getBytesReceivedDecoded());
+
+        // the stub server sleeps while connecting
+        assertTrue(metrics.getMillis(RequestMetrics.Phase.CONNECT) >= 50.0);
+        long sum = 0;
+        for (RequestMetrics.Phase phase : RequestMetrics.Phase.values()) {
+            assertTrue(phase.name(), metrics.getNanos(phase) >= 0);
+            if (phase != RequestMetrics.Phase.TOTAL) {
+                sum += metrics.getNanos(phase);
+            }
+        }
+        assertTrue(sum <= metrics.getNanos(RequestMetrics.Phase.TOTAL));
+        assertEquals(0L, metrics.getNanos(RequestMetrics.Phase.DECOMPRESS));
+    }
+
+    public void testPostCompressed() throws Exception {
+        StringBuilder payload = new StringBuilder();
+        while (payload.length() < 10000) {
+            payload.append("compress me ");
+        }
+
+        webb.post("/upload").body(payload.toString()).compress().asVoid();
+
+        RequestMetrics metrics = recorded.get(0);
+        assertEquals("POST", metrics.getMethod());
+        assertEquals(payload.length(), metrics.getBytesSentUncompressed());
+        assertTrue(metrics.getBytesSent() > 0);
+        assertTrue(metrics.getBytesSent() < metrics.getBytesSentUncompressed());
+    }
+
+    public void testPostStreamed() throws Exception {
+        byte[] payload = new byte[5000];
+
+        webb.post("/upload").body(new ByteArrayInputStream(payload)).asVoid();
+
+        RequestMetrics metrics = recorded.get(0);
+        assertEquals(payload.length, metrics.getBytesSent());
+        assertEquals(payload.length, metrics.getBytesSentUncompressed());
+    }
+
+    public void testCompressedResponse() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 20000) {
+            sb.append("decompress me ");
+        }
+        final String body = sb.toString();
+        final byte[] compressed = WebbUtils.gzip(body.getBytes("UTF-8"));
+        webb.setTransport(new Transport() {
+            public Connection open(Webb webb, String uri) {
+                return new TestHttpCache.StubConnection(server) {
+                    @Override
+                    public String getContentEncoding() {
+                        return "gzip";
+                    }
+
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        connect();
+                        return new ByteArrayInputStream(compressed);
+                    }
+                };
+            }
+        });
+
+        assertEquals(body, webb.get("/gzip").asString().getBody());
+
+        RequestMetrics metrics = recorded.get(0);
+        assertEquals(compressed.length, metrics.getBytesReceived());
+        assertEquals(body.length(), metrics.getBytesReceivedDecoded());
+    }
+
+    public void testRetries() throws Exception {
+        server.statusCode = 503;
+
+        Response<String> response = webb.get("/unavailable").retry(2, false).asString();
+
+        assertEquals(503, response.getStatusCode());
+        assertEquals(3, server.requestCount);
+        assertEquals(1, recorded.size());
+        assertEquals(2, recorded.get(0).getRetries());
+        assertEquals(503, recorded.get(0).getStatusCode());
+    }
+
+    public void testException() throws Exception {
+        webb.setTransport(new Transport() {
+            public Connection open(Webb webb, String uri) throws IOException {
+                throw new IOException("no route to host");
+            }
+        });
+
+        try {
+            webb.get("/broken").asString();
+            fail();
+        } catch (WebbException expected) {
+            assertEquals(1, recorded.size());
+            assertSame(expected, recorded.get(0).getException());
+            assertEquals(-1, recorded.get(0).getStatusCode());
+        }
+    }
+
+    public void testAsync() throws Exception {
+        server.statusCode = 503;
+
+        Response<String> response = webb.get("/unavailable").retry(1, false).asStringAsync().get(5, TimeUnit.SECONDS);
+
+        assertEquals(503, response.getStatusCode());
+        assertEquals(1, recorded.size());
+        assertEquals(1, recorded.get(0).getRetries());
+    }
+
+    public void testBrokenListenerIsIgnored() throws Exception {
+        webb.setMetricsListener(new MetricsListener() {
+            public void onRequest(RequestMetrics metrics) {
+                throw new IllegalStateException("broken");
+            }
+        });
+
+        assertEquals(200, webb.get("/data").asString().getStatusCode());
+    }
+
+    public void testHistogramMetrics() throws Exception {
+        HistogramMetrics histogram = new HistogramMetrics();
+        webb.setMetricsListener(histogram);
+        server.bodySize = 100;
+
+        for (int i = 0; i < 10; i++) {
+            webb.get("/data").asString();
+        }
+        server.statusCode = 404;
+        webb.get("/missing").asString();
+
+        assertEquals(11, histogram.getCount());
+        assertEquals(10, histogram.getStatusCount(2));
+        assertEquals(1, histogram.getStatusCount(4));
+        assertEquals(0, histogram.getFailureCount());
+        assertEquals(1000, histogram.getBytesReceived());
+        assertTrue(histogram.getMeanMillis(RequestMetrics.Phase.TOTAL) > 0.0);
+        assertTrue(histogram.getPercentileMillis(RequestMetrics.Phase.TOTAL, 50.0)
+                <= histogram.getPercentileMillis(RequestMetrics.Phase.TOTAL, 100.0));
+        assertTrue(histogram.toString().contains("requests=11"));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getPercentileMillis(RequestMetrics.Phase.TOTAL, 99.0));
+    }
+
+    public void testHistogramBuckets() throws Exception {
+        int previous = -1;
+        for (long micros = 0; micros < 1000000L; micros += 7) {
+            int bucket = HistogramMetrics.bucket(micros);
+            assertTrue(bucket >= previous);
+            assertTrue(micros <= HistogramMetrics.upperBound(bucket));
+            // relative error of the upper bound is at most 25%
+            assertTrue(HistogramMetrics.upperBound(bucket) <= micros * 1.25 + 1);
+            previous = bucket;
+        }
+        assertEquals(HistogramMetrics.BUCKETS - 1, HistogramMetrics.bucket(Long.MAX_VALUE));
+    }
+}
@@ -1,5 +1,9 @@
 package com.goebl.david;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 public class TestWebb_Retry extends AbstractTestWebb {
 
     public void testRetryCount() throws Exception {
@@ -34,4 +38,81 @@ public class TestWebb_Retry extends AbstractTestWebb {
         }
     }
 
+    public void testAsyncRetryDoesNotBlockThread() throws Exception {
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            webb.setExecutor(singleThread);
+            webb.setRetryManager(new RetryManager() {
+                @Override
+                public long getDelay(int retry, Response response) {
+                    return 1000L;
+                }
+            });
+
+            long start = System.currentTimeMillis();
+            ResponseFuture<String> retrying = webb
+                    .get("/error/503/" + System.currentTimeMillis() + "/1")
+                    .retry(1, true)
+                    .ensureSuccess()
+                    .asStringAsync();
+            Thread.sleep(200);
+
+            // the only thread of the executor is free while the first request waits for its retry
+            assertEquals("pong", webb.get("/ping").asStringAsync().get(500, TimeUnit.MILLISECONDS).getBody());
+            assertFalse(retrying.isDone());
+
+            assertEquals("Now it works", retrying.get(5, TimeUnit.SECONDS).getBody());
+            assertTrue("Should last longer than 1 second", System.currentTimeMillis() - start >= 1000);
+        } finally {
+            singleThread.shutdown();
+        }
+    }
+
+    public void testAsyncRetryCancel() throws Exception {
+        ResponseFuture<String> retrying = webb
+                .get("/error/503/" + System.currentTimeMillis() + "/1")
+                .retry(1, true)
+                .asStringAsync();
+        Thread.sleep(200);
+
+        assertTrue(retrying.cancel(false));
+        assertTrue(retrying.isCancelled());
+    }
+
+    public void testRetryAfter() throws Exception {
+        webb.setRetryManager(new JitteredRetryManager(JitteredRetryManager.Jitter.NONE, 10L, 5000L));
+
+        long start = System.currentTimeMillis();
+        Response<String> response = webb
+                .get("/error/503/" + System.currentTimeMillis() + "/1?retryAfter=1")
+                .retry(1, true)
+                .asString();
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue("Should honor Retry-After", System.currentTimeMillis() - start >= 1000);
+    }
+
+    public void testRetryAfterExceedsMaxDelay() throws Exception {
+        webb.setRetryManager(new JitteredRetryManager(JitteredRetryManager.Jitter.NONE, 10L, 500L));
+
+        Response<String> response = webb
+                .get("/error/503/" + System.currentTimeMillis() + "/1?retryAfter=1")
+                .retry(1, true)
+                .asString();
+
+        assertEquals(503, response.getStatusCode());
+    }
+
+    public void testRetryBudgetExhausted() throws Exception {
+        webb.setRetryManager(new JitteredRetryManager(JitteredRetryManager.Jitter.NONE, 10L, 500L)
+                .retryBudget(0.0, 0));
+
+        Response<String> response = webb
+                .get("/error/503/" + System.currentTimeMillis() + "/1")
+                .retry(1, true)
+                .asString();
+
+        assertEquals(503, response.getStatusCode());
+    }
+
 }
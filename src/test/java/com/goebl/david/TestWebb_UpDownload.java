@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.util.Random;
 import org.json.JSONArray;
 
@@ -104,6 +106,28 @@ public class TestWebb_UpDownload extends AbstractTestWebb {
         assertArrayEquals(payload, echoed);
     }
 
+    public void testBodyAsByteBuffer() throws Exception {
+        byte[] payload = new byte[5000];
+        new Random().nextBytes(payload);
+
+        Response<byte[]> response = webb
+                .post("/echoBin")
+                .body(payload)
+                .asBytes();
+
+        assertEquals(200, response.getStatusCode());
+        ByteBuffer buffer = response.getBodyAsByteBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(payload.length, buffer.remaining());
+        assertEquals(ByteBuffer.wrap(payload), buffer);
+        try {
+            buffer.put(0, (byte) 1);
+            fail("buffer must be read-only");
+        } catch (ReadOnlyBufferException expected) {
+            // good!
+        }
+    }
+
     public void testCompressedRandomBytes() throws Exception {
         // random bytes cannot be compressed efficiently, so there should be a fallback to 'identity'
         byte[] payload = new byte[5000];
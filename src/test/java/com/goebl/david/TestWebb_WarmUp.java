@@ -0,0 +1,282 @@
+package com.goebl.david;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestWebb_WarmUp extends TestCase {
+
+    private List<String> uris;
+    private Webb webb;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        uris = new ArrayList<String>();
+        webb = Webb.create();
+        // IP addresses need no DNS lookup, the stub transports don't connect to them
+        webb.setBaseUri("https://10.0.0.1");
+    }
+
+    public void testConnectionsAreOpenedConcurrently() throws Exception {
+        final CountDownLatch allConnecting = new CountDownLatch(3);
+        final boolean[] concurrent = {true};
+        webb.setTransport(new TestHttpCache.StubServer() {
+            @Override
+            public Connection open(Webb webb, String uri) {
+                synchronized (uris) {
+                    uris.add(uri);
+                }
+                return new TestHttpCache.StubConnection(this) {
+                    @Override
+                    public void connect() {
+                        allConnecting.countDown();
+                        try {
+                            if (!allConnecting.await(2, TimeUnit.SECONDS)) {
+                                concurrent[0] = false;
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        super.connect();
+                    }
+                };
+            }
+        });
+
+        WarmUpReport report = webb.warmUp(null, 3);
+
+        assertTrue(concurrent[0]);
+        assertTrue(report.isSuccess());
+        assertEquals(1, report.size());
+        assertEquals("https://10.0.0.1", report.getUri(0));
+        assertEquals(3, report.getConnections(0));
+        assertEquals(Arrays.asList("https://10.0.0.1", "https://10.0.0.1", "https://10.0.0.1"),
+                uris);
+        assertEquals(3, webb.getConnectionStats().getReleased());
+        assertEquals(0, webb.getConnectionStats().getDiscarded());
+    }
+
+    public void testHeadRequestsAreReused() throws Exception {
+        final List<String> methods = new ArrayList<String>();
+        webb.setTransport(new TestHttpCache.StubServer() {
+            @Override
+            public Connection open(Webb webb, String uri) {
+                return new TestHttpCache.StubConnection(this) {
+                    @Override
+                    public void setRequestMethod(String method) {
+                        methods.add(method);
+                        super.setRequestMethod(method);
+                    }
+                };
+            }
+        });
+
+        webb.warmUp();
+        webb.get("/a").asString();
+
+        assertEquals(Arrays.asList("HEAD", "GET"), methods);
+        assertEquals(2, webb.getConnectionStats().getReleased());
+    }
+
+    public void testSeparateServerConnections() throws Exception {
+        SocketServer server = new SocketServer();
+        try {
+            Webb local = Webb.create();
+            local.setBaseUri("http://127.0.0.1:" + server.serverSocket.getLocalPort());
+            // everything runs on the calling thread, one connection after the other
+            local.setExecutor(new Executor() {
+                public void execute(Runnable command) {
+                    throw new RejectedExecutionException();
+                }
+            });
+
+            WarmUpReport report = local.warmUp(null, 3);
+
+            assertTrue(report.isSuccess());
+            assertEquals(3, server.ports.size());
+            assertEquals(3, server.requests.get());
+
+            // the parked connections are reused
+            assertEquals(200, local.get("/").asString().getStatusCode());
+            assertEquals(3, server.ports.size());
+            assertEquals(4, server.requests.get());
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testTimings() throws Exception {
+        TestHttpCache.StubServer server = new TestHttpCache.StubServer();
+        server.delayMillis = 50;
+        webb.setTransport(server);
+
+        WarmUpReport report = webb.warmUp();
+
+        assertEquals(1, report.getConnectionCount());
+        assertTrue(report.getDurationMillis(0) >= 45);
+        assertTrue(report.getElapsedMillis() >= report.getDurationMillis(0));
+        assertTrue(report.toString().startsWith("connections=1 failures=0"));
+    }
+
+    public void testSeveralUris() throws Exception {
+        TestHttpCache.StubServer server = new TestHttpCache.StubServer();
+        webb.setTransport(server);
+
+        WarmUpReport report = webb.warmUp(Arrays.asList("", "/", "https://10.0.0.2",
+                "https://unknown.invalid", "https://10.0.0.1"), 2);
+
+        assertEquals(4, report.size());
+        assertEquals("https://10.0.0.1/", report.getUri(1));
+        assertEquals(2, report.getConnections(2));
+        assertEquals(0, report.getConnections(3));
+        assertTrue(report.getException(3).getCause() instanceof UnknownHostException);
+        assertNull(report.getException(2));
+        assertEquals(6, report.getConnectionCount());
+        assertEquals(2, report.getFailureCount());
+        assertFalse(report.isSuccess());
+        assertEquals(6, server.requestCount);
+    }
+
+    public void testFailedConnectionIsDiscarded() throws Exception {
+        webb.setTransport(new TestHttpCache.StubServer() {
+            @Override
+            public Connection open(Webb webb, String uri) {
+                return new TestHttpCache.StubConnection(this) {
+                    @Override
+                    public void connect() {
+                        throw new IllegalStateException("connection refused");
+                    }
+                };
+            }
+        });
+
+        WarmUpReport report = webb.warmUp(null, 2);
+
+        assertEquals(2, report.getFailureCount());
+        assertEquals("connection refused", report.getException(0).getCause().getMessage());
+        assertEquals(2, webb.getConnectionStats().getDiscarded());
+    }
+
+    public void testFailedOpenIsNotRepeated() throws Exception {
+        final AtomicInteger opened = new AtomicInteger();
+        webb.setTransport(new Transport() {
+            public Connection open(Webb webb, String uri) throws IOException {
+                opened.incrementAndGet();
+                throw new IOException("no route to host");
+            }
+        });
+
+        WarmUpReport report = webb.warmUp(null, 2);
+
+        assertEquals(2, opened.get());
+        assertEquals(2, report.getFailureCount());
+        assertEquals("no route to host", report.getException(0).getCause().getMessage());
+    }
+
+    public void testIllegalArguments() throws Exception {
+        try {
+            webb.warmUp(null, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+
+        webb.setBaseUri(null);
+        String globalBaseUri = Webb.globalBaseUri;
+        Webb.setGlobalBaseUri(null);
+        try {
+            webb.warmUp(Arrays.asList("/relative"), 1);
+            fail();
+        } catch (IllegalStateException expected) {
+            // ok
+        } finally {
+            Webb.setGlobalBaseUri(globalBaseUri);
+        }
+    }
+
+    /**
+     * A minimal HTTP/1.1 server with keep-alive, which remembers the client port of every connection.
+     */
+    static class SocketServer implements Runnable {
+        final ServerSocket serverSocket;
+        final Set<Integer> ports = Collections.synchronizedSet(new HashSet<Integer>());
+        final AtomicInteger requests = new AtomicInteger();
+
+        SocketServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            new Thread(this).start();
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = serverSocket.accept();
+                    ports.add(socket.getPort());
+                    new Thread(new Runnable() {
+                        public void run() {
+                            serve(socket);
+                        }
+                    }).start();
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        void serve(Socket socket) {
+            try {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                String requestLine;
+                while ((requestLine = readLine(in)) != null) {
+                    while (readLine(in).length() > 0) {
+                        // skip the headers
+                    }
+                    requests.incrementAndGet();
+                    boolean head = requestLine.startsWith("HEAD");
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 2\r\n\r\n"
+                            + (head ? "" : "ok")).getBytes("US-ASCII"));
+                    out.flush();
+                }
+                socket.close();
+            } catch (IOException e) {
+                // client is gone
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c == -1) {
+                    return line.length() > 0 ? line.toString() : null;
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}